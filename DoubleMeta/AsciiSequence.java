@@ -0,0 +1,104 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An uppercased view of ASCII bytes in a ByteBuffer as a CharSequence, so that
+ * {@link DoubleMeta} can encode bytes without decoding them into a String. The
+ * bytes are read with absolute gets and the position of the buffer is left
+ * alone. A view can be pointed at other bytes with {@link #wrap}, so one
+ * instance per thread serves all the words it encodes.
+ */
+final class AsciiSequence implements CharSequence {
+
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	// ASCII 大写转换表
+	private static final char[] upper = new char[128];
+
+	static {
+		for (int c = 0; c < upper.length; c++)
+			upper[c] = ((c >= 'a') && (c <= 'z')) ? (char) (c - 'a' + 'A') : (char) c;
+	}
+
+	private ByteBuffer buffer;
+	private int off;
+	private int len;
+
+	AsciiSequence() {
+	}
+
+	AsciiSequence(ByteBuffer buffer, int off, int len) {
+		wrap(buffer, off, len);
+	}
+
+	/**
+	 * 改为查看 buffer[off, off + len)
+	 *
+	 * @return this
+	 */
+	AsciiSequence wrap(ByteBuffer buffer, int off, int len) {
+		this.buffer = buffer;
+		this.off = off;
+		this.len = len;
+		return this;
+	}
+
+	/**
+	 * Tells if <code>buffer[off, off + len)</code> only holds ASCII bytes,
+	 * testing 8 bytes at a time.
+	 */
+	static boolean isAscii(ByteBuffer buffer, int off, int len) {
+		int i = off;
+		int end = off + len;
+		for (; i + 8 <= end; i += 8) {
+			if ((buffer.getLong(i) & HIGH_BITS) != 0)
+				return false;
+		}
+		for (; i < end; i++) {
+			if (buffer.get(i) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	public int length() {
+		return len;
+	}
+
+	public char charAt(int index) {
+		return upper[buffer.get(off + index)];
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if ((start < 0) || (start > end) || (end > len))
+			throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + len);
+		return new AsciiSequence(buffer, off + start, end - start);
+	}
+
+	public String toString() {
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++)
+			chars[i] = charAt(i);
+		return new String(chars);
+	}
+}
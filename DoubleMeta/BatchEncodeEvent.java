@@ -0,0 +1,64 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder event committed for each batch encoded by
+ * {@link DoubleMeta#transformAll(String[])} and
+ * {@link DoubleMeta#transformAllToLong(CharSequence[], long[])}. JFR gives it a
+ * start time and a duration; it is only filled in when a recording with the
+ * event enabled is running.
+ */
+@Name("com.swabunga.spell.engine.BatchEncode")
+@Label("Phonetic Batch Encode")
+@Category("Jazzy")
+@Description("A batch of words encoded by DoubleMeta")
+final class BatchEncodeEvent extends Event {
+
+	@Label("Words")
+	int words;
+
+	@Label("Characters")
+	@Description("The total length of the words")
+	long characters;
+
+	@Label("Input Size")
+	@Description("The UTF-16 size of the words")
+	@DataAmount
+	long bytes;
+
+	@Label("Packed")
+	@Description("Whether the codes were packed into longs")
+	boolean packed;
+
+	@Label("Parallel")
+	@Description("Whether the batch was split on the common ForkJoinPool")
+	boolean parallel;
+
+	@Label("Maximum Code Length")
+	int maxCodeLength;
+}
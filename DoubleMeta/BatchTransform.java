@@ -0,0 +1,137 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jdk.jfr.EventType;
+
+/**
+ * Encodes a range of words with a {@link DoubleMeta}, splitting the range in
+ * halves on the common ForkJoinPool until the pieces are small enough to be
+ * encoded in a loop. The words are encoded into a StringBuilder kept by each
+ * thread, and batches below {@link #PARALLEL_THRESHOLD} words are encoded
+ * without creating a task. Exactly one of codes and packed is set. Every batch
+ * is counted in {@link EncodingMetrics} and reported as a
+ * {@link BatchEncodeEvent}, which is only created while a recording enables
+ * it.
+ */
+final class BatchTransform extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Batches smaller than this are encoded on the calling thread.
+	 */
+	static final int PARALLEL_THRESHOLD = 8192;
+
+	/**
+	 * Ranges of at most this many words are not split any further.
+	 */
+	static final int LEAF_SIZE = 1024;
+
+	private static final EventType eventType = EventType.getEventType(BatchEncodeEvent.class);
+
+	// 每个线程复用的代码缓冲区
+	private static final ThreadLocal<StringBuilder> scratch = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+	private final DoubleMeta meta;
+	private final CharSequence[] words;
+	private final String[] codes;
+	private final long[] packed;
+	private final int from;
+	private final int to;
+
+	private BatchTransform(DoubleMeta meta, CharSequence[] words, String[] codes, long[] packed, int from, int to) {
+		this.meta = meta;
+		this.words = words;
+		this.codes = codes;
+		this.packed = packed;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Encodes all the words into codes or packed, sequentially below
+	 * {@link #PARALLEL_THRESHOLD} words and on the common pool above.
+	 *
+	 * @param meta the encoder
+	 * @param words the words to encode
+	 * @param codes receives the codes, or null
+	 * @param packed receives the packed codes, or null
+	 */
+	static void run(DoubleMeta meta, CharSequence[] words, String[] codes, long[] packed) {
+		// 没有记录启用该事件时不创建事件对象
+		BatchEncodeEvent event = eventType.isEnabled() ? new BatchEncodeEvent() : null;
+		if (event != null)
+			event.begin();
+		long start = System.nanoTime();
+		boolean parallel = words.length >= PARALLEL_THRESHOLD;
+		if (parallel)
+			ForkJoinPool.commonPool().invoke(new BatchTransform(meta, words, codes, packed, 0, words.length));
+		else
+			encode(meta, words, codes, packed, 0, words.length);
+		EncodingMetrics.recordBatch(words.length, System.nanoTime() - start);
+		if ((event != null) && event.shouldCommit()) {
+			long characters = 0;
+			for (CharSequence word : words)
+				characters += word.length();
+			event.words = words.length;
+			event.characters = characters;
+			event.bytes = 2 * characters;
+			event.packed = packed != null;
+			event.parallel = parallel;
+			event.maxCodeLength = meta.getMaxCodeLength();
+			event.commit();
+		}
+	}
+
+	protected void compute() {
+		if (to - from <= LEAF_SIZE) {
+			encode(meta, words, codes, packed, from, to);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new BatchTransform(meta, words, codes, packed, from, middle),
+				new BatchTransform(meta, words, codes, packed, middle, to));
+	}
+
+	/**
+	 * 在当前线程上编码 words[from, to)
+	 */
+	private static void encode(DoubleMeta meta, CharSequence[] words, String[] codes, long[] packed, int from,
+			int to) {
+		StringBuilder code = scratch.get();
+		long characters = 0;
+		for (int i = from; i < to; i++) {
+			CharSequence word = words[i];
+			characters += word.length();
+			if (codes != null) {
+				code.setLength(0);
+				meta.transform(word, 0, word.length(), code);
+				codes[i] = code.toString();
+			} else {
+				packed[i] = meta.transformToLong(word, 0, word.length(), code);
+			}
+		}
+		EncodingMetrics.addCharacters(characters);
+	}
+}
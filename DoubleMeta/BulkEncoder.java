@@ -0,0 +1,397 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Appends the phonetic codes of selected columns to every row of a large CSV or
+ * TSV file. A reader thread cuts the input into chunks of whole lines, a pool
+ * of workers encodes the chunks and the calling thread writes them back in
+ * order with one large write per chunk. At most two chunks per worker are in
+ * flight, so memory does not depend on the size of the file.
+ * <p>
+ * The rows are handled as UTF-8 bytes, see
+ * {@link DoubleMeta#transform(ByteBuffer, int, int, ByteBuffer)}; each code is
+ * appended after the row, preceded by the delimiter, and the line ending of
+ * the row is kept. Fields may be quoted with double quotes, but must not
+ * contain line breaks. Blank lines are copied unchanged. Run from the command
+ * line with no arguments for the options.
+ */
+public final class BulkEncoder {
+
+	/**
+	 * The default size of a chunk, in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+	private static final String USAGE = "usage: java com.swabunga.spell.engine.BulkEncoder [options] input output\n"
+			+ "  input and output are file names, - for standard input and output\n"
+			+ "  -d <c>  field delimiter, tab for TSV (default ,)\n"
+			+ "  -c <n,...>  1-based columns to encode (default 1)\n"
+			+ "  -H  the first line is a header, a <name>_dm column is added for each code\n"
+			+ "  -l <n>  maximum code length (default 4)\n"
+			+ "  -t <n>  worker threads (default the number of processors)\n"
+			+ "  -b <n>  chunk size in KB (default 4096)";
+
+	private final DoubleMeta meta;
+	private final byte delimiter;
+	// 要编码的列，从 0 开始，代码按此顺序追加
+	private final int[] columns;
+	private final boolean header;
+	private final int threads;
+	private final int chunkSize;
+
+	/**
+	 * @param meta the encoder
+	 * @param delimiter the field delimiter, an ASCII character
+	 * @param columns the 0-based indices of the columns to encode, the codes are
+	 *          appended in this order
+	 * @param header true if the first line is a header
+	 * @param threads the number of worker threads
+	 * @param chunkSize the number of bytes read at once, lines longer than that
+	 *          get a larger chunk
+	 */
+	public BulkEncoder(DoubleMeta meta, char delimiter, int[] columns, boolean header, int threads, int chunkSize) {
+		if (meta == null)
+			throw new NullPointerException("meta");
+		if ((delimiter == '"') || (delimiter == '\n') || (delimiter == '\r') || (delimiter > 0x7F))
+			throw new IllegalArgumentException("delimiter=" + delimiter);
+		if (columns.length == 0)
+			throw new IllegalArgumentException("no column");
+		for (int column : columns) {
+			if (column < 0)
+				throw new IllegalArgumentException("column=" + column);
+		}
+		if (threads < 1)
+			throw new IllegalArgumentException("threads=" + threads);
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("chunkSize=" + chunkSize);
+		this.meta = meta;
+		this.delimiter = (byte) delimiter;
+		this.columns = columns.clone();
+		this.header = header;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Encodes all the rows of the input into the output. Neither channel is
+	 * closed.
+	 *
+	 * @param in the delimited input
+	 * @param out receives the rows with their codes
+	 * @return the number of rows encoded, without the header and blank lines
+	 * @throws IOException if reading or writing fails
+	 */
+	public long encode(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "BulkEncoder-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		// 有界队列按输入顺序保存各块的结果，读线程在队列满时阻塞
+		BlockingQueue<Future<Chunk>> pending = new ArrayBlockingQueue<Future<Chunk>>(2 * threads);
+		Thread reader = new Thread(() -> read(in, workers, pending), "BulkEncoder-reader");
+		reader.setDaemon(true);
+		reader.start();
+		long rows = 0;
+		try {
+			for (;;) {
+				Chunk chunk = pending.take().get();
+				if (chunk == null)
+					break;
+				while (chunk.bytes.hasRemaining())
+					out.write(chunk.bytes);
+				rows += chunk.rows;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		} finally {
+			reader.interrupt();
+			workers.shutdownNow();
+		}
+		return rows;
+	}
+
+	/**
+	 * 读线程：按整行切块，提交给工作线程，并把结果按顺序放入队列；以 null 结果表示结束
+	 */
+	private void read(ReadableByteChannel in, ExecutorService workers, BlockingQueue<Future<Chunk>> pending) {
+		try {
+			byte[] buf = new byte[chunkSize];
+			int filled = 0;
+			boolean first = true;
+			boolean eof = false;
+			while (!eof) {
+				ByteBuffer target = ByteBuffer.wrap(buf, filled, buf.length - filled);
+				while (target.hasRemaining()) {
+					if (in.read(target) < 0) {
+						eof = true;
+						break;
+					}
+				}
+				filled = target.position();
+				int end = filled;
+				if (!eof) {
+					while ((end > 0) && (buf[end - 1] != '\n'))
+						end--;
+					if (end == 0) {
+						// 一行比整块还长：扩大缓冲区继续读
+						buf = Arrays.copyOf(buf, buf.length * 2);
+						continue;
+					}
+				}
+				if (end > 0) {
+					byte[] data = buf;
+					int length = end;
+					boolean withHeader = first && header;
+					pending.put(workers.submit(() -> encodeChunk(data, length, withHeader)));
+					first = false;
+				}
+				// 不完整的最后一行移到新缓冲区的开头
+				byte[] next = new byte[Math.max(chunkSize, filled - end)];
+				System.arraycopy(buf, end, next, 0, filled - end);
+				buf = next;
+				filled -= end;
+			}
+			pending.put(CompletableFuture.completedFuture(null));
+		} catch (InterruptedException e) {
+			// 写入端已经放弃
+		} catch (IOException | RuntimeException e) {
+			CompletableFuture<Chunk> failed = new CompletableFuture<Chunk>();
+			failed.completeExceptionally(e);
+			try {
+				pending.put(failed);
+			} catch (InterruptedException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * 一个已编码的块
+	 */
+	private static final class Chunk {
+
+		final ByteBuffer bytes;
+		final int rows;
+
+		Chunk(ByteBuffer bytes, int rows) {
+			this.bytes = bytes;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * 编码块中的每一行，在行尾（换行符之前）追加各列的代码
+	 */
+	private Chunk encodeChunk(byte[] data, int length, boolean withHeader) {
+		ByteBuffer src = ByteBuffer.wrap(data, 0, length);
+		ByteBuffer dst = ByteBuffer.allocate(length + length / 2 + 1024);
+		int[] starts = new int[columns.length];
+		int[] ends = new int[columns.length];
+		int rows = 0;
+		for (int pos = 0; pos < length;) {
+			int newline = pos;
+			while ((newline < length) && (data[newline] != '\n'))
+				newline++;
+			int lineEnd = newline;
+			if ((lineEnd > pos) && (data[lineEnd - 1] == '\r'))
+				lineEnd--;
+			int next = (newline < length) ? newline + 1 : length;
+			if (lineEnd == pos) {
+				dst = ensure(dst, next - pos);
+				dst.put(data, pos, next - pos);
+				pos = next;
+				continue;
+			}
+			fields(data, pos, lineEnd, starts, ends);
+			dst = ensure(dst, lineEnd - pos);
+			dst.put(data, pos, lineEnd - pos);
+			for (int k = 0; k < columns.length; k++) {
+				int len = ends[k] - starts[k];
+				if (withHeader) {
+					dst = ensure(dst, len + 4);
+					dst.put(delimiter).put(data, starts[k], len).put((byte) '_').put((byte) 'd').put((byte) 'm');
+				} else {
+					// 每个字符最多产生两个代码字符，UTF-8 字节数不少于字符数
+					dst = ensure(dst, 3 + Math.min(2 * len, meta.getMaxCodeLength()));
+					dst.put(delimiter);
+					meta.transform(src, starts[k], len, dst);
+				}
+			}
+			dst = ensure(dst, next - lineEnd);
+			dst.put(data, lineEnd, next - lineEnd);
+			if (withHeader)
+				withHeader = false;
+			else
+				rows++;
+			pos = next;
+		}
+		dst.flip();
+		return new Chunk(dst, rows);
+	}
+
+	/**
+	 * 找出选中各列在行 [from, to) 中的范围；带引号的字段取引号内的部分，缺少的列为空
+	 */
+	private void fields(byte[] data, int from, int to, int[] starts, int[] ends) {
+		Arrays.fill(starts, from);
+		Arrays.fill(ends, from);
+		int column = 0;
+		int last = 0;
+		for (int c : columns)
+			last = Math.max(last, c);
+		for (int pos = from; (pos <= to) && (column <= last); column++) {
+			int start;
+			int end;
+			if ((pos < to) && (data[pos] == '"')) {
+				start = ++pos;
+				// 两个连续的引号是转义的引号
+				while ((pos < to) && ((data[pos] != '"') || ((pos + 1 < to) && (data[pos + 1] == '"'))))
+					pos += (data[pos] == '"') ? 2 : 1;
+				end = pos;
+				while ((pos < to) && (data[pos] != delimiter))
+					pos++;
+			} else {
+				start = pos;
+				while ((pos < to) && (data[pos] != delimiter))
+					pos++;
+				end = pos;
+			}
+			for (int k = 0; k < columns.length; k++) {
+				if (columns[k] == column) {
+					starts[k] = start;
+					ends[k] = end;
+				}
+			}
+			pos++;
+		}
+	}
+
+	private static ByteBuffer ensure(ByteBuffer dst, int n) {
+		if (dst.remaining() >= n)
+			return dst;
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(dst.capacity() * 2, dst.position() + n));
+		dst.flip();
+		return larger.put(dst);
+	}
+
+	/**
+	 * Encodes a file from the command line and reports the throughput on
+	 * standard error.
+	 *
+	 * @param args the options, the input and the output
+	 */
+	public static void main(String[] args) throws IOException {
+		char delimiter = ',';
+		int[] columns = { 0 };
+		boolean header = false;
+		int maxCodeLength = 4;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = DEFAULT_CHUNK_SIZE;
+		int i = 0;
+		try {
+			for (; (i < args.length) && args[i].startsWith("-") && (args[i].length() > 1); i++) {
+				String option = args[i];
+				if (option.equals("-H")) {
+					header = true;
+					continue;
+				}
+				String value = args[++i];
+				switch (option) {
+				case "-d":
+					delimiter = value.equals("tab") || value.equals("\\t") ? '\t' : value.charAt(0);
+					break;
+				case "-c":
+					String[] names = value.split(",");
+					columns = new int[names.length];
+					for (int k = 0; k < names.length; k++)
+						columns[k] = Integer.parseInt(names[k].trim()) - 1;
+					break;
+				case "-l":
+					maxCodeLength = Integer.parseInt(value);
+					break;
+				case "-t":
+					threads = Integer.parseInt(value);
+					break;
+				case "-b":
+					chunkSize = Integer.parseInt(value) << 10;
+					break;
+				default:
+					throw new IllegalArgumentException("unknown option " + option);
+				}
+			}
+			if (args.length - i != 2)
+				throw new IllegalArgumentException("expected an input and an output");
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		BulkEncoder encoder = new BulkEncoder(new DoubleMeta(maxCodeLength), delimiter, columns, header, threads,
+				chunkSize);
+		long start = System.nanoTime();
+		long rows;
+		long bytes;
+		try (FileChannel in = args[i].equals("-") ? new FileInputStream(FileDescriptor.in).getChannel()
+				: FileChannel.open(Paths.get(args[i]), StandardOpenOption.READ);
+				FileChannel out = args[i + 1].equals("-") ? new FileOutputStream(FileDescriptor.out).getChannel()
+						: FileChannel.open(Paths.get(args[i + 1]), StandardOpenOption.CREATE,
+								StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			rows = encoder.encode(in, out);
+			bytes = args[i].equals("-") ? -1 : in.position();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		StringBuilder report = new StringBuilder();
+		report.append(rows).append(" rows in ").append(String.format("%.2f", seconds)).append(" s, ")
+				.append(Math.round(rows / seconds)).append(" rows/s");
+		if (bytes >= 0)
+			report.append(", ").append(String.format("%.1f", bytes / seconds / (1 << 20))).append(" MB/s");
+		System.err.println(report);
+	}
+}
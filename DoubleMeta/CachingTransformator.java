@@ -0,0 +1,290 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Transformator} remembering the codes of the words it has seen, for
+ * workloads where a small set of words makes most of the calls.
+ * <p>
+ * Hits are a lookup in a ConcurrentHashMap and take no lock. Misses are
+ * encoded by the wrapped {@link DoubleMeta} and inserted under the lock of one
+ * of several stripes, chosen by the hash of the word, so concurrent callers
+ * only contend when they insert into the same stripe. Each stripe evicts its
+ * own entries with the CLOCK algorithm: a hit marks the entry as referenced,
+ * and the clock hand clears the mark of referenced entries and evicts the
+ * first unreferenced one.
+ * <p>
+ * The size of the cache is bounded in bytes. The cost of an entry is estimated
+ * as two bytes per character of the word and the code plus
+ * {@link #ENTRY_OVERHEAD} bytes for the objects holding them, and each stripe
+ * gets an equal share of the budget.
+ */
+public final class CachingTransformator implements Transformator {
+
+	/**
+	 * The estimated bytes taken by an entry in addition to its characters: the
+	 * two String objects and their arrays, the map node and the entry itself.
+	 */
+	public static final int ENTRY_OVERHEAD = 144;
+
+	private final DoubleMeta meta;
+	private final long maxBytes;
+	private final ConcurrentHashMap<String, Entry> map;
+	private final Stripe[] stripes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a cache with one stripe per available processor, rounded up to a
+	 * power of two.
+	 *
+	 * @param meta the encoder computing the codes
+	 * @param maxBytes the estimated memory the cached entries may take
+	 * @throws IllegalArgumentException if maxBytes is not positive
+	 */
+	public CachingTransformator(DoubleMeta meta, long maxBytes) {
+		this(meta, maxBytes, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a cache with a given number of stripes.
+	 *
+	 * @param meta the encoder computing the codes
+	 * @param maxBytes the estimated memory the cached entries may take
+	 * @param stripeCount the number of stripes, rounded up to a power of two
+	 * @throws IllegalArgumentException if maxBytes or stripeCount is not positive
+	 */
+	public CachingTransformator(DoubleMeta meta, long maxBytes, int stripeCount) {
+		if (meta == null)
+			throw new NullPointerException("meta");
+		if (maxBytes < 1)
+			throw new IllegalArgumentException("maxBytes=" + maxBytes);
+		if ((stripeCount < 1) || (stripeCount > (1 << 16)))
+			throw new IllegalArgumentException("stripeCount=" + stripeCount);
+		int count = Integer.highestOneBit(stripeCount);
+		if (count < stripeCount)
+			count <<= 1;
+		this.meta = meta;
+		this.maxBytes = maxBytes;
+		this.map = new ConcurrentHashMap<String, Entry>(256, 0.75f, count);
+		this.stripes = new Stripe[count];
+		long share = Math.max(1, maxBytes / count);
+		for (int i = 0; i < count; i++)
+			stripes[i] = new Stripe(share);
+	}
+
+	/**
+	 * @return the wrapped encoder
+	 */
+	public DoubleMeta getTransformator() {
+		return meta;
+	}
+
+	/**
+	 * Returns the code of the word, from the cache if it has been seen recently.
+	 *
+	 * @see DoubleMeta#transform(String)
+	 */
+	public String transform(String word) {
+		Entry entry = map.get(word);
+		if (entry != null) {
+			entry.referenced = true;
+			hits.increment();
+			return entry.code;
+		}
+		misses.increment();
+		String code = meta.transform(word);
+		stripeOf(word).add(this, new Entry(word, code));
+		return code;
+	}
+
+	/**
+	 * @see com.swabunga.spell.engine.Transformator#getReplaceList()
+	 */
+	public char[] getReplaceList() {
+		return meta.getReplaceList();
+	}
+
+	/**
+	 * @return the number of calls answered from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of calls that had to encode the word
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of entries evicted to respect the memory bound
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the number of cached words
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * @return the memory bound given to the constructor
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return the estimated memory taken by the cached entries
+	 */
+	public long getWeightedSize() {
+		long bytes = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				bytes += stripe.bytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Removes all the entries. The counters are not reset.
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear(this);
+			}
+		}
+	}
+
+	private Stripe stripeOf(String word) {
+		int h = word.hashCode();
+		h ^= (h >>> 16);
+		return stripes[h & (stripes.length - 1)];
+	}
+
+	/**
+	 * A cached code. The referenced flag is written by readers without
+	 * synchronization: a lost write only makes the entry a candidate for
+	 * eviction one turn of the clock earlier.
+	 */
+	static final class Entry {
+
+		final String key;
+		final String code;
+		final int cost;
+		boolean referenced;
+
+		Entry(String key, String code) {
+			this.key = key;
+			this.code = code;
+			this.cost = 2 * (key.length() + code.length()) + ENTRY_OVERHEAD;
+		}
+	}
+
+	/**
+	 * The entries of one stripe, in a ring swept by the clock hand. Slots freed
+	 * by evictions are reused before the ring grows.
+	 */
+	static final class Stripe {
+
+		private final long maxBytes;
+		private Entry[] ring = new Entry[16];
+		private int used;
+		private int hand;
+		private int[] free = new int[16];
+		private int freeCount;
+		long bytes;
+
+		Stripe(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized void add(CachingTransformator cache, Entry entry) {
+			if (entry.cost > maxBytes)
+				return;
+			// 其他线程可能已经插入了同一个单词
+			if (cache.map.putIfAbsent(entry.key, entry) != null)
+				return;
+			while (bytes + entry.cost > maxBytes) {
+				evict(cache);
+			}
+			int slot;
+			if (freeCount > 0) {
+				slot = free[--freeCount];
+			} else {
+				if (used == ring.length)
+					ring = Arrays.copyOf(ring, used * 2);
+				slot = used++;
+			}
+			ring[slot] = entry;
+			bytes += entry.cost;
+		}
+
+		// 转动时钟指针：清除被引用条目的标记，淘汰第一个未被引用的条目
+		private void evict(CachingTransformator cache) {
+			for (;;) {
+				if (hand >= used)
+					hand = 0;
+				int slot = hand++;
+				Entry entry = ring[slot];
+				if (entry == null)
+					continue;
+				if (entry.referenced) {
+					entry.referenced = false;
+					continue;
+				}
+				ring[slot] = null;
+				if (freeCount == free.length)
+					free = Arrays.copyOf(free, freeCount * 2);
+				free[freeCount++] = slot;
+				bytes -= entry.cost;
+				cache.map.remove(entry.key, entry);
+				cache.evictions.increment();
+				return;
+			}
+		}
+
+		void clear(CachingTransformator cache) {
+			for (int i = 0; i < used; i++) {
+				if (ring[i] != null)
+					cache.map.remove(ring[i].key, ring[i]);
+			}
+			ring = new Entry[16];
+			free = new int[16];
+			used = 0;
+			hand = 0;
+			freeCount = 0;
+			bytes = 0;
+		}
+	}
+}
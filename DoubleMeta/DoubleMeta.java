@@ -19,33 +19,47 @@ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
 */
 package com.swabunga.spell.engine;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+
 /**
  * A phonetic encoding algorithm that takes an English word and computes a
  * phonetic version of it. This allows for phonetic matches in a spell checker.
- * This class is a port of the C++ DoubleMetaphone() class, which was intended
- * to return two possible phonetic translations for certain words, although the
- * Java version only seems to be concerned with one, making the "double" part
- * erroneous. <br>
+ * This class is a port of the C++ DoubleMetaphone() class, which returns two
+ * possible phonetic translations for certain words: a primary code, returned by
+ * {@link #transform(String)}, and an alternate code for words with a second
+ * plausible pronunciation, returned together with the primary one by
+ * {@link #transformBoth(CharSequence)}. For example "hegemony" is encoded as
+ * HJMN and HKMN. <br>
  * source code for the original C++ can be found here: <a href=
  * "http://aspell.sourceforge.net/metaphone/"/>http://aspell.sourceforge.net/metaphone/</a>
- * DoubleMetaphone does some processing, such as uppercasing, on the input
- * string first to normalize it. Then, to create the key, the function traverses
- * the input string in a while loop, sending successive characters into a giant
- * switch statement. Before determining the appropriate pronunciation, the
- * algorithm considers the context surrounding each character within the input
- * string.
  * <p>
- * Things that were changed: <br/>
- * The alternate flag could be set to true but was never checked so why bother
- * with it. REMOVED <br/>
- * Why was this class serializable? <br/>
- * The primary, in, length and last variables could be initialized and local to
- * the process method and references passed around the appropriate methods. As
- * such there are no class variables and this class becomes firstly threadsafe
- * and secondly could be static final. <br/>
- * The function call SlavoGermaic was called repeatedly in the process function,
- * it is now only called once.
- *
+ * The encoder traverses the word once, reading each character uppercased and
+ * folded to its base letter (&Eacute;mile is encoded like Emile, while &Ccedil;
+ * and &Ntilde; keep their own rules), and positions past the end of the word
+ * read as spaces. Before determining the appropriate pronunciation of a letter,
+ * it considers the context surrounding it within the word; the letters with
+ * context rules are handled by their own encodeX methods. Words can be encoded
+ * straight out of a caller's buffer or ByteBuffer into a reused StringBuilder
+ * without allocating, and an optional maximum code length stops the encoding
+ * as soon as the code is long enough.
+ * <p>
+ * The rules of the original for the last letter of a word that would change
+ * the primary code are not applied, so that the codes stay those this port has
+ * always produced: a final J after S, K or L is not dropped, a final UMB keeps
+ * its B (dumb is TMP), and a final R after IE (Rogier), S after AI or OI
+ * (Artois) and X after AU, OU, IAU or EAU (Breaux) are still encoded in the
+ * primary code. The rules that only add to the alternate code are applied: a
+ * final W after a vowel (Arnow is ARN and ARNF) and the Spanish LL (Cabrillo is
+ * KPRL and KPR).
+ * <p>
+ * The rules are also available as data in {@link RuleSet}, which compiles them
+ * into a table driven program, so that variants of the rules can be run without
+ * changing this class. The built-in rules run the hand-written methods below.
+ * <p>
+ * An instance holds no mutable state and can be shared between threads.
  */
 public class DoubleMeta implements Transformator {
 
@@ -58,202 +72,497 @@ public class DoubleMeta implements Transformator {
 	 * In addition to that, each of these letters is added to the misspelled word.
 	 */
 	/*
-	 * Metaphone 㷨ʹ 16 ַ࣬
-	 * B X S K J T F H L M N P R 0 W Y ַ 0 㣬 th 
-	 *  Soundex 㷨һһĸĴ뱻üĸַĸַҲ䡣
-	 * ظĸԪͨɾԪĴһMetaphone 㷨һ׹򼯣԰ĸӳɸࡣ
+	 * Metaphone 算法使用了 16 个辅音类，由下列字符代表：
+	 * B X S K J T F H L M N P R 0 W Y 字符 0 是零，用来代表 th 的声音。
+	 * 就像在 Soundex 算法里一样，第一个字母被保留，最后的代码被裁剪成四个字符，但是如果短于四个字符，也并不填充。
+	 * 重复的字母和元音通常被删除，与元音的处理一样。Metaphone 算法整体上是一套规则集，可以把字母组合映射成辅音类。
 	 * 
-	 * DoubleMetaphone 㷨ԭĸһЩ,еĿʼԪ AԲʹ Soundex 㷨
-	 * Ӹı仯ǣDoubleMetaphone дɿΪʷزͬĴ롣
-	 * 磬 hegemonyе g ԷҲԷ㷨ȷ HJMN ҲԷ HKMN 
-	 * Щ֮⣬Metaphone 㷨еĶʻǷصһ
-	 * list26\list49\list96
+	 * DoubleMetaphone 算法对原来的辅音类做了一些修正,它把所有的开始元音都编码成 A，所以不再使用 Soundex 算法。
+	 * 更加根本的变化是，DoubleMetaphone 被编写成可以为多音词返回不同的代码。
+	 * 例如， hegemony中的 g 可以发轻声，也可以发重音，所以算法既返回 HJMN ，也可以返回 HKMN 。
+	 * 除了这些例子之外，Metaphone 算法中的多数单词还是返回单一键。
+	 * list26\list49\list96只用于替代语音代码
 	 */
 	private static char[] replaceList = { 'A', 'B', 'X', 'S', 'K', 'J', 'T', 'F', 'H', 'L', 'M', 'N', 'P', 'R', '0' };
 
-	private static final String[] myList = { "GN", "KN", "PN", "WR", "PS", "" };
-	private static final String[] list1 = { "ACH", "" };
-	private static final String[] list2 = { "BACHER", "MACHER", "" };
-	private static final String[] list3 = { "CAESAR", "" };
-	private static final String[] list4 = { "CHIA", "" };
-	private static final String[] list5 = { "CH", "" };
-	private static final String[] list6 = { "CHAE", "" };
-	private static final String[] list7 = { "HARAC", "HARIS", "" };
-	private static final String[] list8 = { "HOR", "HYM", "HIA", "HEM", "" };
-	private static final String[] list9 = { "CHORE", "" };
-	private static final String[] list10 = { "VAN ", "VON ", "" };
-	private static final String[] list11 = { "SCH", "" };
-	private static final String[] list12 = { "ORCHES", "ARCHIT", "ORCHID", "" };
-	private static final String[] list13 = { "T", "S", "" };
-	private static final String[] list14 = { "A", "O", "U", "E", "" };
-	private static final String[] list15 = { "L", "R", "N", "M", "B", "H", "F", "V", "W", " ", "" };
-	private static final String[] list16 = { "MC", "" };
-	private static final String[] list17 = { "CZ", "" };
-	private static final String[] list18 = { "WICZ", "" };
-	private static final String[] list19 = { "CIA", "" };
-	private static final String[] list20 = { "CC", "" };
-	private static final String[] list21 = { "I", "E", "H", "" };
-	private static final String[] list22 = { "HU", "" };
-	private static final String[] list23 = { "UCCEE", "UCCES", "" };
-	private static final String[] list24 = { "CK", "CG", "CQ", "" };
-	private static final String[] list25 = { "CI", "CE", "CY", "" };
-	// DMV: used by the original code which returned two phonetic code, but not the
-	// current code
-	// private static final String[] list26 = {
-	// "CIO", "CIE", "CIA", ""
-	// };
-	private static final String[] list27 = { " C", " Q", " G", "" };
-	private static final String[] list28 = { "C", "K", "Q", "" };
-	private static final String[] list29 = { "CE", "CI", "" };
-	private static final String[] list30 = { "DG", "" };
-	private static final String[] list31 = { "I", "E", "Y", "" };
-	private static final String[] list32 = { "DT", "DD", "" };
-	private static final String[] list33 = { "B", "H", "D", "" };
-	private static final String[] list34 = { "B", "H", "D", "" };
-	private static final String[] list35 = { "B", "H", "" };
-	private static final String[] list36 = { "C", "G", "L", "R", "T", "" };
-	private static final String[] list37 = { "EY", "" };
-	private static final String[] list38 = { "LI", "" };
-	private static final String[] list39 = { "ES", "EP", "EB", "EL", "EY", "IB", "IL", "IN", "IE", "EI", "ER", "" };
-	private static final String[] list40 = { "ER", "" };
-	private static final String[] list41 = { "DANGER", "RANGER", "MANGER", "" };
-	private static final String[] list42 = { "E", "I", "" };
-	private static final String[] list43 = { "RGY", "OGY", "" };
-	private static final String[] list44 = { "E", "I", "Y", "" };
-	private static final String[] list45 = { "AGGI", "OGGI", "" };
-	private static final String[] list46 = { "VAN ", "VON ", "" };
-	private static final String[] list47 = { "SCH", "" };
-	private static final String[] list48 = { "ET", "" };
-
-	// DMV: used by the orininal code which returned two phonetic code, but not the
-	// current code
-	// private static final String[] list49 = {
-	// "IER ", ""
-	// };
-	private static final String[] list50 = { "JOSE", "" };
-	private static final String[] list51 = { "SAN ", "" };
-	private static final String[] list52 = { "SAN ", "" };
-	private static final String[] list53 = { "JOSE", "" };
-	private static final String[] list54 = { "L", "T", "K", "S", "N", "M", "B", "Z", "" };
-	private static final String[] list55 = { "S", "K", "L", "" };
-	private static final String[] list56 = { "ILLO", "ILLA", "ALLE", "" };
-	private static final String[] list57 = { "AS", "OS", "" };
-	private static final String[] list58 = { "A", "O", "" };
-	private static final String[] list59 = { "ALLE", "" };
-	private static final String[] list60 = { "UMB", "" };
-	private static final String[] list61 = { "ER", "" };
-	private static final String[] list62 = { "P", "B", "" };
-	private static final String[] list63 = { "IE", "" };
-	private static final String[] list64 = { "ME", "MA", "" };
-	private static final String[] list65 = { "ISL", "YSL", "" };
-	private static final String[] list66 = { "SUGAR", "" };
-	private static final String[] list67 = { "SH", "" };
-	private static final String[] list68 = { "HEIM", "HOEK", "HOLM", "HOLZ", "" };
-	private static final String[] list69 = { "SIO", "SIA", "" };
-	private static final String[] list70 = { "SIAN", "" };
-	private static final String[] list71 = { "M", "N", "L", "W", "" };
-	private static final String[] list72 = { "Z", "" };
-	private static final String[] list73 = { "Z", "" };
-	private static final String[] list74 = { "SC", "" };
-	private static final String[] list75 = { "OO", "ER", "EN", "UY", "ED", "EM", "" };
-	private static final String[] list76 = { "ER", "EN", "" };
-	private static final String[] list77 = { "I", "E", "Y", "" };
-	private static final String[] list78 = { "AI", "OI", "" };
-	private static final String[] list79 = { "S", "Z", "" };
-	private static final String[] list80 = { "TION", "" };
-	private static final String[] list81 = { "TIA", "TCH", "" };
-	private static final String[] list82 = { "TH", "" };
-	private static final String[] list83 = { "TTH", "" };
-	private static final String[] list84 = { "OM", "AM", "" };
-	private static final String[] list85 = { "VAN ", "VON ", "" };
-	private static final String[] list86 = { "SCH", "" };
-	private static final String[] list87 = { "T", "D", "" };
-	private static final String[] list88 = { "WR", "" };
-	private static final String[] list89 = { "WH", "" };
-	private static final String[] list90 = { "EWSKI", "EWSKY", "OWSKI", "OWSKY", "" };
-	private static final String[] list91 = { "SCH", "" };
-	private static final String[] list92 = { "WICZ", "WITZ", "" };
-	private static final String[] list93 = { "IAU", "EAU", "" };
-	private static final String[] list94 = { "AU", "OU", "" };
-	private static final String[] list95 = { "C", "X", "" };
-
-	// DMV: used by the orininal code which returned two phonetic code, but not the
-	// current code
-	// private static final String[] list96 = {
-	// "ZO", "ZI", "ZA", ""
-	// };
-
-	/**
-	 * ˹նб
-	 * 
-	 * @param in 
+	/**
+	 * Creates an encoder that produces codes of any length.
+	 */
+	public DoubleMeta() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates an encoder that stops as soon as the code reaches the given
+	 * length. The codes are identical to the unbounded ones truncated to
+	 * <code>maxCodeLength</code>, but long words only cost the work needed to
+	 * produce that many symbols.
+	 *
+	 * @param maxCodeLength the maximum length of the codes
+	 * @throws IllegalArgumentException if maxCodeLength is not positive
+	 */
+	public DoubleMeta(int maxCodeLength) {
+		this(null, maxCodeLength);
+	}
+
+	/**
+	 * Creates an encoder running other rules than the Double Metaphone ones,
+	 * e.g. a variant tuned for names derived with
+	 * {@link RuleSet#builder(RuleSet)}.
+	 *
+	 * @param rules the rules, or null for the built-in Double Metaphone rules
+	 * @param maxCodeLength the maximum length of the codes
+	 * @throws IllegalArgumentException if maxCodeLength is not positive
+	 */
+	public DoubleMeta(RuleSet rules, int maxCodeLength) {
+		if (maxCodeLength < 1)
+			throw new IllegalArgumentException("maxCodeLength=" + maxCodeLength);
+		this.rules = rules;
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	/**
+	 * Returns the rules run by this instance. The built-in rules are run by
+	 * hand-written code, which gives the same codes as
+	 * {@link RuleSet#DOUBLE_METAPHONE}.
+	 *
+	 * @return the rules
+	 */
+	public final RuleSet getRules() {
+		return (rules != null) ? rules : RuleSet.DOUBLE_METAPHONE;
+	}
+
+	/**
+	 * Returns the maximum length of the codes produced by this instance.
+	 *
+	 * @return the maximum code length, Integer.MAX_VALUE if unbounded
+	 */
+	public final int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	/**
+	 * The maximum number of code symbols held by a code packed with
+	 * {@link #transformToLong(CharSequence)}. Each symbol takes 4 bits and the
+	 * lowest 4 bits hold the overflow flag.
+	 */
+	public static final int MAX_PACKED_LENGTH = 15;
+
+	// 打包代码的最低位：代码超过 MAX_PACKED_LENGTH 个符号时置位
+	private static final long PACKED_OVERFLOW = 1L;
+
+	// 按字符顺序排列的代码符号，下标+1 即打包值（0 表示没有符号），
+	// 这样打包代码的无符号比较与代码字符串的字典序一致
+	private static final char[] packedSymbols = { '0', 'A', 'B', 'F', 'H', 'J', 'K', 'L', 'M', 'N', 'P', 'R', 'S', 'T',
+			'X' };
+	private static final byte[] packedValues = packedValues();
+
+	/**
+	 * The maximum length of the codes produced by this instance.
+	 */
+	private final int maxCodeLength;
+
+	// 为 null 时使用下面手写的规则
+	private final RuleSet rules;
+
+	private static final long[] myList = keys("GN", "KN", "PN", "WR", "PS", "");
+	private static final long[] list1 = keys("ACH", "");
+	private static final long[] list2 = keys("BACHER", "MACHER", "");
+	private static final long[] list3 = keys("CAESAR", "");
+	private static final long[] list4 = keys("CHIA", "");
+	private static final long[] list5 = keys("CH", "");
+	private static final long[] list6 = keys("CHAE", "");
+	private static final long[] list7 = keys("HARAC", "HARIS", "");
+	private static final long[] list8 = keys("HOR", "HYM", "HIA", "HEM", "");
+	private static final long[] list9 = keys("CHORE", "");
+	private static final long[] list10 = keys("VAN ", "VON ", "");
+	private static final long[] list11 = keys("SCH", "");
+	private static final long[] list12 = keys("ORCHES", "ARCHIT", "ORCHID", "");
+	private static final long[] list13 = keys("T", "S", "");
+	private static final long[] list14 = keys("A", "O", "U", "E", "");
+	private static final long[] list15 = keys("L", "R", "N", "M", "B", "H", "F", "V", "W", " ", "");
+	private static final long[] list16 = keys("MC", "");
+	private static final long[] list17 = keys("CZ", "");
+	private static final long[] list18 = keys("WICZ", "");
+	private static final long[] list19 = keys("CIA", "");
+	private static final long[] list20 = keys("CC", "");
+	private static final long[] list21 = keys("I", "E", "H", "");
+	private static final long[] list22 = keys("HU", "");
+	private static final long[] list23 = keys("UCCEE", "UCCES", "");
+	private static final long[] list24 = keys("CK", "CG", "CQ", "");
+	private static final long[] list25 = keys("CI", "CE", "CY", "");
+	// 只用于替代语音代码
+	private static final long[] list26 = keys("CIO", "CIE", "CIA", "");
+	private static final long[] list27 = keys(" C", " Q", " G", "");
+	private static final long[] list28 = keys("C", "K", "Q", "");
+	private static final long[] list29 = keys("CE", "CI", "");
+	private static final long[] list30 = keys("DG", "");
+	private static final long[] list31 = keys("I", "E", "Y", "");
+	private static final long[] list32 = keys("DT", "DD", "");
+	private static final long[] list33 = keys("B", "H", "D", "");
+	private static final long[] list34 = keys("B", "H", "D", "");
+	private static final long[] list35 = keys("B", "H", "");
+	private static final long[] list36 = keys("C", "G", "L", "R", "T", "");
+	private static final long[] list37 = keys("EY", "");
+	private static final long[] list38 = keys("LI", "");
+	private static final long[] list39 = keys("ES", "EP", "EB", "EL", "EY", "IB", "IL", "IN", "IE", "EI", "ER", "");
+	private static final long[] list40 = keys("ER", "");
+	private static final long[] list41 = keys("DANGER", "RANGER", "MANGER", "");
+	private static final long[] list42 = keys("E", "I", "");
+	private static final long[] list43 = keys("RGY", "OGY", "");
+	private static final long[] list44 = keys("E", "I", "Y", "");
+	private static final long[] list45 = keys("AGGI", "OGGI", "");
+	private static final long[] list48 = keys("ET", "");
+
+	// 只用于替代语音代码
+	private static final long[] list49 = keys("IER ", "");
+	private static final long[] list50 = keys("JOSE", "");
+	private static final long[] list51 = keys("SAN ", "");
+	private static final long[] list53 = keys("JOSE", "");
+	private static final long[] list54 = keys("L", "T", "K", "S", "N", "M", "B", "Z", "");
+	private static final long[] list55 = keys("S", "K", "L", "");
+	private static final long[] list56 = keys("ILLO", "ILLA", "ALLE", "");
+	private static final long[] list57 = keys("AS", "OS", "");
+	private static final long[] list58 = keys("A", "O", "");
+	private static final long[] list59 = keys("ALLE", "");
+	private static final long[] list60 = keys("UMB", "");
+	private static final long[] list61 = keys("ER", "");
+	private static final long[] list62 = keys("P", "B", "");
+	private static final long[] list65 = keys("ISL", "YSL", "");
+	private static final long[] list66 = keys("SUGAR", "");
+	private static final long[] list67 = keys("SH", "");
+	private static final long[] list68 = keys("HEIM", "HOEK", "HOLM", "HOLZ", "");
+	private static final long[] list69 = keys("SIO", "SIA", "");
+	private static final long[] list70 = keys("SIAN", "");
+	private static final long[] list71 = keys("M", "N", "L", "W", "");
+	private static final long[] list72 = keys("Z", "");
+	private static final long[] list73 = keys("Z", "");
+	private static final long[] list74 = keys("SC", "");
+	private static final long[] list75 = keys("OO", "ER", "EN", "UY", "ED", "EM", "");
+	private static final long[] list76 = keys("ER", "EN", "");
+	private static final long[] list77 = keys("I", "E", "Y", "");
+	private static final long[] list79 = keys("S", "Z", "");
+	private static final long[] list80 = keys("TION", "");
+	private static final long[] list81 = keys("TIA", "TCH", "");
+	private static final long[] list82 = keys("TH", "");
+	private static final long[] list83 = keys("TTH", "");
+	private static final long[] list84 = keys("OM", "AM", "");
+	private static final long[] list87 = keys("T", "D", "");
+	private static final long[] list88 = keys("WR", "");
+	private static final long[] list89 = keys("WH", "");
+	private static final long[] list90 = keys("EWSKI", "EWSKY", "OWSKI", "OWSKY", "");
+	private static final long[] list92 = keys("WICZ", "WITZ", "");
+	private static final long[] list95 = keys("C", "X", "");
+
+	// 只用于替代语音代码
+	private static final long[] list96 = keys("ZO", "ZI", "ZA", "");
+
+	/**
+	 * 斯拉夫日耳曼语判别
 	 * 
-	 * @return Ƿ˹նַ
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 *
+	 * @return 是否出现斯拉夫日耳曼语字符
 	 */
-	private final static boolean SlavoGermanic(String in) {
-		// һַ򷵻true
-		if ((in.indexOf("W") > -1) || (in.indexOf("K") > -1) || (in.indexOf("CZ") > -1) || (in.indexOf("WITZ") > -1))
-			return true;
+	final static boolean SlavoGermanic(CharSequence in, int off, int len) {
+		// 如果出现W、K或CZ则返回true（WITZ 已包含 W，无需单独查找）
+		for (int i = 0; i < len; i++) {
+			char c = charAt(in, off, len, i);
+			if ((c == 'W') || (c == 'K') || ((c == 'C') && (charAt(in, off, len, i + 1) == 'Z')))
+				return true;
+		}
+		return false;
+	}
+
+	// wordFlags 的判别结果，每个判别占一位
+	/** 出现 W、K 或 CZ */
+	static final int SLAVO_GERMANIC = 1;
+	/** 以 VAN 、VON 开头（list10） */
+	static final int VAN_VON = 2;
+	/** 以 SCH 开头（list11） */
+	static final int SCH = 4;
+	/** 以 CHORE 开头（list9） */
+	static final int CHORE = 8;
+	/** 以 MC 开头（list16） */
+	static final int MC = 16;
+	/** 以 SAN 开头（list51） */
+	static final int SAN = 32;
+	/** 以 DANGER 、RANGER 或 MANGER 开头（list41） */
+	static final int ANGER = 64;
+
+	/**
+	 * 编码前对整个单词的一次扫描：判别斯拉夫日耳曼语字符，同时把词首 PREFIX_REACH 个字符打包，
+	 * 得到规则中按词首判断的各个条件，规则只读取结果而不再逐步比较词首
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 *
+	 * @return SLAVO_GERMANIC 、VAN_VON 等判别结果的组合
+	 */
+	final static int wordFlags(CharSequence in, int off, int len) {
+		int flags = 0;
+		// 词首 PREFIX_REACH 个字符，超出单词的部分是空格；valid 是其中可以出现在规则里的前导字符数
+		long head = 0;
+		int valid = 0;
+		char previous = ' ';
+		int n = Math.max(len, PREFIX_REACH);
+		for (int i = 0; i < n; i++) {
+			char c = charAt(in, off, len, i);
+			if ((c == 'W') || (c == 'K') || ((c == 'Z') && (previous == 'C')))
+				flags |= SLAVO_GERMANIC;
+			if (i < PREFIX_REACH) {
+				head = (head << 8) | (c & 0xFF);
+				if ((valid == i) && (c >= ' ') && (c <= 'Z'))
+					valid++;
+			} else if ((flags & SLAVO_GERMANIC) != 0) {
+				break;
+			}
+			previous = c;
+		}
+		// 按首字母只比较可能匹配的列表
+		switch ((char) (head >>> (8 * (PREFIX_REACH - 1)))) {
+		case 'V':
+			if (headAt(head, valid, 4, list10))
+				flags |= VAN_VON;
+			break;
+		case 'S':
+			if (headAt(head, valid, 3, list11))
+				flags |= SCH;
+			else if (headAt(head, valid, 4, list51))
+				flags |= SAN;
+			break;
+		case 'C':
+			if (headAt(head, valid, 5, list9))
+				flags |= CHORE;
+			break;
+		case 'M':
+			if (headAt(head, valid, 2, list16))
+				flags |= MC;
+			else if (headAt(head, valid, 6, list41))
+				flags |= ANGER;
+			break;
+		case 'D':
+		case 'R':
+			if (headAt(head, valid, 6, list41))
+				flags |= ANGER;
+			break;
+		}
+		return flags;
+	}
+
+	/**
+	 * 判断词首 length 个字符是否匹配列表，与 stringAt(in, off, len, 0, length, list) 相同，也同样计入统计
+	 */
+	private final static boolean headAt(long head, int valid, int length, long[] list) {
+		// 未开启统计时 RuleProfile.ENABLED 是常量 false，JIT 会删除这个分支
+		if (RuleProfile.ENABLED)
+			return RuleProfile.stringAt(list, headMatches(head, valid, length, list));
+		return headMatches(head, valid, length, list);
+	}
+
+	/**
+	 * headAt 的实际比较，不计入统计
+	 */
+	private final static boolean headMatches(long head, int valid, int length, long[] list) {
+		if (valid < length)
+			return false;
+		long key = head >>> (8 * (PREFIX_REACH - length));
+		for (int i = 0; i < list.length; i++) {
+			if (list[i] == key)
+				return true;
+		}
 		return false;
 	}
 
 	/**
-	 * Ӹĸ
+	 * 获取单词中指定位置的大写字符，超出单词末尾时返回空格（代替原先附加的5个空格）
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param at 字符在单词中的位置
+	 *
+	 * @return 大写字符或空格
+	 */
+	final static char charAt(CharSequence in, int off, int len, int at) {
+		if (at >= len)
+			return ' ';
+		char c = in.charAt(off + at);
+		return (c < folded.length) ? folded[c] : Character.toUpperCase(c);
+	}
+
+	// Latin-1 和 Latin Extended-A 字符的大写及去重音后的基本字母
+	private static final char[] folded = foldTable();
+
+	// 无法通过兼容分解得到基本字母的字符，每两个字符一组：字符、基本字母
+	private static final String foldExceptions = "\u00c6A\u00e6A\u00d0D\u00f0D\u00d8O\u00f8O\u00deT\u00feT\u00dfS"
+			+ "\u0110D\u0111D\u0126H\u0127H\u0131I\u0138K\u0141L\u0142L\u014aN\u014bN\u0152O\u0153O";
+
+	/**
+	 * 生成大写及去重音转换表：ASCII 字母转大写；带重音的字母取兼容分解后的第一个 ASCII
+	 * 字母；\u00c7 和 \u00d1 有自己的编码规则，只转大写；其它字符按 Character.toUpperCase 转换
+	 *
+	 * @return 下标为字符、值为转换结果的表
+	 */
+	private final static char[] foldTable() {
+		char[] table = new char[0x180];
+		for (char c = 0; c < table.length; c++) {
+			table[c] = Character.toUpperCase(c);
+			if ((c < 0xC0) || (c == '\u00c7') || (c == '\u00e7') || (c == '\u00d1') || (c == '\u00f1'))
+				continue;
+			String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD);
+			for (int i = 0; i < decomposed.length(); i++) {
+				char base = (char) (decomposed.charAt(i) | 0x20);
+				if ((base >= 'a') && (base <= 'z')) {
+					table[c] = (char) (base - 'a' + 'A');
+					break;
+				}
+			}
+		}
+		for (int i = 0; i < foldExceptions.length(); i += 2)
+			table[foldExceptions.charAt(i)] = foldExceptions.charAt(i + 1);
+		return table;
+	}
+
+	/**
+	 * 添加辅音字母到语音代码和替代语音代码
 	 * 
-	 * @param primary 
-	 * @param main Ҫӵĸĸ
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时忽略
+	 * @param main 要添加到语音代码的辅音字母，为 null 时不添加
+	 * @param alt 要添加到替代语音代码的辅音字母，为 null 时不添加
 	 */
-	private final static void MetaphAdd(StringBuffer primary, String main) {
+	final static void MetaphAdd(StringBuilder primary, StringBuilder alternate, String main, String alt) {
 		if (main != null) {
 			primary.append(main);
 		}
+		if ((alternate != null) && (alt != null)) {
+			alternate.append(alt);
+		}
 	}
 
 	/**
-	 * Ӹĸ
+	 * 添加同一个辅音字母到语音代码和替代语音代码
+	 * 
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时忽略
+	 * @param main 要添加的辅音字母
+	 */
+	private final static void MetaphAdd(StringBuilder primary, StringBuilder alternate, String main) {
+		MetaphAdd(primary, alternate, main, main);
+	}
+
+	/**
+	 * 添加辅音字母到语音代码和替代语音代码
 	 *  
-	 * @param primary 
-	 * @param main Ҫӵĸĸ
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时忽略
+	 * @param main 要添加到语音代码的辅音字母
+	 * @param alt 要添加到替代语音代码的辅音字母
 	 */
-	private final static void MetaphAdd(StringBuffer primary, char main) {
+	private final static void MetaphAdd(StringBuilder primary, StringBuilder alternate, char main, char alt) {
 		primary.append(main);
+		if (alternate != null)
+			alternate.append(alt);
 	}
 
 	/**
-	 * жǷΪԪĸ
-	 * 
-	 * @param in ַʣ
-	 * @param at ǰַַеλ
-	 * @param length ַ
+	 * 添加同一个辅音字母到语音代码和替代语音代码
+	 *  
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时忽略
+	 * @param main 要添加的辅音字母
+	 */
+	private final static void MetaphAdd(StringBuilder primary, StringBuilder alternate, char main) {
+		MetaphAdd(primary, alternate, main, main);
+	}
+
+	/**
+	 * 判断是否为元音字母
 	 * 
-	 * @return ǷΪԪĸ
+	 * @param in 字符串（单词）
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param at 当前字符在单词中的位置
+	 *
+	 * @return 是否为元音字母
 	 */
-	private final static boolean isVowel(String in, int at, int length) {
-		if ((at < 0) || (at >= length))
+	final static boolean isVowel(CharSequence in, int off, int len, int at) {
+		if ((at < 0) || (at >= len))
 			return false;
-		char it = in.charAt(at);
+		char it = charAt(in, off, len, at);
 		if ((it == 'A') || (it == 'E') || (it == 'I') || (it == 'O') || (it == 'U') || (it == 'Y'))
 			return true;
 		return false;
 	}
 
 	/**
-	 * ƥ䵥еַ
+	 * 把规则字符串列表编译为打包的 long 键，每个字符占 8 位（规则最长 6 个字符），
+	 * 列表末尾的 ""（原 C++ 可变参数的结束标记）被忽略
 	 * 
-	 * @param string ַ
-	 * @param start ʼλ
-	 * @param length Ҫȡַ
-	 * @param list Ҫƥַбƥȡַ
+	 * @param list 规则字符串列表
+	 * 
+	 * @return 打包后的键
+	 */
+	final static long[] keys(String... list) {
+		int n = 0;
+		for (int i = 0; i < list.length; i++) {
+			if (list[i].length() > 0)
+				n++;
+		}
+		long[] keys = new long[n];
+		n = 0;
+		for (int i = 0; i < list.length; i++) {
+			String s = list[i];
+			if (s.length() == 0)
+				continue;
+			long key = 0;
+			for (int j = 0; j < s.length(); j++)
+				key = (key << 8) | s.charAt(j);
+			keys[n++] = key;
+		}
+		return keys;
+	}
+
+	/**
+	 * 用于匹配单词中的字符串
 	 * 
-	 * @return Ƿƥ
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param start 开始位置
+	 * @param length 要比较的字符串长度
+	 * @param list 要匹配的打包键列表（由 keys 编译）
+	 *
+	 * @return 返回是否匹配
+	 */
+	final static boolean stringAt(CharSequence in, int off, int len, int start, int length, long[] list) {
+		// 未开启统计时 RuleProfile.ENABLED 是常量 false，JIT 会删除这个分支
+		if (RuleProfile.ENABLED)
+			return RuleProfile.stringAt(list, matches(in, off, len, start, length, list));
+		return matches(in, off, len, start, length, list);
+	}
+
+	/**
+	 * stringAt 的实际比较，不计入统计
 	 */
-	private final static boolean stringAt(String string, int start, int length, String[] list) {
-		if ((start < 0) || (start >= string.length()) || list.length == 0)
+	private final static boolean matches(CharSequence in, int off, int len, int start, int length, long[] list) {
+		if ((start < 0) || (start >= len + 5))
 			return false;
-		//ȡַ string ִ
-		String substr = string.substring(start, start + length);
+		// 把要比较的 length 个字符打包成一个 long，再与列表中的键逐个比较
+		long key = 0;
+		for (int j = 0; j < length; j++) {
+			char c = charAt(in, off, len, start + j);
+			// 规则中只有大写字母和空格，其它字符不可能匹配
+			if ((c < ' ') || (c > 'Z'))
+				return false;
+			key = (key << 8) | c;
+		}
 		for (int i = 0; i < list.length; i++) {
-			if (list[i].equals(substr))
+			if (list[i] == key)
 				return true;
 		}
 		return false;
@@ -268,755 +577,1438 @@ public class DoubleMeta implements Transformator {
 	 * @param word the text to transform
 	 * @return the result of the phonetic transformation
 	 */
-	// 뵥ʣʵɢ
+	// 输入单词，返回最合适的语音散列
 	/*
-	 * 1. Ӣﵥʡ
-	 * 2. ɾԱ뵥еķӢĸַĸȫתΪдʽ
-	 * 3. Դ׵ĸĸϽбǰԤ
-	 * ĸ AE-GN-KN-PN-  WR- λڴʱɾеĸ
-	 * ɾλڴ׵ĸ WH- е Hλڴ׵ĸ X 滻 S 
-	 * 4. ڵظĸش
-	 * 5. ձб루룩
-	 * (1) Ԫĸ AEIOU λڴʱԱλλʱɾ
-	 * (2) Ա뵥ʵĳĸ֮иĸ Metaphone תй涨ĶӦϵתɾ
-	 * 6.  Metaphone 롣
+	 * 1. 输入英语单词。
+	 * 2. 删除或忽略被编码单词中的非英语字母字符并把字母全部转换为大写形式。
+	 * 3. 对词首的字母或字母组合进行编码前的预处理。
+	 * 字母组合 AE-、GN-、KN-、PN- 或 WR- 位于词首时，删除其中的首字母；
+	 * 删除位于词首的字母组合 WH- 中的 H；将位于词首的字母 X 替换成 S 。
+	 * 4. 对相邻的重复字母进行消重处理。
+	 * 5. 按照编码规则进行编码（生成语音代码）：
+	 * (1) 元音字母 A、E、I、O、U 位于词首时予以保留，位于其它位置时则删除。
+	 * (2) 对被编码单词的除首字母之外的所有辅音字母根据 Metaphone 的语音代码转换规则中规定的对应关系进行转换或删除处理。
+	 * 6. 输出 Metaphone 语音代码。
 	 */
 	public final String transform(String word) {
-		// ʼ볤Ϊʳ+5
-		StringBuffer primary = new StringBuffer(word.length() + 5);
-		// ĸȫתΪдʽ5ո
-		String in = word.toUpperCase() + "     ";
-		// 趨ַеλã0Ϊף
+		// 初始化语音代码长度为单词长度+5
+		StringBuilder primary = new StringBuilder(word.length() + 5);
+		transform(word, 0, word.length(), primary);
+		return primary.toString();
+	}
+
+	/**
+	 * Allocation-free variant of {@link #transform(String)}. The characters
+	 * <code>src[off, off + len)</code> are encoded and the phonetic code is
+	 * appended to <code>dst</code>, so callers that reuse the same builder
+	 * allocate nothing per word.
+	 *
+	 * @param src the text containing the word to transform
+	 * @param off the index of the first character of the word
+	 * @param len the number of characters in the word
+	 * @param dst the builder the phonetic code is appended to
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 */
+	public final void transform(CharSequence src, int off, int len, StringBuilder dst) {
+		checkRange(src, off, len);
+		run(src, off, len, maxCodeLength, dst, null);
+	}
+
+	/**
+	 * Computes both the primary and the alternate phonetic code of the word in
+	 * one pass. The alternate code differs from the primary one for words with
+	 * two plausible pronunciations, e.g. HJMN and HKMN for "hegemony".
+	 *
+	 * @param word the text to transform
+	 * @return the primary and alternate codes
+	 */
+	public final DoubleMetaResult transformBoth(CharSequence word) {
+		StringBuilder primary = new StringBuilder(word.length() + 5);
+		StringBuilder alternate = new StringBuilder(word.length() + 5);
+		transformBoth(word, 0, word.length(), primary, alternate);
+		return new DoubleMetaResult(primary.toString(), alternate.toString());
+	}
+
+	/**
+	 * Allocation-free variant of {@link #transformBoth(CharSequence)}. The
+	 * primary code is appended to <code>primary</code> and the alternate code to
+	 * <code>alternate</code>; the primary code is the one
+	 * {@link #transform(CharSequence, int, int, StringBuilder)} produces.
+	 *
+	 * @param src the text containing the word to transform
+	 * @param off the index of the first character of the word
+	 * @param len the number of characters in the word
+	 * @param primary the builder the primary code is appended to
+	 * @param alternate the builder the alternate code is appended to
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 */
+	public final void transformBoth(CharSequence src, int off, int len, StringBuilder primary,
+			StringBuilder alternate) {
+		checkRange(src, off, len);
+		run(src, off, len, maxCodeLength, primary, alternate);
+	}
+
+	/**
+	 * Computes the phonetic code of the word and packs it into a long, 4 bits
+	 * per symbol with the first symbol in the highest bits. Codes longer than
+	 * {@link #MAX_PACKED_LENGTH} symbols are truncated and flagged, see
+	 * {@link #isPackedOverflow(long)}; codes cut by the configured maximum code
+	 * length are not flagged. Packed codes compared with
+	 * {@link Long#compareUnsigned(long, long)} sort like the code strings.
+	 *
+	 * @param word the text to transform
+	 * @return the packed phonetic code
+	 */
+	public final long transformToLong(CharSequence word) {
+		return transformToLong(word, 0, word.length(), new StringBuilder(word.length() + 5));
+	}
+
+	/**
+	 * Allocation-free variant of {@link #transformToLong(CharSequence)}. The code
+	 * is built in <code>scratch</code> past its current length, which is
+	 * restored before returning.
+	 *
+	 * @param src the text containing the word to transform
+	 * @param off the index of the first character of the word
+	 * @param len the number of characters in the word
+	 * @param scratch a builder reused between calls
+	 * @return the packed phonetic code
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 */
+	public final long transformToLong(CharSequence src, int off, int len, StringBuilder scratch) {
+		checkRange(src, off, len);
+		int start = scratch.length();
+		// 多编码一个符号即可判断是否溢出
+		run(src, off, len, Math.min(maxCodeLength, MAX_PACKED_LENGTH + 1), scratch, null);
+		long packed = pack(scratch, start, scratch.length());
+		scratch.setLength(start);
+		return packed;
+	}
+
+	/**
+	 * Encodes a word held as bytes, for input read from files or sockets. The
+	 * bytes <code>src[off, off + len)</code> are read with absolute gets and
+	 * the position of src is left alone. ASCII words are encoded in place
+	 * without decoding them and without allocating; words with other bytes are
+	 * decoded as UTF-8 and take the CharSequence path. The code is written as
+	 * ASCII bytes at the position of dst, which is advanced past it.
+	 *
+	 * @param src the bytes containing the word to transform
+	 * @param off the index in src of the first byte of the word
+	 * @param len the number of bytes in the word
+	 * @param dst the buffer the phonetic code is written to
+	 * @return the number of bytes written to dst
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 * @throws BufferOverflowException if dst has no room for the code
+	 */
+	public final int transform(ByteBuffer src, int off, int len, ByteBuffer dst) {
+		ByteScratch scratch = byteScratch.get();
+		StringBuilder code = scratch.code;
+		code.setLength(0);
+		CharSequence word = bytesOf(src, off, len, scratch.view);
+		run(word, 0, word.length(), maxCodeLength, code, null);
+		int n = code.length();
+		if (dst.remaining() < n)
+			throw new BufferOverflowException();
+		for (int i = 0; i < n; i++)
+			dst.put((byte) code.charAt(i));
+		return n;
+	}
+
+	/**
+	 * Encodes a word held as bytes and appends the code to a reused builder,
+	 * see {@link #transform(ByteBuffer, int, int, ByteBuffer)}.
+	 *
+	 * @param src the bytes containing the word to transform
+	 * @param off the index in src of the first byte of the word
+	 * @param len the number of bytes in the word
+	 * @param dst the builder the phonetic code is appended to
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 */
+	public final void transform(ByteBuffer src, int off, int len, StringBuilder dst) {
+		CharSequence word = bytesOf(src, off, len, byteScratch.get().view);
+		run(word, 0, word.length(), maxCodeLength, dst, null);
+	}
+
+	/**
+	 * Computes the packed phonetic code of a word held as bytes, see
+	 * {@link #transform(ByteBuffer, int, int, ByteBuffer)} and
+	 * {@link #transformToLong(CharSequence, int, int, StringBuilder)}.
+	 *
+	 * @param src the bytes containing the word to transform
+	 * @param off the index in src of the first byte of the word
+	 * @param len the number of bytes in the word
+	 * @param scratch a builder reused between calls
+	 * @return the packed phonetic code
+	 * @throws IndexOutOfBoundsException if off or len are out of range
+	 */
+	public final long transformToLong(ByteBuffer src, int off, int len, StringBuilder scratch) {
+		CharSequence word = bytesOf(src, off, len, byteScratch.get().view);
+		return transformToLong(word, 0, word.length(), scratch);
+	}
+
+	/**
+	 * 每个线程复用的字节视图和代码缓冲区，字节路径上的 ASCII 单词编码时不分配对象
+	 */
+	private static final class ByteScratch {
+		final AsciiSequence view = new AsciiSequence();
+		final StringBuilder code = new StringBuilder(32);
+	}
+
+	private static final ThreadLocal<ByteScratch> byteScratch = ThreadLocal.withInitial(ByteScratch::new);
+
+	/**
+	 * 把 src 中的单词包装成字符序列：纯 ASCII 时用 view 直接读字节，否则按 UTF-8 解码
+	 */
+	private final static CharSequence bytesOf(ByteBuffer src, int off, int len, AsciiSequence view) {
+		if ((off < 0) || (len < 0) || (len > src.limit() - off))
+			throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", limit=" + src.limit());
+		if (AsciiSequence.isAscii(src, off, len))
+			return view.wrap(src, off, len);
+		ByteBuffer word = src.duplicate();
+		word.limit(off + len).position(off);
+		return StandardCharsets.UTF_8.decode(word);
+	}
+
+	/**
+	 * Computes the phonetic codes of many words. Large batches are split across
+	 * the common ForkJoinPool, small ones are encoded on the calling thread.
+	 *
+	 * @param words the words to transform
+	 * @return the codes, in the order of the words
+	 */
+	public final String[] transformAll(String[] words) {
+		String[] codes = new String[words.length];
+		BatchTransform.run(this, words, codes, null);
+		return codes;
+	}
+
+	/**
+	 * Computes the packed phonetic codes of many words, see
+	 * {@link #transformAll(String[])} and {@link #transformToLong(CharSequence)}.
+	 *
+	 * @param words the words to transform
+	 * @return the packed codes, in the order of the words
+	 */
+	public final long[] transformAllToLong(CharSequence[] words) {
+		long[] packed = new long[words.length];
+		transformAllToLong(words, packed);
+		return packed;
+	}
+
+	/**
+	 * Computes the packed phonetic codes of many words into a reused array.
+	 *
+	 * @param words the words to transform
+	 * @param packed receives the packed codes, at least as long as words
+	 * @throws IllegalArgumentException if packed is shorter than words
+	 */
+	public final void transformAllToLong(CharSequence[] words, long[] packed) {
+		if (packed.length < words.length)
+			throw new IllegalArgumentException("packed.length=" + packed.length + ", words.length=" + words.length);
+		BatchTransform.run(this, words, null, packed);
+	}
+
+	/**
+	 * Returns the number of symbols held by a packed code.
+	 *
+	 * @param packed a code returned by {@link #transformToLong(CharSequence)}
+	 * @return the number of symbols, at most {@link #MAX_PACKED_LENGTH}
+	 */
+	public static int packedLength(long packed) {
+		long symbols = packed & ~PACKED_OVERFLOW;
+		if (symbols == 0)
+			return 0;
+		// 最后一个符号所在的 4 位组决定长度
+		return (63 - Long.numberOfTrailingZeros(symbols)) / 4 + 1;
+	}
+
+	/**
+	 * Tells whether the code was longer than {@link #MAX_PACKED_LENGTH} symbols
+	 * and was truncated when packed.
+	 *
+	 * @param packed a code returned by {@link #transformToLong(CharSequence)}
+	 * @return true if the packed code was truncated
+	 */
+	public static boolean isPackedOverflow(long packed) {
+		return (packed & PACKED_OVERFLOW) != 0;
+	}
+
+	/**
+	 * Appends the symbols of a packed code to <code>dst</code>.
+	 *
+	 * @param packed a code returned by {@link #transformToLong(CharSequence)}
+	 * @param dst the builder the code is appended to
+	 */
+	public static void unpack(long packed, StringBuilder dst) {
+		for (int shift = 60; shift > 0; shift -= 4) {
+			int value = (int) (packed >>> shift) & 0xF;
+			if (value == 0)
+				break;
+			dst.append(packedSymbols[value - 1]);
+		}
+	}
+
+	/**
+	 * Decodes a packed code back into the code string.
+	 *
+	 * @param packed a code returned by {@link #transformToLong(CharSequence)}
+	 * @return the (possibly truncated) phonetic code
+	 */
+	public static String unpack(long packed) {
+		StringBuilder dst = new StringBuilder(MAX_PACKED_LENGTH);
+		unpack(packed, dst);
+		return dst.toString();
+	}
+
+	/**
+	 * 把语音代码 code[start, end) 打包为 long
+	 *
+	 * @param code 语音代码
+	 * @param start 开始位置
+	 * @param end 结束位置
+	 *
+	 * @return 打包后的代码
+	 */
+	final static long pack(CharSequence code, int start, int end) {
+		long packed = 0;
+		int n = Math.min(end - start, MAX_PACKED_LENGTH);
+		for (int i = 0; i < n; i++)
+			packed |= (long) packedValues[code.charAt(start + i)] << (60 - 4 * i);
+		if (end - start > MAX_PACKED_LENGTH)
+			packed |= PACKED_OVERFLOW;
+		return packed;
+	}
+
+	/**
+	 * 判断字符是否可以出现在语音代码中
+	 *
+	 * @param c 字符
+	 * @return 是代码符号时返回 true
+	 */
+	final static boolean isCodeSymbol(char c) {
+		return (c < packedValues.length) && (packedValues[c] != 0);
+	}
+
+	/**
+	 * 建立代码符号到打包值的查找表
+	 *
+	 * @return 以字符为下标的打包值
+	 */
+	private final static byte[] packedValues() {
+		byte[] values = new byte['X' + 1];
+		for (int i = 0; i < packedSymbols.length; i++)
+			values[packedSymbols[i]] = (byte) (i + 1);
+		return values;
+	}
+
+	/**
+	 * 检查 off、len 是否在 src 的范围内
+	 *
+	 * @param src 单词所在的字符序列
+	 * @param off 单词在 src 中的起始位置
+	 * @param len 单词长度
+	 */
+	private final static void checkRange(CharSequence src, int off, int len) {
+		if ((off < 0) || (len < 0) || (len > src.length() - off))
+			throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + src.length());
+	}
+
+	/**
+	 * 用本实例的规则编码，没有指定规则时使用手写的 encode
+	 */
+	private final void run(CharSequence in, int off, int len, int limit, StringBuilder primary,
+			StringBuilder alternate) {
+		if (rules == null)
+			encode(in, off, len, limit, primary, alternate, null);
+		else
+			rules.encode(in, off, len, limit, primary, alternate);
+	}
+
+	/**
+	 * 编码 in 中从 off 开始的 len 个字符，结果追加到 primary 和 alternate
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param limit 语音代码的最大长度，达到后立即停止编码
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * @param trace 不为 null 时记录每一步开始时主语音代码的长度，见 encodeFrom
+	 */
+	final static void encode(CharSequence in, int off, int len, int limit, StringBuilder primary,
+			StringBuilder alternate, int[] trace) {
+		// 语音代码和替代语音代码的结束位置
+		int end = endOf(primary, limit);
+		int altEnd = (alternate != null) ? endOf(alternate, limit) : 0;
+		// 一次扫描得到斯拉夫日耳曼语判别和词首的判别
+		int flags = wordFlags(in, off, len);
+		// 设定在字符串中的位置（0为词首）
+		int current = encodeStart(in, off, len, primary, alternate);
+		encodeFrom(in, off, len, current, len, flags, end, altEnd, primary, alternate, trace);
+		// 一次可能添加两个字母（如 KS），截去超出最大长度的部分
+		if (primary.length() > end)
+			primary.setLength(end);
+		if ((alternate != null) && (alternate.length() > altEnd))
+			alternate.setLength(altEnd);
+	}
+
+	/**
+	 * 词首的处理，返回编码循环开始的位置
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，可以为 null
+	 *
+	 * @return 编码循环开始的位置
+	 */
+	final static int encodeStart(CharSequence in, int off, int len, StringBuilder primary, StringBuilder alternate) {
 		int current = 0;
-		// 趨ַĳ
-		int length = in.length();
-		// ַС1򷵻ؿ
-		if (length < 1)
-			return "";
-		// 趨λ
-		int last = length - 1;
-		// жǷ˹նַ
-		boolean isSlavoGermaic = SlavoGermanic(in);
-		// ĸAE-GN-KN-PN-WR-myListΪ׼λڴʱ
-		// ɾеĸλǰһλУ
-		// ǰλƥmyList
-		if (stringAt(in, 0, 2, myList))
+		// 字母组合AE-、GN-、KN-、PN-或WR-（以myList为准）位于词首时，
+		// 删除其中的首字母（位置前进一位，不存入语音代码中）
+		// 如果前两位匹配myList
+		if (stringAt(in, off, len, 0, 2, myList))
 			current += 1;
-		// λڴ׵ĸX滻S浽
-		if (in.charAt(0) == 'X') {
-			MetaphAdd(primary, 'S');
+		// 将位于词首的字母X替换成S并存到语音代码中
+		if (charAt(in, off, len, 0) == 'X') {
+			MetaphAdd(primary, alternate, 'S');
 			current += 1;
 		}
-		// Ԫĸ AEIOU λڴʱԱλλʱɾ
-		while (current < length) {
-			// ȡǰλõַǰλΪ321ΪA E I O Uʱcurrent = 0
-			switch (in.charAt(current)) {
+		return current;
+	}
+
+	/**
+	 * 规则向后读取的最远距离：位置 current 上的一步只读取 current + FORWARD_REACH 之前的字符，
+	 * 以及当前位置是否是单词的最后一个字母。readsEnd 的步骤例外
+	 */
+	static final int FORWARD_REACH = 6;
+
+	/**
+	 * 位置 current 上的一步是否读取单词的结尾：ALLE 中的 LL 看单词是否以 A、O、AS 或 OS 结尾（Gallegos）。
+	 * 结果只影响替代语音代码，单词变长后这一步的替代语音代码可能改变
+	 */
+	static boolean readsEnd(CharSequence in, int off, int len, int current) {
+		return (charAt(in, off, len, current) == 'L') && stringAt(in, off, len, current - 1, 4, list59);
+	}
+
+	/**
+	 * 规则按绝对位置读取的范围：只读取词首 PREFIX_REACH 个字符（如 list10 的 VAN 、VON ）
+	 */
+	static final int PREFIX_REACH = 6;
+
+	/**
+	 * 编码循环，从 current 开始继续编码，直到 current 到达 stop 或语音代码达到最大长度。
+	 * 每一步只读取 current 之后 FORWARD_REACH 个字符以内、词首 PREFIX_REACH 个字符以内和单词之外的空格，
+	 * 所以一个修改了 i 及之后字符的单词可以从原单词在 i - FORWARD_REACH 之前开始的最后一步继续编码；
+	 * readsEnd 的步骤会读取单词的结尾，但只影响替代语音代码
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 开始的位置
+	 * @param stop 到达或超过该位置时停止
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param end 语音代码的结束位置
+	 * @param altEnd 替代语音代码的结束位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * @param trace 不为 null 时记录每一步开始时主语音代码的长度，以位置为下标
+	 *
+	 * @return 停止时的位置，语音代码达到最大长度时不小于 len
+	 */
+	final static int encodeFrom(CharSequence in, int off, int len, int current, int stop, int flags,
+			int end, int altEnd, StringBuilder primary, StringBuilder alternate, int[] trace) {
+		// 元音字母 A、E、I、O、U 位于词首时予以保留，位于其它位置时则删除
+		// 超出单词的位置都是空格，不会产生代码，因此只需遍历到单词末尾；语音代码达到最大长度时提前结束
+		while (current < stop) {
+			if ((primary.length() >= end) && ((alternate == null) || (alternate.length() >= altEnd)))
+				return len;
+			if (trace != null)
+				trace[current] = primary.length();
+			// 获取当前位置的字符（当前位置为3或2或1，词首为A E I O U时这里的current = 0）
+			char c = charAt(in, off, len, current);
+			if (RuleProfile.ENABLED)
+				RuleProfile.letter(c);
+			switch (c) {
 			case 'A':
 			case 'E':
 			case 'I':
 			case 'O':
 			case 'U':
 			case 'Y':
-				// Ѵ׵YΪAӵ
+				// 把词首的Y记为A加到语音代码中
 				if (current == 0)
-					MetaphAdd(primary, 'A');
+					MetaphAdd(primary, alternate, 'A');
 				current += 1;
 				break;
 			case 'B':
-				MetaphAdd(primary, 'P');
-				// һλҲBֻһP
-				if (in.charAt(current + 1) == 'B')
+				MetaphAdd(primary, alternate, 'P');
+				// 如果后一位也是B则只添加一个P到语音代码中
+				if (charAt(in, off, len, current + 1) == 'B')
 					current += 2;
 				else
 					current += 1;
 				break;
-			// бŵĸдCC/C++/Java source code	"\u00C7"
+			// 带有变音符号的拉丁字母大写C（C/C++/Java source code	"\u00C7"）
 			case '\u00C7':
-				// ΪSӵ
-				MetaphAdd(primary, 'S');
+				// 记为S加到语音代码中
+				MetaphAdd(primary, alternate, 'S');
 				current += 1;
 				break;
 			case 'C':
-				// ڵǰλǰλԪҴǰһλʼ3ĸƥlist1λIE
-				// ǰ2λʼ6ĸƥlist2
-				if ((current > 1) && !isVowel(in, current - 2, length) && stringAt(in, (current - 1), 3, list1)
-						&& (in.charAt(current + 2) != 'I') && (in.charAt(current + 2) != 'E')
-						|| stringAt(in, (current - 2), 6, list2)) {
-					// ΪK뵽
-					MetaphAdd(primary, 'K');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// λڴҴӵǰĸʼ6ĸƥlist3
-				if ((current == 0) && stringAt(in, current, 6, list3)) {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰĸʼ4ĸƥlist4
-				if (stringAt(in, current, 4, list4)) {
-					// ΪK뵽
-					MetaphAdd(primary, 'K');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰĸʼ2ĸƥlist5
-				if (stringAt(in, current, 2, list5)) {
-					// ǴҴӵǰĸʼ4ĸƥlist6
-					if ((current > 0) && stringAt(in, current, 4, list6)) {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-						// Ժһλ
-						current += 2;
-						break;
-					}
-					// λڴҴӺһĸʼ5ĸƥlist7
-					// Ӻһĸʼ3ĸƥlist8ҵʵǰ5ĸƥlist9
-					if ((current == 0) && stringAt(in, (current + 1), 5, list7)
-							|| stringAt(in, current + 1, 3, list8) && !stringAt(in, 0, 5, list9)) {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-						// Ժһλ
-						current += 2;
-						break;
-					}
-					// ʵǰ4ĸƥlist10򵥴ʵǰĸƥlist11ǰ2ĸʼ6ĸƥlist12
-					// 2ĸƥlist13(ǰĸƥlist14ǰλڴ)2ĸƥlist15
-					if (stringAt(in, 0, 4, list10) || stringAt(in, 0, 3, list11) || stringAt(in, current - 2, 6, list12)
-							|| stringAt(in, current + 2, 1, list13)
-							|| (stringAt(in, current - 1, 1, list14) || (current == 0))
-									&& stringAt(in, current + 2, 1, list15)) {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-					} else {
-						// ڴ
-						if (current > 0) {
-							// ǰĸƥlist16
-							if (stringAt(in, 0, 2, list16))
-								// ΪK뵽
-								MetaphAdd(primary, 'K');
-							else
-								// ΪX뵽
-								MetaphAdd(primary, 'X');
-						} else {
-							// ΪX뵽
-							MetaphAdd(primary, 'X');
-						}
-					}
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰʼ2ĸƥlist17Ҵӵǰʼ4ĸƥlist18
-				if (stringAt(in, current, 2, list17) && !stringAt(in, current, 4, list18)) {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰʼ2ĸƥlist19
-				if (stringAt(in, current, 2, list19)) {
-					// ΪX뵽
-					MetaphAdd(primary, 'X');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰʼ2ĸƥlist20Ҳǣڵʵ2ĸλҵĸΪMMC
-				if (stringAt(in, current, 2, list20) && !((current == 1) && in.charAt(0) == 'M')) {
-					// 2ĸƥlist212ĸʼ2ĸƥlist22
-					if (stringAt(in, current + 2, 1, list21) && !stringAt(in, current + 2, 2, list22)) {
-						// ǰλΪ2һλΪAAC  ǰһĸʼ5ĸƥlist23
-						if (((current == 1) && (in.charAt(current - 1) == 'A'))
-								|| stringAt(in, (current - 1), 5, list23))
-							// ΪKS뵽
-							MetaphAdd(primary, "KS");
-						else
-							// ΪX뵽
-							MetaphAdd(primary, 'X');
-						// Ժλ
-						current += 3;
-						break;
-					} else {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-						// Ժһλ
-						current += 2;
-						break;
-					}
-				}
-				// ӵǰĸʼ2ĸƥlist24
-				if (stringAt(in, current, 2, list24)) {
-					// ΪK뵽
-					MetaphAdd(primary, 'K');
-					// Ժһλ
-					current += 2;
-					break;
-				// ӵǰĸʼ2ĸƥlist25
-				} else if (stringAt(in, current, 2, list25)) {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ΪK뵽
-				MetaphAdd(primary, 'K');
-				// Ӻһĸʼ2ĸƥlist27
-				if (stringAt(in, current + 1, 2, list27))
-					// Ժλ
-					current += 3;
-				// һĸƥlist28Һһĸʼ2ĸƥlist29
-				else if (stringAt(in, current + 1, 1, list28) && !stringAt(in, current + 1, 2, list29))
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
+				current = encodeC(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'D':
-				// ӵǰĸʼ2ĸƥlist30
-				if (stringAt(in, current, 2, list30)) {
-					// 2ĸƥlist31
-					if (stringAt(in, current + 2, 1, list31)) {
-						// ΪJ뵽
-						MetaphAdd(primary, 'J');
-						// Ժλ
-						current += 3;
-						break;
-					} else {
-						// ΪTK뵽
-						MetaphAdd(primary, "TK");
-						// Ժһλ
-						current += 2;
-						break;
-					}
-				}
-				// ΪT뵽
-				MetaphAdd(primary, 'T');
-				// ӵǰĸʼ2ĸƥlist32
-				if (stringAt(in, current, 2, list32)) {
-					// Ժһλ
-					current += 2;
-				} else {
-					current += 1;
-				}
+				current = encodeD(in, off, len, current, primary, alternate);
 				break;
 			case 'F':
-				// һλҲF
-				if (in.charAt(current + 1) == 'F')
-					// Ժһλ
+				// 如果后一位也是F
+				if (charAt(in, off, len, current + 1) == 'F')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
-				// ΪF뵽
-				MetaphAdd(primary, 'F');
+				// 记为F加入到语音代码中
+				MetaphAdd(primary, alternate, 'F');
 				break;
 			case 'G':
-				// һλH
-				if (in.charAt(current + 1) == 'H') {
-					// ǴǰһĸԪ
-					if ((current > 0) && !isVowel(in, current - 1, length)) {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-						// Ժһλ
-						current += 2;
-						break;
-					}
-					// ǰλڵǰλ
-					if (current < 3) {
-						// λڴ
-						if (current == 0) {
-							// ڶλΪI
-							if (in.charAt(current + 2) == 'I')
-								// ΪJ뵽
-								MetaphAdd(primary, 'J');
-							else
-								// ΪK뵽
-								MetaphAdd(primary, 'K');
-							// Ժһλ
-							current += 2;
-							break;
-						}
-					}
-					// ڵǰ2λǰ2λƥlist33
-					// ڵǰ3λǰ3λƥlist34
-					// ڵǰ4λǰ4λƥlist35
-					if ((current > 1) && stringAt(in, current - 2, 1, list33)
-							|| ((current > 2) && stringAt(in, current - 3, 1, list34))
-							|| ((current > 3) && stringAt(in, current - 4, 1, list35))) {
-						// Ժһλ
-						current += 2;
-						break;
-					} else {
-						// ڵǰ3λǰ1λUǰ3λƥlist36
-						if ((current > 2) && (in.charAt(current - 1) == 'U') && stringAt(in, current - 3, 1, list36)) {
-							// ΪF뵽
-							MetaphAdd(primary, 'F');
-						} else {
-							// ڴǰ1λI
-							if ((current > 0) && (in.charAt(current - 1) != 'I'))
-								// ΪK뵽
-								MetaphAdd(primary, 'K');
-						}
-						// Ժһλ
-						current += 2;
-						break;
-					}
-				}
-				// һλN
-				if (in.charAt(current + 1) == 'N') {
-					// ǰǵʵĵڶĸĸԪҲ˹ն
-					if ((current == 1) && isVowel(in, 0, length) && !isSlavoGermaic) {
-						// ΪKN뵽
-						MetaphAdd(primary, "KN");
-					} else {
-						// ڶλʼ2ĸƥlist37ҺһĸYҲ˹ն
-						if (!stringAt(in, current + 2, 2, list37) && (in.charAt(current + 1) != 'Y')
-								&& !isSlavoGermaic) {
-							// ΪN뵽
-							MetaphAdd(primary, "N");
-						} else {
-							// ΪKN뵽
-							MetaphAdd(primary, "KN");
-						}
-					}
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// Ӻһλʼ2ĸƥlist38Ҳ˹ն
-				if (stringAt(in, current + 1, 2, list38) && !isSlavoGermaic) {
-					// ΪKL뵽
-					MetaphAdd(primary, "KL");
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ڴҺһλYӺһλʼ2ĸƥlist39
-				if ((current == 0) && ((in.charAt(current + 1) == 'Y') || stringAt(in, current + 1, 2, list39))) {
-					// ΪK뵽
-					MetaphAdd(primary, 'K');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// Ӻһλʼ2ĸƥlist40һλY
-				// ҵǰ6ĸƥlist41ǰһĸƥlist42Ҵǰһĸʼ3ĸƥlist43
-				if ((stringAt(in, current + 1, 2, list40) || (in.charAt(current + 1) == 'Y'))
-						&& !stringAt(in, 0, 6, list41) && !stringAt(in, current - 1, 1, list42)
-						&& !stringAt(in, current - 1, 3, list43)) {
-					// ΪK뵽
-					MetaphAdd(primary, 'K');
-					// Ժһĸ
-					current += 2;
-					break;
-				}
-				// һĸƥlist44ǰһĸʼ4ĸƥlist45
-				if (stringAt(in, current + 1, 1, list44) || stringAt(in, current - 1, 4, list45)) {
-					// ǰĸĸƥlist46򵥴ǰĸƥlist47Ӻһĸʼ2ĸƥlist48
-					if (stringAt(in, 0, 4, list46) || stringAt(in, 0, 3, list47)
-							|| stringAt(in, current + 1, 2, list48)) {
-						// ΪK뵽
-						MetaphAdd(primary, 'K');
-					} else {
-						// ΪJ뵽
-						MetaphAdd(primary, 'J');
-					}
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// һĸG
-				if (in.charAt(current + 1) == 'G')
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
-				// ΪK뵽
-				MetaphAdd(primary, 'K');
+				current = encodeG(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'H':
-				// ڴ׻ǰһĸԪҺһĸԪ
-				if (((current == 0) || isVowel(in, current - 1, length)) && isVowel(in, current + 1, length)) {
-					// ΪH뵽
-					MetaphAdd(primary, 'H');
-					// Ժһλ
-					current += 2;
-				} else {
-					current += 1;
-				}
+				current = encodeH(in, off, len, current, primary, alternate);
 				break;
 			case 'J':
-				// ӵǰĸʼ4ĸƥlist50򵥴ǰĸĸƥlist51
-				if (stringAt(in, current, 4, list50) || stringAt(in, 0, 4, list51)) {
-					// ڴĸĸΪջ򵥴ǰĸĸƥlist52
-					if ((current == 0) && (in.charAt(current + 4) == ' ') || stringAt(in, 0, 4, list52)) {
-						// ΪH뵽
-						MetaphAdd(primary, 'H');
-					} else {
-						// // ΪJ뵽
-						MetaphAdd(primary, 'J');
-					}
-					current += 1;
-					break;
-				}
-				// ڴҴӵǰĸʼ4ĸƥlist53
-				if ((current == 0) && !stringAt(in, current, 4, list53)) {
-					// ΪJ뵽
-					MetaphAdd(primary, 'J');
-				} else {
-					// ǰһĸԪҲ˹նңһĸAһĸO
-					if (isVowel(in, current - 1, length) && !isSlavoGermaic
-							&& ((in.charAt(current + 1) == 'A') || in.charAt(current + 1) == 'O')) {
-						// ΪJ뵽
-						MetaphAdd(primary, 'J');
-					} else {
-						// һĸ
-						if (current == last) {
-							// ΪJ뵽
-							MetaphAdd(primary, 'J');
-						} else {
-							// һλƥlist54ǰһλƥlist55
-							if (!stringAt(in, current + 1, 1, list54) && !stringAt(in, current - 1, 1, list55)) {
-								// ΪJ뵽
-								MetaphAdd(primary, 'J');
-							}
-						}
-					}
-				}
-				// һλJ
-				if (in.charAt(current + 1) == 'J')
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
+				current = encodeJ(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'K':
-				// һλK
-				if (in.charAt(current + 1) == 'K')
-					// Ժһλ
+				// 如果后一位是K
+				if (charAt(in, off, len, current + 1) == 'K')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
-				// ΪK뵽
-				MetaphAdd(primary, 'K');
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
 				break;
 			case 'L':
-				// һλL
-				if (in.charAt(current + 1) == 'L') {
-					// ǰλڵʵλҴǰһλʼ4ĸƥlist56
-					// 򣨵ĸƥlist57򵥴һλƥlist58Ҵӵǰλõǰһĸʼ4ĸƥlist59
-					if (((current == (length - 3)) && stringAt(in, current - 1, 4, list56))
-							|| ((stringAt(in, last - 1, 2, list57) || stringAt(in, last, 1, list58))
-									&& stringAt(in, current - 1, 4, list59))) {
-						// ΪL뵽
-						MetaphAdd(primary, 'L');
-						// Ժһλ
-						current += 2;
-						break;
-					}
-					// Ժһλ
-					current += 2;
-				} else
-					current += 1;
-				// ΪL뵽
-				MetaphAdd(primary, 'L');
+				current = encodeL(in, off, len, current, primary, alternate);
 				break;
 			case 'M':
-				// ǰһĸʼ3ĸƥlist60ҺһĸǵʵĽڶĸʼĸƥlist60
-				// һĸM
-				if ((stringAt(in, current - 1, 3, list60)
-						&& (((current + 1) == last) || stringAt(in, current + 2, 2, list61)))
-						|| (in.charAt(current + 1) == 'M'))
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
-				// ΪM뵽
-				MetaphAdd(primary, 'M');
+				current = encodeM(in, off, len, current, primary, alternate);
 				break;
 			case 'N':
-				// һĸN
-				if (in.charAt(current + 1) == 'N')
-					// Ժһλ
+				// 如果后一个字母是N
+				if (charAt(in, off, len, current + 1) == 'N')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
-				// ΪN뵽
-				MetaphAdd(primary, 'N');
+				// 记为N加入到语音代码中
+				MetaphAdd(primary, alternate, 'N');
 				break;
-			// ˺ŵĴдĸNC/C++/Java source code	"\u00D1"
+			// 带波浪号的大写拉丁字母N（C/C++/Java source code	"\u00D1"）
 			case '\u00D1':
 				current += 1;
-				// ΪN뵽
-				MetaphAdd(primary, 'N');
+				// 记为N加入到语音代码中
+				MetaphAdd(primary, alternate, 'N');
 				break;
 			case 'P':
-				// һλN
-				if (in.charAt(current + 1) == 'N') {
-					// ΪF뵽
-					MetaphAdd(primary, 'F');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// һλƥlist62
-				if (stringAt(in, current + 1, 1, list62))
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
-				// ΪP뵽
-				MetaphAdd(primary, 'P');
+				current = encodeP(in, off, len, current, primary, alternate);
 				break;
 			case 'Q':
-				// һλQ
-				if (in.charAt(current + 1) == 'Q')
-					// Ժһλ
+				// 如果后一位是Q
+				if (charAt(in, off, len, current + 1) == 'Q')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
-				// ΪK뵽
-				MetaphAdd(primary, 'K');
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
 				break;
 			case 'R':
-				// ǰһλҲ˹նǰĸƥlist63Ҵǰĸĸʼĸƥlist64
-				if ((current == last) && !isSlavoGermaic && stringAt(in, current - 2, 2, list63)
-						&& !stringAt(in, current - 4, 2, list64)) {
-					// MetaphAdd(primary, "");
-				} else
-					// ΪR뵽
-					MetaphAdd(primary, 'R');
-				// һλR
-				if (in.charAt(current + 1) == 'R')
-					// Ժһλ
+				// 记为R加入到语音代码中
+				MetaphAdd(primary, alternate, 'R');
+				// 如果后一位是R
+				if (charAt(in, off, len, current + 1) == 'R')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
 				break;
 			case 'S':
-				// ǰһĸʼ3ĸƥlist65
-				if (stringAt(in, current - 1, 3, list65)) {
-					current += 1;
-					break;
-				}
-				// λڴҴӵǰĸʼ5ĸƥlist66
-				if ((current == 0) && stringAt(in, current, 5, list66)) {
-					// ΪX뵽
-					MetaphAdd(primary, 'X');
-					current += 1;
-					break;
-				}
-				// ӵǰĸʼ2ĸƥlist67
-				if (stringAt(in, current, 2, list67)) {
-					// Ӻһĸʼ4ĸƥlist68
-					if (stringAt(in, current + 1, 4, list68))
-						// ΪS뵽
-						MetaphAdd(primary, 'S');
-					else
-						// ΪX뵽
-						MetaphAdd(primary, 'X');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// ӵǰĸʼ3ĸƥlist69ӵǰĸʼ4ĸƥlist70
-				if (stringAt(in, current, 3, list69) || stringAt(in, current, 4, list70)) {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-					// Ժλ
-					current += 3;
-					break;
-				}
-				// (λڴҺһĸƥlist71)һĸƥlist72
-				if (((current == 0) && stringAt(in, current + 1, 1, list71)) || stringAt(in, current + 1, 1, list72)) {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-					// һĸƥlist73
-					if (stringAt(in, current + 1, 1, list73))
-						// Ժһλ
-						current += 2;
-					else
-						current += 1;
-					break;
-				}
-				// ӵǰĸʼ2ĸƥlist74
-				if (stringAt(in, current, 2, list74)) {
-					// 2ĸƥH
-					if (in.charAt(current + 2) == 'H')
-						// 3ĸʼ2ĸƥlist75
-						if (stringAt(in, current + 3, 2, list75)) {
-							// 3ĸʼ2ĸƥlist76
-							if (stringAt(in, current + 3, 2, list76)) {
-								// ΪX뵽
-								MetaphAdd(primary, "X");
-							} else {
-								// ΪSK뵽
-								MetaphAdd(primary, "SK");
-							}
-							// Ժλ
-							current += 3;
-							break;
-						} else {
-							// ΪX뵽
-							MetaphAdd(primary, 'X');
-							// Ժλ
-							current += 3;
-							break;
-						}
-					// 2ĸƥlist77
-					if (stringAt(in, current + 2, 1, list77)) {
-						// ΪS뵽
-						MetaphAdd(primary, 'S');
-						// Ժλ
-						current += 3;
-						break;
-					}
-					// ΪSK뵽
-					MetaphAdd(primary, "SK");
-					// Ժλ
-					current += 3;
-					break;
-				}
-				// ǰһλǰĸƥlist78
-				if ((current == last) && stringAt(in, current - 2, 2, list78)) {
-					// MetaphAdd(primary, "");
-				} else
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
-				// һλƥlist79
-				if (stringAt(in, current + 1, 1, list79))
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
+				current = encodeS(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'T':
-				// ӵǰĸʼ4ĸƥlist80
-				if (stringAt(in, current, 4, list80)) {
-					// ΪX뵽
-					MetaphAdd(primary, 'X');
-					// Ժλ
-					current += 3;
-					break;
-				}
-				// ӵǰĸʼ3ĸƥlist81
-				if (stringAt(in, current, 3, list81)) {
-					// ΪX뵽
-					MetaphAdd(primary, 'X');
-					// Ժλ
-					current += 3;
-					break;
-				}
-				// ӵǰĸʼ2ĸƥlist82ӵǰĸʼ3ĸƥlist83
-				if (stringAt(in, current, 2, list82) || stringAt(in, current, 3, list83)) {
-					// 2ĸʼĸƥlist84򵥴ʵǰ4ĸƥlist85򵥴ʵǰ3ĸƥlist86
-					if (stringAt(in, (current + 2), 2, list84) || stringAt(in, 0, 4, list85)
-							|| stringAt(in, 0, 3, list86)) {
-						// ΪT뵽
-						MetaphAdd(primary, 'T');
-					} else {
-						// Ϊ0(th)뵽
-						MetaphAdd(primary, '0');
-					}
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// һĸƥlist87
-				if (stringAt(in, current + 1, 1, list87)) {
-					// Ժһλ
-					current += 2;
-				} else
-					current += 1;
-				// ΪT뵽
-				MetaphAdd(primary, 'T');
+				current = encodeT(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'V':
-				// һĸV
-				if (in.charAt(current + 1) == 'V')
-					// Ժһλ
+				// 如果后一个字母是V
+				if (charAt(in, off, len, current + 1) == 'V')
+					// 忽略后一位
 					current += 2;
 				else
 					current += 1;
-				// ΪF뵽
-				MetaphAdd(primary, 'F');
+				// 记为F加入到语音代码中
+				MetaphAdd(primary, alternate, 'F');
 				break;
 			case 'W':
-				// ӵǰĸʼ2ĸƥlist88
-				if (stringAt(in, current, 2, list88)) {
-					// ΪR뵽
-					MetaphAdd(primary, 'R');
-					// Ժһλ
-					current += 2;
-					break;
-				}
-				// λڴңһĸԪӵǰĸʼ2ĸƥlist89
-				if ((current == 0) && (isVowel(in, current + 1, length) || stringAt(in, current, 2, list89))) {
-					// ΪA뵽
-					MetaphAdd(primary, 'A');
-				}
-				// ǰһλǰһλԪǰһĸʼ5ĸƥlist90򵥴ǰλƥlist91
-				if (((current == last) && isVowel(in, current - 1, length)) || stringAt(in, current - 1, 5, list90)
-						|| stringAt(in, 0, 3, list91)) {
-					// ΪF뵽
-					MetaphAdd(primary, 'F');
-					current += 1;
-					break;
-				}
-				// ӵǰĸʼ4ĸƥlist92
-				if (stringAt(in, current, 4, list92)) {
-					// ΪTS뵽
-					MetaphAdd(primary, "TS");
-					// Ժλ
-					current += 4;
-					break;
-				}
-				current += 1;
+				current = encodeW(in, off, len, current, flags, primary, alternate);
 				break;
 			case 'X':
-				// ǰǣβңǰĸƥlist93ǰĸƥlist94
-				if (!((current == last)
-						&& (stringAt(in, current - 3, 3, list93) || stringAt(in, current - 2, 2, list94))))
-					// ΪKS뵽
-					MetaphAdd(primary, "KS");
-				// һĸƥlist95
-				if (stringAt(in, current + 1, 1, list95))
-					// Ժһλ
-					current += 2;
-				else
-					current += 1;
+				current = encodeX(in, off, len, current, primary, alternate);
 				break;
 			case 'Z':
-				// һĸH
-				if (in.charAt(current + 1) == 'H') {
-					// ΪJ뵽
-					MetaphAdd(primary, 'J');
-					// Ժһλ
-					current += 2;
-					break;
+				current = encodeZ(in, off, len, current, flags, primary, alternate);
+				break;
+			default:
+				current += 1;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * 计算追加 limit 个字母后 code 的长度
+	 *
+	 * @param code 语音代码
+	 * @param limit 语音代码的最大长度
+	 *
+	 * @return 语音代码的结束位置
+	 */
+	final static int endOf(StringBuilder code, int limit) {
+		int start = code.length();
+		return (limit > Integer.MAX_VALUE - start) ? Integer.MAX_VALUE : start + limit;
+	}
+
+	/**
+	 * 编码字母C
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeC(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果不在单词前两位且往前两位不是元音且从前一位开始3个字母匹配list1且往后两位不是I、E
+		// 或者往前第2位开始6个字母匹配list2
+		if ((current > 1) && !isVowel(in, off, len, current - 2) && stringAt(in, off, len, (current - 1), 3, list1)
+				&& (charAt(in, off, len, current + 2) != 'I') && (charAt(in, off, len, current + 2) != 'E')
+				|| stringAt(in, off, len, (current - 2), 6, list2)) {
+			// 记为K加入到语音代码中
+			MetaphAdd(primary, alternate, 'K');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果位于词首且从当前字母开始6个字母匹配list3
+		if ((current == 0) && stringAt(in, off, len, current, 6, list3)) {
+			// 记为S加入到语音代码中
+			MetaphAdd(primary, alternate, 'S');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前字母开始4个字母匹配list4
+		if (stringAt(in, off, len, current, 4, list4)) {
+			// 则记为K加入到语音代码中
+			MetaphAdd(primary, alternate, 'K');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前字母开始2个字母匹配list5
+		if (stringAt(in, off, len, current, 2, list5)) {
+			// 如果不是词首且从当前字母开始4个字母匹配list6
+			if ((current > 0) && stringAt(in, off, len, current, 4, list6)) {
+				// 记为K加入到语音代码中，X加入到替代语音代码中
+				MetaphAdd(primary, alternate, 'K', 'X');
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+			// 如果位于词首且从后一个字母开始5个字母匹配list7
+			// 或从后一个字母开始3个字母匹配list8且单词不以 CHORE 开头（list9）
+			if ((current == 0) && stringAt(in, off, len, (current + 1), 5, list7)
+					|| stringAt(in, off, len, current + 1, 3, list8) && ((flags & CHORE) == 0)) {
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+			// 如果单词以 VAN 、VON 或 SCH 开头（list10、list11）或往前第2个字母开始6个字母匹配list12
+			// 或者往后第2个字母匹配list13或者(前面的字母匹配list14或当前位于词首)并且往后第2个字母匹配list15
+			if (((flags & (VAN_VON | SCH)) != 0) || stringAt(in, off, len, current - 2, 6, list12)
+					|| stringAt(in, off, len, current + 2, 1, list13)
+					|| (stringAt(in, off, len, current - 1, 1, list14) || (current == 0))
+							&& stringAt(in, off, len, current + 2, 1, list15)) {
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
+			} else {
+				// 如果不在词首
+				if (current > 0) {
+					// 如果单词以 MC 开头（list16）
+					if ((flags & MC) != 0)
+						// 记为K加入到语音代码中
+						MetaphAdd(primary, alternate, 'K');
+					else
+						// 记为X加入到语音代码中，K加入到替代语音代码中
+						MetaphAdd(primary, alternate, 'X', 'K');
 				} else {
-					// ΪS뵽
-					MetaphAdd(primary, 'S');
+					// 记为X加入到语音代码中
+					MetaphAdd(primary, alternate, 'X');
 				}
-				// һλZ
-				if (in.charAt(current + 1) == 'Z')
-					// Ժһλ
+			}
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前开始2个字母匹配list17且从当前开始4个字母不匹配list18
+		if (stringAt(in, off, len, current, 2, list17) && !stringAt(in, off, len, current, 4, list18)) {
+			// 记为S加入到语音代码中，X加入到替代语音代码中
+			MetaphAdd(primary, alternate, 'S', 'X');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前开始2个字母匹配list19
+		if (stringAt(in, off, len, current, 2, list19)) {
+			// 记为X加入到语音代码中
+			MetaphAdd(primary, alternate, 'X');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前开始2个字母匹配list20且不是（在单词第2个字母的位置且单词首字母为M：MC）
+		if (stringAt(in, off, len, current, 2, list20) && !((current == 1) && charAt(in, off, len, 0) == 'M')) {
+			// 如果往后第2个字母匹配list21且往后第2个字母开始2个字母不匹配list22
+			if (stringAt(in, off, len, current + 2, 1, list21) && !stringAt(in, off, len, current + 2, 2, list22)) {
+				// 如果（当前位置为2且上一个位置为A：AC） 或 从前一个字母开始5个字母匹配list23
+				if (((current == 1) && (charAt(in, off, len, current - 1) == 'A'))
+						|| stringAt(in, off, len, (current - 1), 5, list23))
+					// 记为KS加入到语音代码中
+					MetaphAdd(primary, alternate, "KS");
+				else
+					// 记为X加入到语音代码中
+					MetaphAdd(primary, alternate, 'X');
+				// 忽略后两位
+				current += 3;
+				return current;
+			} else {
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+		}
+		// 如果从当前字母开始2个字母匹配list24
+		if (stringAt(in, off, len, current, 2, list24)) {
+			// 记为K加入到语音代码中
+			MetaphAdd(primary, alternate, 'K');
+			// 忽略后一位
+			current += 2;
+			return current;
+		// 如果从当前字母开始2个字母匹配list25
+		} else if (stringAt(in, off, len, current, 2, list25)) {
+			// 如果从当前字母开始3个字母匹配list26
+			if (stringAt(in, off, len, current, 3, list26))
+				// 记为S加入到语音代码中，X加入到替代语音代码中
+				MetaphAdd(primary, alternate, 'S', 'X');
+			else
+				// 记为S加入到语音代码中
+				MetaphAdd(primary, alternate, 'S');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 记为K加入到语音代码中
+		MetaphAdd(primary, alternate, 'K');
+		// 如果从后一个字母开始2个字母匹配list27
+		if (stringAt(in, off, len, current + 1, 2, list27))
+			// 忽略后两位
+			current += 3;
+		// 如果后一个字母匹配list28且后一个字母开始2个字母不匹配list29
+		else if (stringAt(in, off, len, current + 1, 1, list28) && !stringAt(in, off, len, current + 1, 2, list29))
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		return current;
+	}
+
+	/**
+	 * 编码字母D
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeD(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从当前字母开始2个字母匹配list30
+		if (stringAt(in, off, len, current, 2, list30)) {
+			// 如果往后第2个字母匹配list31
+			if (stringAt(in, off, len, current + 2, 1, list31)) {
+				// 记为J加入到语音代码中
+				MetaphAdd(primary, alternate, 'J');
+				// 忽略后两位
+				current += 3;
+				return current;
+			} else {
+				// 记为TK加入到语音代码中
+				MetaphAdd(primary, alternate, "TK");
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+		}
+		// 记为T加入到语音代码中
+		MetaphAdd(primary, alternate, 'T');
+		// 如果从当前字母开始2个字母匹配list32
+		if (stringAt(in, off, len, current, 2, list32)) {
+			// 忽略后一位
+			current += 2;
+		} else {
+			current += 1;
+		}
+		return current;
+	}
+
+	/**
+	 * 编码字母G
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeG(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果后一位是H
+		if (charAt(in, off, len, current + 1) == 'H') {
+			// 如果不是词首且前一个字母不是元音
+			if ((current > 0) && !isVowel(in, off, len, current - 1)) {
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+			// 如果当前位置在单词前三位
+			if (current < 3) {
+				// 如果位于词首
+				if (current == 0) {
+					// 如果往后第二位为I
+					if (charAt(in, off, len, current + 2) == 'I')
+						// 记为J加入到语音代码中
+						MetaphAdd(primary, alternate, 'J');
+					else
+						// 记为K加入到语音代码中
+						MetaphAdd(primary, alternate, 'K');
+					// 忽略后一位
 					current += 2;
+					return current;
+				}
+			}
+			// 如果不在单词前2位且往前第2位匹配list33
+			// 或不在单词前3位且往前第3位匹配list34
+			// 或不在单词前4位且往前第4位匹配list35
+			if ((current > 1) && stringAt(in, off, len, current - 2, 1, list33)
+					|| ((current > 2) && stringAt(in, off, len, current - 3, 1, list34))
+					|| ((current > 3) && stringAt(in, off, len, current - 4, 1, list35))) {
+				// 忽略后一位
+				current += 2;
+				return current;
+			} else {
+				// 如果不在单词前3位且前1位不是U且往前第3位匹配list36
+				if ((current > 2) && (charAt(in, off, len, current - 1) == 'U') && stringAt(in, off, len, current - 3, 1, list36)) {
+					// 记为F加入到语音代码中
+					MetaphAdd(primary, alternate, 'F');
+				} else {
+					// 如果不在词首且前1位不是I
+					if ((current > 0) && (charAt(in, off, len, current - 1) != 'I'))
+						// 记为K加入到语音代码中
+						MetaphAdd(primary, alternate, 'K');
+				}
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+		}
+		// 如果后一位是N
+		if (charAt(in, off, len, current + 1) == 'N') {
+			// 如果当前是单词的第二个字母且首字母是元音且不是斯拉夫日耳曼语
+			if ((current == 1) && isVowel(in, off, len, 0) && ((flags & SLAVO_GERMANIC) == 0)) {
+				// 记为KN加入到语音代码中，N加入到替代语音代码中
+				MetaphAdd(primary, alternate, "KN", "N");
+			} else {
+				// 如果往后第二位开始2个字母匹配list37且后一个字母不是Y且不是斯拉夫日耳曼语
+				if (!stringAt(in, off, len, current + 2, 2, list37) && (charAt(in, off, len, current + 1) != 'Y')
+						&& ((flags & SLAVO_GERMANIC) == 0)) {
+					// 记为N加入到语音代码中，KN加入到替代语音代码中
+					MetaphAdd(primary, alternate, "N", "KN");
+				} else {
+					// 记为KN加入到语音代码中
+					MetaphAdd(primary, alternate, "KN");
+				}
+			}
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从后一位开始2个字母匹配list38且不是斯拉夫日耳曼语
+		if (stringAt(in, off, len, current + 1, 2, list38) && ((flags & SLAVO_GERMANIC) == 0)) {
+			// 记为KL加入到语音代码中，L加入到替代语音代码中
+			MetaphAdd(primary, alternate, "KL", "L");
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果不在词首且后一位不是Y或从后一位开始2个字母匹配list39
+		if ((current == 0) && ((charAt(in, off, len, current + 1) == 'Y') || stringAt(in, off, len, current + 1, 2, list39))) {
+			// 记为K加入到语音代码中，J加入到替代语音代码中
+			MetaphAdd(primary, alternate, 'K', 'J');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从后一位开始2个字母匹配list40或后一位是Y
+		// 且单词不以 DANGER 、RANGER 或 MANGER 开头（list41）且前一个字母不匹配list42且从前一个字母开始3个字母不匹配list43
+		if ((stringAt(in, off, len, current + 1, 2, list40) || (charAt(in, off, len, current + 1) == 'Y'))
+				&& ((flags & ANGER) == 0) && !stringAt(in, off, len, current - 1, 1, list42)
+				&& !stringAt(in, off, len, current - 1, 3, list43)) {
+			// 记为K加入到语音代码中，J加入到替代语音代码中
+			MetaphAdd(primary, alternate, 'K', 'J');
+			// 忽略后一个字母
+			current += 2;
+			return current;
+		}
+		// 如果后一个字母匹配list44或从前一个字母开始4个字母匹配list45
+		if (stringAt(in, off, len, current + 1, 1, list44) || stringAt(in, off, len, current - 1, 4, list45)) {
+			// 如果单词以 VAN 、VON 或 SCH 开头或从后一个字母开始2个字母匹配list48
+			if (((flags & (VAN_VON | SCH)) != 0) || stringAt(in, off, len, current + 1, 2, list48)) {
+				// 记为K加入到语音代码中
+				MetaphAdd(primary, alternate, 'K');
+			} else {
+				// 如果从后一个字母开始4个字母匹配list49（法语词尾，总是发软音）
+				if (stringAt(in, off, len, current + 1, 4, list49))
+					// 记为J加入到语音代码中
+					MetaphAdd(primary, alternate, 'J');
 				else
-					current += 1;
-				break;
-			default:
+					// 记为J加入到语音代码中，K加入到替代语音代码中
+					MetaphAdd(primary, alternate, 'J', 'K');
+			}
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果后一个字母是G
+		if (charAt(in, off, len, current + 1) == 'G')
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		// 记为K加入到语音代码中
+		MetaphAdd(primary, alternate, 'K');
+		return current;
+	}
+
+	/**
+	 * 编码字母H
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeH(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果（在词首或前一个字母是元音）且后一个字母是元音
+		if (((current == 0) || isVowel(in, off, len, current - 1)) && isVowel(in, off, len, current + 1)) {
+			// 记为H加入到语音代码中
+			MetaphAdd(primary, alternate, 'H');
+			// 忽略后一位
+			current += 2;
+		} else {
+			current += 1;
+		}
+		return current;
+	}
+
+	/**
+	 * 编码字母J
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeJ(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从当前字母开始4个字母匹配list50或单词以 SAN 开头（list51）
+		if (stringAt(in, off, len, current, 4, list50) || ((flags & SAN) != 0)) {
+			// 如果在词首且往后第四个字母为空或单词以 SAN 开头
+			if ((current == 0) && (charAt(in, off, len, current + 4) == ' ') || ((flags & SAN) != 0)) {
+				// 记为H加入到语音代码中
+				MetaphAdd(primary, alternate, 'H');
+			} else {
+				// // 记为J加入到语音代码中，H加入到替代语音代码中
+				MetaphAdd(primary, alternate, 'J', 'H');
+			}
+			current += 1;
+			return current;
+		}
+		// 如果在词首且从当前字母开始4个字母匹配list53
+		if ((current == 0) && !stringAt(in, off, len, current, 4, list53)) {
+			// 记为J加入到语音代码中，A加入到替代语音代码中（Yankelovich/Jankelowicz）
+			MetaphAdd(primary, alternate, 'J', 'A');
+		} else {
+			// 如果前一个字母是元音且不是斯拉夫日耳曼语且（后一个字母是A或后一个字母是O）
+			if (isVowel(in, off, len, current - 1) && ((flags & SLAVO_GERMANIC) == 0)
+					&& ((charAt(in, off, len, current + 1) == 'A') || charAt(in, off, len, current + 1) == 'O')) {
+				// 记为J加入到语音代码中，H加入到替代语音代码中
+				MetaphAdd(primary, alternate, 'J', 'H');
+			} else {
+				// 如果后一位不匹配list54且前一位不匹配list55
+				if (!stringAt(in, off, len, current + 1, 1, list54) && !stringAt(in, off, len, current - 1, 1, list55)) {
+					// 记为J加入到语音代码中
+					MetaphAdd(primary, alternate, 'J');
+				}
+			}
+		}
+		// 如果后一位是J
+		if (charAt(in, off, len, current + 1) == 'J')
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		return current;
+	}
+
+	/**
+	 * 编码字母L
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeL(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 单词的最后一个字母，不计补上的空格
+		int last = len - 1;
+		// 如果后一位是L
+		if (charAt(in, off, len, current + 1) == 'L') {
+			// 如果当前位置在单词倒数第三位且从前一位开始4个字母匹配list56（Cabrillo、Gallegos）
+			// 或（单词最后两个字母匹配list57或单词最后一位匹配list58）且从当前位置的前一个字母开始4个字母匹配list59
+			if (((current == (len - 3)) && stringAt(in, off, len, current - 1, 4, list56))
+					|| ((stringAt(in, off, len, last - 1, 2, list57) || stringAt(in, off, len, last, 1, list58))
+							&& stringAt(in, off, len, current - 1, 4, list59))) {
+				// 记为L加入到语音代码中，替代语音代码不变
+				MetaphAdd(primary, alternate, "L", null);
+				// 忽略后一位
+				current += 2;
+				return current;
+			}
+			// 忽略后一位
+			current += 2;
+		} else
+			current += 1;
+		// 记为L加入到语音代码中
+		MetaphAdd(primary, alternate, 'L');
+		return current;
+	}
+
+	/**
+	 * 编码字母M
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeM(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从前一个字母开始3个字母匹配list60且从往后第二个字母开始两个字母匹配list61（Thumber）
+		// 或后一个字母是M
+		if ((stringAt(in, off, len, current - 1, 3, list60) && stringAt(in, off, len, current + 2, 2, list61))
+				|| (charAt(in, off, len, current + 1) == 'M'))
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		// 记为M加入到语音代码中
+		MetaphAdd(primary, alternate, 'M');
+		return current;
+	}
+
+	/**
+	 * 编码字母P
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeP(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果后一位是N
+		if (charAt(in, off, len, current + 1) == 'N') {
+			// 记为F加入到语音代码中
+			MetaphAdd(primary, alternate, 'F');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果后一位匹配list62
+		if (stringAt(in, off, len, current + 1, 1, list62))
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		// 记为P加入到语音代码中
+		MetaphAdd(primary, alternate, 'P');
+		return current;
+	}
+
+	/**
+	 * 编码字母S
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeS(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从前一个字母开始3个字母匹配list65
+		if (stringAt(in, off, len, current - 1, 3, list65)) {
+			current += 1;
+			return current;
+		}
+		// 如果位于词首且从当前字母开始5个字母匹配list66
+		if ((current == 0) && stringAt(in, off, len, current, 5, list66)) {
+			// 记为X加入到语音代码中，S加入到替代语音代码中
+			MetaphAdd(primary, alternate, 'X', 'S');
+			current += 1;
+			return current;
+		}
+		// 如果从当前字母开始2个字母匹配list67
+		if (stringAt(in, off, len, current, 2, list67)) {
+			// 如果从后一个字母开始4个字母匹配list68
+			if (stringAt(in, off, len, current + 1, 4, list68))
+				// 记为S加入到语音代码中
+				MetaphAdd(primary, alternate, 'S');
+			else
+				// 记为X加入到语音代码中
+				MetaphAdd(primary, alternate, 'X');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果从当前字母开始3个字母匹配list69或从当前字母开始4个字母匹配list70
+		if (stringAt(in, off, len, current, 3, list69) || stringAt(in, off, len, current, 4, list70)) {
+			// 如果不是斯拉夫日耳曼语
+			if (((flags & SLAVO_GERMANIC) == 0))
+				// 记为S加入到语音代码中，X加入到替代语音代码中
+				MetaphAdd(primary, alternate, 'S', 'X');
+			else
+				// 记为S加入到语音代码中
+				MetaphAdd(primary, alternate, 'S');
+			// 忽略后两位
+			current += 3;
+			return current;
+		}
+		// 如果(位于词首且后一个字母匹配list71)或后一个字母匹配list72
+		if (((current == 0) && stringAt(in, off, len, current + 1, 1, list71)) || stringAt(in, off, len, current + 1, 1, list72)) {
+			// 记为S加入到语音代码中，X加入到替代语音代码中
+			MetaphAdd(primary, alternate, 'S', 'X');
+			// 后一个字母匹配list73
+			if (stringAt(in, off, len, current + 1, 1, list73))
+				// 忽略后一位
+				current += 2;
+			else
 				current += 1;
+			return current;
+		}
+		// 如果从当前字母开始2个字母匹配list74
+		if (stringAt(in, off, len, current, 2, list74)) {
+			// 如果往后第2个字母匹配H
+			if (charAt(in, off, len, current + 2) == 'H')
+				// 如果从往后第3个字母开始2个字母匹配list75
+				if (stringAt(in, off, len, current + 3, 2, list75)) {
+					// 如果从往后第3个字母开始2个字母匹配list76
+					if (stringAt(in, off, len, current + 3, 2, list76)) {
+						// 记为X加入到语音代码中，SK加入到替代语音代码中
+						MetaphAdd(primary, alternate, "X", "SK");
+					} else {
+						// 记为SK加入到语音代码中
+						MetaphAdd(primary, alternate, "SK");
+					}
+					// 忽略后两位
+					current += 3;
+					return current;
+				} else {
+					// 如果位于词首且第4个字母不是元音也不是W
+					if ((current == 0) && !isVowel(in, off, len, 3) && (charAt(in, off, len, 3) != 'W'))
+						// 记为X加入到语音代码中，S加入到替代语音代码中
+						MetaphAdd(primary, alternate, 'X', 'S');
+					else
+						// 记为X加入到语音代码中
+						MetaphAdd(primary, alternate, 'X');
+					// 忽略后两位
+					current += 3;
+					return current;
+				}
+			// 如果往后第2个字母匹配list77
+			if (stringAt(in, off, len, current + 2, 1, list77)) {
+				// 记为S加入到语音代码中
+				MetaphAdd(primary, alternate, 'S');
+				// 忽略后两位
+				current += 3;
+				return current;
 			}
+			// 记为SK加入到语音代码中
+			MetaphAdd(primary, alternate, "SK");
+			// 忽略后两位
+			current += 3;
+			return current;
 		}
-		// 
-		return primary.toString();
+		// 记为S加入到语音代码中
+		MetaphAdd(primary, alternate, 'S');
+		// 如果后一位匹配list79
+		if (stringAt(in, off, len, current + 1, 1, list79))
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		return current;
+	}
+
+	/**
+	 * 编码字母T
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeT(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从当前字母开始4个字母匹配list80
+		if (stringAt(in, off, len, current, 4, list80)) {
+			// 记为X加入到语音代码中
+			MetaphAdd(primary, alternate, 'X');
+			// 忽略后两位
+			current += 3;
+			return current;
+		}
+		// 如果从当前字母开始3个字母匹配list81
+		if (stringAt(in, off, len, current, 3, list81)) {
+			// 记为X加入到语音代码中
+			MetaphAdd(primary, alternate, 'X');
+			// 忽略后两位
+			current += 3;
+			return current;
+		}
+		// 如果从当前字母开始2个字母匹配list82或从当前字母开始3个字母匹配list83
+		if (stringAt(in, off, len, current, 2, list82) || stringAt(in, off, len, current, 3, list83)) {
+			// 如果从往后第2个字母开始两个字母匹配list84或单词以 VAN 、VON 或 SCH 开头
+			if (stringAt(in, off, len, (current + 2), 2, list84) || ((flags & (VAN_VON | SCH)) != 0)) {
+				// 记为T加入到语音代码中
+				MetaphAdd(primary, alternate, 'T');
+			} else {
+				// 记为0(th)加入到语音代码中，T加入到替代语音代码中
+				MetaphAdd(primary, alternate, '0', 'T');
+			}
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果后一个字母匹配list87
+		if (stringAt(in, off, len, current + 1, 1, list87)) {
+			// 忽略后一位
+			current += 2;
+		} else
+			current += 1;
+		// 记为T加入到语音代码中
+		MetaphAdd(primary, alternate, 'T');
+		return current;
+	}
+
+	/**
+	 * 编码字母W
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeW(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果从当前字母开始2个字母匹配list88
+		if (stringAt(in, off, len, current, 2, list88)) {
+			// 记为R加入到语音代码中
+			MetaphAdd(primary, alternate, 'R');
+			// 忽略后一位
+			current += 2;
+			return current;
+		}
+		// 如果位于词首且（后一个字母是元音或从当前字母开始2个字母匹配list89）
+		if ((current == 0) && (isVowel(in, off, len, current + 1) || stringAt(in, off, len, current, 2, list89))) {
+			// 如果后一个字母是元音
+			if (isVowel(in, off, len, current + 1))
+				// 记为A加入到语音代码中，F加入到替代语音代码中（Wasserman 与 Vasserman）
+				MetaphAdd(primary, alternate, 'A', 'F');
+			else
+				// 记为A加入到语音代码中
+				MetaphAdd(primary, alternate, 'A');
+		}
+		// 如果从前一个字母开始5个字母匹配list90或单词以 SCH 开头
+		if (stringAt(in, off, len, current - 1, 5, list90) || ((flags & SCH) != 0)) {
+			// 记为F加入到语音代码中
+			MetaphAdd(primary, alternate, 'F');
+			current += 1;
+			return current;
+		}
+		// 如果是单词的最后一个字母且前一位是元音（Arnow）
+		if ((current == (len - 1)) && isVowel(in, off, len, current - 1)) {
+			// 只把F加入到替代语音代码中
+			MetaphAdd(primary, alternate, null, "F");
+			current += 1;
+			return current;
+		}
+		// 如果从当前字母开始4个字母匹配list92
+		if (stringAt(in, off, len, current, 4, list92)) {
+			// 记为TS加入到语音代码中，FX加入到替代语音代码中
+			MetaphAdd(primary, alternate, "TS", "FX");
+			// 忽略后三位
+			current += 4;
+			return current;
+		}
+		current += 1;
+		return current;
+	}
+
+	/**
+	 * 编码字母X
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeX(CharSequence in, int off, int len, int current,
+			StringBuilder primary, StringBuilder alternate) {
+		// 记为KS加入到语音代码中
+		MetaphAdd(primary, alternate, "KS");
+		// 如果后一个字母匹配list95
+		if (stringAt(in, off, len, current + 1, 1, list95))
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		return current;
+	}
+
+	/**
+	 * 编码字母Z
+	 * 
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param current 当前位置
+	 * @param flags 单词的判别结果，见 wordFlags
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 * 
+	 * @return 下一个要编码的位置
+	 */
+	private final static int encodeZ(CharSequence in, int off, int len, int current, int flags,
+			StringBuilder primary, StringBuilder alternate) {
+		// 如果后一个字母是H
+		if (charAt(in, off, len, current + 1) == 'H') {
+			// 记为J加入到语音代码中
+			MetaphAdd(primary, alternate, 'J');
+			// 忽略后一位
+			current += 2;
+			return current;
+		} else {
+			// 如果从后一个字母开始2个字母匹配list96或（是斯拉夫日耳曼语且前一个字母不是T）
+			if (stringAt(in, off, len, current + 1, 2, list96)
+					|| (((flags & SLAVO_GERMANIC) != 0) && ((current > 0) && charAt(in, off, len, current - 1) != 'T')))
+				// 记为S加入到语音代码中，TS加入到替代语音代码中
+				MetaphAdd(primary, alternate, "S", "TS");
+			else
+				// 记为S加入到语音代码中
+				MetaphAdd(primary, alternate, 'S');
+		}
+		// 如果后一位是Z
+		if (charAt(in, off, len, current + 1) == 'Z')
+			// 忽略后一位
+			current += 2;
+		else
+			current += 1;
+		return current;
 	}
 
 	/**
@@ -0,0 +1,81 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+/**
+ * The primary and alternate phonetic codes of a word, as computed by
+ * {@link DoubleMeta#transformBoth(CharSequence)}. For most words both codes are
+ * the same.
+ */
+public final class DoubleMetaResult {
+
+	private final String primary;
+	private final String alternate;
+
+	/**
+	 * @param primary the primary phonetic code
+	 * @param alternate the alternate phonetic code
+	 */
+	public DoubleMetaResult(String primary, String alternate) {
+		if ((primary == null) || (alternate == null))
+			throw new NullPointerException();
+		this.primary = primary;
+		this.alternate = alternate;
+	}
+
+	/**
+	 * @return the primary phonetic code, the one returned by
+	 *         {@link DoubleMeta#transform(String)}
+	 */
+	public String getPrimary() {
+		return primary;
+	}
+
+	/**
+	 * @return the alternate phonetic code
+	 */
+	public String getAlternate() {
+		return alternate;
+	}
+
+	/**
+	 * @return true if the alternate code differs from the primary one
+	 */
+	public boolean hasAlternate() {
+		return !primary.equals(alternate);
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof DoubleMetaResult))
+			return false;
+		DoubleMetaResult other = (DoubleMetaResult) o;
+		return primary.equals(other.primary) && alternate.equals(other.alternate);
+	}
+
+	public int hashCode() {
+		return 31 * primary.hashCode() + alternate.hashCode();
+	}
+
+	public String toString() {
+		return hasAlternate() ? primary + "/" + alternate : primary;
+	}
+}
@@ -0,0 +1,286 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static com.swabunga.spell.engine.RuleSet.advance;
+import static com.swabunga.spell.engine.RuleSet.after;
+import static com.swabunga.spell.engine.RuleSet.and;
+import static com.swabunga.spell.engine.RuleSet.at;
+import static com.swabunga.spell.engine.RuleSet.atEnd;
+import static com.swabunga.spell.engine.RuleSet.atIndex;
+import static com.swabunga.spell.engine.RuleSet.choose;
+import static com.swabunga.spell.engine.RuleSet.emit;
+import static com.swabunga.spell.engine.RuleSet.not;
+import static com.swabunga.spell.engine.RuleSet.or;
+import static com.swabunga.spell.engine.RuleSet.otherwise;
+import static com.swabunga.spell.engine.RuleSet.position;
+import static com.swabunga.spell.engine.RuleSet.positionFromEnd;
+import static com.swabunga.spell.engine.RuleSet.slavoGermanic;
+import static com.swabunga.spell.engine.RuleSet.vowel;
+import static com.swabunga.spell.engine.RuleSet.vowelAt;
+import static com.swabunga.spell.engine.RuleSet.when;
+
+/**
+ * The rules of {@link DoubleMeta} written with the {@link RuleSet} builder, in
+ * the order of the encodeX methods. Each rule keeps the listN keys of the
+ * original in the same place, so the two can be compared line by line.
+ */
+final class DoubleMetaphoneRules {
+
+	private DoubleMetaphoneRules() {
+	}
+
+	/**
+	 * @return a builder holding the Double Metaphone rules
+	 */
+	static RuleSet.Builder builder() {
+		RuleSet.Builder rules = RuleSet.builder();
+		// 词首的 GN-、KN-、PN-、WR-、PS- 跳过首字母；词首的 X 记为 S
+		rules.prefix(
+				when(atIndex(0, "GN", "KN", "PN", "WR", "PS"), advance(1)),
+				when(atIndex(0, "X"), emit("S"), advance(1)),
+				otherwise(advance(0)));
+		// 元音只在词首记为 A
+		rules.letters("AEIOUY",
+				when(position(0), emit("A"), advance(1)));
+		rules.letter('B',
+				otherwise(emit("P"), choose(
+						when(at(1, "B"), advance(2)))));
+		rules.letter('\u00C7',
+				otherwise(emit("S"), advance(1)));
+		rules.letter('C', c());
+		rules.letter('D',
+				when(at(0, "DG"), choose(
+						when(at(2, "I", "E", "Y"), emit("J"), advance(3)),
+						otherwise(emit("TK"), advance(2)))),
+				otherwise(emit("T"), choose(
+						when(at(0, "DT", "DD"), advance(2)))));
+		rules.letter('F',
+				otherwise(emit("F"), choose(
+						when(at(1, "F"), advance(2)))));
+		rules.letter('G', g());
+		rules.letter('H',
+				when(and(or(position(0), vowel(-1)), vowel(1)), emit("H"), advance(2)));
+		rules.letter('J', j());
+		rules.letter('K',
+				otherwise(emit("K"), choose(
+						when(at(1, "K"), advance(2)))));
+		rules.letter('L',
+				when(at(1, "L"), choose(
+						when(or(and(positionFromEnd(2), at(-1, "ILLO", "ILLA", "ALLE")),
+								and(or(atEnd(1, "AS", "OS"), atEnd(0, "A", "O")), at(-1, "ALLE"))),
+								emit("L", null), advance(2)),
+						otherwise(emit("L"), advance(2)))),
+				otherwise(emit("L"), advance(1)));
+		rules.letter('M',
+				otherwise(emit("M"), choose(
+						when(or(and(at(-1, "UMB"), at(2, "ER")), at(1, "M")), advance(2)))));
+		rules.letter('N',
+				otherwise(emit("N"), choose(
+						when(at(1, "N"), advance(2)))));
+		rules.letter('\u00D1',
+				otherwise(emit("N"), advance(1)));
+		rules.letter('P',
+				when(at(1, "N"), emit("F"), advance(2)),
+				otherwise(emit("P"), choose(
+						when(at(1, "P", "B"), advance(2)))));
+		rules.letter('Q',
+				otherwise(emit("K"), choose(
+						when(at(1, "Q"), advance(2)))));
+		rules.letter('R',
+				otherwise(emit("R"), choose(
+						when(at(1, "R"), advance(2)))));
+		rules.letter('S', s());
+		rules.letter('T', t());
+		rules.letter('V',
+				otherwise(emit("F"), choose(
+						when(at(1, "V"), advance(2)))));
+		rules.letter('W', w());
+		rules.letter('X',
+				otherwise(emit("KS"), choose(
+						when(at(1, "C", "X"), advance(2)))));
+		rules.letter('Z',
+				when(at(1, "H"), emit("J"), advance(2)),
+				otherwise(choose(
+						when(or(at(1, "ZO", "ZI", "ZA"), and(slavoGermanic(), after(0), not(at(-1, "T")))),
+								emit("S", "TS")),
+						otherwise(emit("S"))),
+						choose(
+								when(at(1, "Z"), advance(2)))));
+		return rules;
+	}
+
+	private static RuleSet.Rule[] c() {
+		return new RuleSet.Rule[] {
+				when(or(and(after(1), not(vowel(-2)), at(-1, "ACH"), not(at(2, "I")), not(at(2, "E"))),
+						at(-2, "BACHER", "MACHER")),
+						emit("K"), advance(2)),
+				when(and(position(0), at(0, "CAESAR")),
+						emit("S"), advance(2)),
+				when(at(0, "CHIA"),
+						emit("K"), advance(2)),
+				when(at(0, "CH"), choose(
+						when(and(after(0), at(0, "CHAE")),
+								emit("K", "X"), advance(2)),
+						when(or(and(position(0), at(1, "HARAC", "HARIS")),
+								and(at(1, "HOR", "HYM", "HIA", "HEM"), not(atIndex(0, "CHORE")))),
+								emit("K"), advance(2)),
+						when(or(atIndex(0, "VAN ", "VON "), atIndex(0, "SCH"), at(-2, "ORCHES", "ARCHIT", "ORCHID"),
+								at(2, "T", "S"), and(or(at(-1, "A", "O", "U", "E"), position(0)),
+										at(2, "L", "R", "N", "M", "B", "H", "F", "V", "W", " "))),
+								emit("K")),
+						when(after(0), choose(
+								when(atIndex(0, "MC"), emit("K")),
+								otherwise(emit("X", "K")))),
+						otherwise(emit("X"))),
+						advance(2)),
+				when(and(at(0, "CZ"), not(at(0, "WICZ"))),
+						emit("S", "X"), advance(2)),
+				// encodeC 的 CIA 规则只比较 2 个字符，永远不会匹配，这里省略
+				when(and(at(0, "CC"), not(and(position(1), atIndex(0, "M")))), choose(
+						when(and(at(2, "I", "E", "H"), not(at(2, "HU"))), choose(
+								when(or(and(position(1), at(-1, "A")), at(-1, "UCCEE", "UCCES")), emit("KS")),
+								otherwise(emit("X"))),
+								advance(3)),
+						otherwise(emit("K"), advance(2)))),
+				when(at(0, "CK", "CG", "CQ"),
+						emit("K"), advance(2)),
+				when(at(0, "CI", "CE", "CY"), choose(
+						when(at(0, "CIO", "CIE", "CIA"), emit("S", "X")),
+						otherwise(emit("S"))),
+						advance(2)),
+				otherwise(emit("K"), choose(
+						when(at(1, " C", " Q", " G"), advance(3)),
+						when(and(at(1, "C", "K", "Q"), not(at(1, "CE", "CI"))), advance(2)))) };
+	}
+
+	private static RuleSet.Rule[] g() {
+		return new RuleSet.Rule[] {
+				when(at(1, "H"), choose(
+						when(and(after(0), not(vowel(-1))), emit("K"), advance(2)),
+						when(position(0), choose(
+								when(at(2, "I"), emit("J")),
+								otherwise(emit("K"))),
+								advance(2)),
+						when(or(and(after(1), at(-2, "B", "H", "D")), and(after(2), at(-3, "B", "H", "D")),
+								and(after(3), at(-4, "B", "H"))),
+								advance(2)),
+						otherwise(choose(
+								when(and(after(2), at(-1, "U"), at(-3, "C", "G", "L", "R", "T")), emit("F")),
+								when(and(after(0), not(at(-1, "I"))), emit("K"))),
+								advance(2)))),
+				when(at(1, "N"), choose(
+						when(and(position(1), vowelAt(0), not(slavoGermanic())), emit("KN", "N")),
+						when(and(not(at(2, "EY")), not(at(1, "Y")), not(slavoGermanic())), emit("N", "KN")),
+						otherwise(emit("KN"))),
+						advance(2)),
+				when(and(at(1, "LI"), not(slavoGermanic())),
+						emit("KL", "L"), advance(2)),
+				when(and(position(0), or(at(1, "Y"), at(1, "ES", "EP", "EB", "EL", "EY", "IB", "IL", "IN", "IE", "EI", "ER"))),
+						emit("K", "J"), advance(2)),
+				when(and(or(at(1, "ER"), at(1, "Y")), not(atIndex(0, "DANGER", "RANGER", "MANGER")), not(at(-1, "E", "I")),
+						not(at(-1, "RGY", "OGY"))),
+						emit("K", "J"), advance(2)),
+				when(or(at(1, "E", "I", "Y"), at(-1, "AGGI", "OGGI")), choose(
+						when(or(atIndex(0, "VAN ", "VON "), atIndex(0, "SCH"), at(1, "ET")), emit("K")),
+						when(at(1, "IER "), emit("J")),
+						otherwise(emit("J", "K"))),
+						advance(2)),
+				otherwise(emit("K"), choose(
+						when(at(1, "G"), advance(2)))) };
+	}
+
+	private static RuleSet.Rule[] j() {
+		return new RuleSet.Rule[] {
+				when(or(at(0, "JOSE"), atIndex(0, "SAN ")), choose(
+						when(or(and(position(0), at(4, " ")), atIndex(0, "SAN ")), emit("H")),
+						otherwise(emit("J", "H"))),
+						advance(1)),
+				otherwise(choose(
+						when(and(position(0), not(at(0, "JOSE"))), emit("J", "A")),
+						when(and(vowel(-1), not(slavoGermanic()), or(at(1, "A"), at(1, "O"))), emit("J", "H")),
+						when(and(not(at(1, "L", "T", "K", "S", "N", "M", "B", "Z")), not(at(-1, "S", "K", "L"))),
+								emit("J"))),
+						choose(
+								when(at(1, "J"), advance(2)))) };
+	}
+
+	private static RuleSet.Rule[] s() {
+		return new RuleSet.Rule[] {
+				when(at(-1, "ISL", "YSL"),
+						advance(1)),
+				when(and(position(0), at(0, "SUGAR")),
+						emit("X", "S"), advance(1)),
+				when(at(0, "SH"), choose(
+						when(at(1, "HEIM", "HOEK", "HOLM", "HOLZ"), emit("S")),
+						otherwise(emit("X"))),
+						advance(2)),
+				when(or(at(0, "SIO", "SIA"), at(0, "SIAN")), choose(
+						when(not(slavoGermanic()), emit("S", "X")),
+						otherwise(emit("S"))),
+						advance(3)),
+				when(or(and(position(0), at(1, "M", "N", "L", "W")), at(1, "Z")),
+						emit("S", "X"), choose(
+								when(at(1, "Z"), advance(2)))),
+				when(at(0, "SC"), choose(
+						when(at(2, "H"), choose(
+								when(at(3, "OO", "ER", "EN", "UY", "ED", "EM"), choose(
+										when(at(3, "ER", "EN"), emit("X", "SK")),
+										otherwise(emit("SK")))),
+								when(and(position(0), not(vowelAt(3)), not(atIndex(3, "W"))), emit("X", "S")),
+								otherwise(emit("X"))),
+								advance(3)),
+						when(at(2, "I", "E", "Y"), emit("S"), advance(3)),
+						otherwise(emit("SK"), advance(3)))),
+				otherwise(emit("S"), choose(
+						when(at(1, "S", "Z"), advance(2)))) };
+	}
+
+	private static RuleSet.Rule[] t() {
+		return new RuleSet.Rule[] {
+				when(at(0, "TION"),
+						emit("X"), advance(3)),
+				when(at(0, "TIA", "TCH"),
+						emit("X"), advance(3)),
+				when(or(at(0, "TH"), at(0, "TTH")), choose(
+						when(or(at(2, "OM", "AM"), atIndex(0, "VAN ", "VON "), atIndex(0, "SCH")), emit("T")),
+						otherwise(emit("0", "T"))),
+						advance(2)),
+				otherwise(emit("T"), choose(
+						when(at(1, "T", "D"), advance(2)))) };
+	}
+
+	private static RuleSet.Rule[] w() {
+		return new RuleSet.Rule[] {
+				when(at(0, "WR"),
+						emit("R"), advance(2)),
+				otherwise(choose(
+						when(and(position(0), or(vowel(1), at(0, "WH"))), choose(
+								when(vowel(1), emit("A", "F")),
+								otherwise(emit("A"))))),
+						choose(
+								when(or(at(-1, "EWSKI", "EWSKY", "OWSKI", "OWSKY"), atIndex(0, "SCH")),
+										emit("F"), advance(1)),
+								when(and(positionFromEnd(0), vowel(-1)),
+										emit(null, "F"), advance(1)),
+								when(at(0, "WICZ", "WITZ"),
+										emit("TS", "FX"), advance(4)))) };
+	}
+}
@@ -0,0 +1,556 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Groups a large number of names by their packed phonetic code, to find the
+ * names that are likely duplicates of each other, without holding the names or
+ * boxed collections in memory.
+ * <p>
+ * The names are added in batches with {@link #add(CharSequence[])}; they are
+ * encoded in parallel with {@link DoubleMeta#transformAllToLong} and only the
+ * code and the id of each name, 12 bytes, are kept, in one of 64 partitions
+ * chosen by a hash of the code. The id of a name is the number of names added
+ * before it. When the buffered entries exceed the memory budget every
+ * partition is grouped in a primitive open addressing map and written to the
+ * spill directory as a run sorted by code, and buffering starts again.
+ * {@link #finish(int, Handler)} then groups the partitions in parallel,
+ * merging the runs of each one, and streams the groups out.
+ * <p>
+ * Like {@link PhoneticIndex}, codes longer than
+ * {@link DoubleMeta#MAX_PACKED_LENGTH} symbols are grouped by their packed
+ * prefix. The budget counts the buffered entries, not the capacity of the
+ * buffers: they grow by half when full and are not shrunk after a spill, so
+ * they can take up to one and a half times the budget. Writing or merging a
+ * partition needs about as much memory again for that partition. At most
+ * <code>Integer.MAX_VALUE</code> names can be grouped. The methods are
+ * synchronized, but the grouper is meant to be fed by a single thread.
+ */
+public final class DuplicateGrouper implements Closeable {
+
+	/**
+	 * Receives the groups of names sharing a code. The calls are never
+	 * concurrent, but they come from the threads of the common ForkJoinPool.
+	 */
+	public interface Handler {
+
+		/**
+		 * @param code the packed code of the group
+		 * @param ids the ids of the names of the group in
+		 *          <code>ids[0 .. count)</code>, in ascending order; the array is
+		 *          reused after the call returns
+		 * @param count the number of names in the group
+		 * @throws IOException to stop the grouping
+		 */
+		void group(long code, int[] ids, int count) throws IOException;
+	}
+
+	private static final int PARTITIONS = 64;
+	private static final int ENTRY_BYTES = 12;
+	private static final int TAGGED_ENTRY_BYTES = 16;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final DoubleMeta meta;
+	private final long memoryBudget;
+	private final Path spillDirectory;
+	// 每个分区缓冲的代码和编号
+	private final long[][] codes = new long[PARTITIONS][];
+	private final int[][] ids = new int[PARTITIONS][];
+	// 带标签时每个条目附带的子键，否则为 null
+	private final int[][] tags = new int[PARTITIONS][];
+	private final boolean tagged;
+	private final int entryBytes;
+	private final int[] sizes = new int[PARTITIONS];
+	private final List<List<Path>> runs = new ArrayList<List<Path>>(PARTITIONS);
+	private Path runDirectory;
+	private long buffered;
+	private int count;
+	private int spills;
+	private boolean finished;
+
+	/**
+	 * @param meta the encoder of the names
+	 * @param memoryBudget the number of bytes of buffered entries above which
+	 *          they are spilled to disk
+	 * @param spillDirectory the directory where a temporary directory for the
+	 *          runs is created when the first one is spilled
+	 */
+	public DuplicateGrouper(DoubleMeta meta, long memoryBudget, Path spillDirectory) {
+		this(meta, memoryBudget, spillDirectory, false);
+	}
+
+	/**
+	 * 带标签的分组器：每个条目附带一个 int 子键，随编号一起分组、溢写和合并
+	 */
+	DuplicateGrouper(DoubleMeta meta, long memoryBudget, Path spillDirectory, boolean tagged) {
+		if (meta == null)
+			throw new NullPointerException("meta");
+		if (spillDirectory == null)
+			throw new NullPointerException("spillDirectory");
+		this.tagged = tagged;
+		this.entryBytes = tagged ? TAGGED_ENTRY_BYTES : ENTRY_BYTES;
+		if (memoryBudget < entryBytes)
+			throw new IllegalArgumentException("memoryBudget=" + memoryBudget);
+		this.meta = meta;
+		this.memoryBudget = memoryBudget;
+		this.spillDirectory = spillDirectory;
+		for (int p = 0; p < PARTITIONS; p++) {
+			codes[p] = new long[INITIAL_CAPACITY];
+			ids[p] = new int[INITIAL_CAPACITY];
+			if (tagged)
+				tags[p] = new int[INITIAL_CAPACITY];
+			runs.add(new ArrayList<Path>());
+		}
+	}
+
+	/**
+	 * Encodes a batch of names and buffers their codes, spilling to disk when
+	 * the memory budget is exceeded.
+	 *
+	 * @param names the names, the first one gets the id {@link #size()}
+	 * @return the id of the first name of the batch
+	 * @throws IOException if a run cannot be written, the grouper is then
+	 *           closed and its runs are deleted
+	 * @throws IllegalStateException if the grouper is finished or would hold
+	 *           more than <code>Integer.MAX_VALUE</code> names
+	 */
+	public synchronized int add(CharSequence[] names) throws IOException {
+		if (finished)
+			throw new IllegalStateException("finished");
+		if (names.length > Integer.MAX_VALUE - count)
+			throw new IllegalStateException("too many names");
+		int first = count;
+		long[] packed = meta.transformAllToLong(names);
+		for (int i = 0; i < packed.length; i++) {
+			append(partition(packed[i]), packed[i], first + i, 0);
+			if (++buffered * entryBytes > memoryBudget)
+				spill();
+		}
+		count += names.length;
+		return first;
+	}
+
+	/**
+	 * 缓冲已经算好的键。编号在多次调用之间必须递增，组内的编号才是升序
+	 *
+	 * @param keys 每个条目的键
+	 * @param entryIds 每个条目的编号
+	 * @param entryTags 每个条目的标签，不带标签时为 null
+	 * @param n 条目数
+	 */
+	synchronized void add(long[] keys, int[] entryIds, int[] entryTags, int n) throws IOException {
+		if (finished)
+			throw new IllegalStateException("finished");
+		for (int i = 0; i < n; i++) {
+			append(partition(keys[i]), keys[i], entryIds[i], (entryTags == null) ? 0 : entryTags[i]);
+			if (++buffered * entryBytes > memoryBudget)
+				spill();
+		}
+	}
+
+	/**
+	 * @return the number of names added
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of times the buffered entries were spilled to disk
+	 */
+	public synchronized int getSpillCount() {
+		return spills;
+	}
+
+	/**
+	 * Groups the names added and passes every group of at least
+	 * <code>minSize</code> names to the handler. The partitions are grouped in
+	 * parallel, so the groups come in no particular order. The grouper cannot be
+	 * used anymore afterwards, its runs are deleted as they are merged.
+	 *
+	 * @param minSize the smallest group reported, 2 for duplicates only
+	 * @param handler receives the groups
+	 * @throws IOException if a run cannot be read or the handler failed
+	 * @throws IllegalStateException if the grouper is already finished
+	 */
+	public void finish(int minSize, Handler handler) throws IOException {
+		if (handler == null)
+			throw new NullPointerException("handler");
+		finish(minSize, (code, groupIds, groupTags, n) -> {
+			synchronized (handler) {
+				handler.group(code, groupIds, n);
+			}
+		});
+	}
+
+	/**
+	 * 接收分组及其标签，由合并各分区的线程同时调用
+	 */
+	interface Sink {
+
+		void group(long code, int[] ids, int[] tags, int count) throws IOException;
+	}
+
+	/**
+	 * 与 {@link #finish(int, Handler)} 相同，但不串行化对 sink 的调用
+	 */
+	synchronized void finish(int minSize, Sink sink) throws IOException {
+		if (finished)
+			throw new IllegalStateException("finished");
+		finished = true;
+		try {
+			IntStream.range(0, PARTITIONS).parallel().forEach(p -> {
+				try {
+					merge(p, minSize, sink);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Deletes the runs spilled to disk and releases the buffers.
+	 */
+	public synchronized void close() throws IOException {
+		finished = true;
+		Arrays.fill(codes, null);
+		Arrays.fill(ids, null);
+		Arrays.fill(tags, null);
+		if (runDirectory == null)
+			return;
+		for (List<Path> partition : runs) {
+			for (Path run : partition)
+				Files.deleteIfExists(run);
+			partition.clear();
+		}
+		Files.deleteIfExists(runDirectory);
+		runDirectory = null;
+	}
+
+	public String toString() {
+		return "DuplicateGrouper[names=" + count + ", spills=" + spills + ", memoryBudget=" + memoryBudget + "]";
+	}
+
+	/**
+	 * 用哈希的最高 6 位选择分区，低位留给分区内的开放寻址表
+	 */
+	private static int partition(long code) {
+		return (int) (LongIntMap.mix(code) >>> 58);
+	}
+
+	private void append(int p, long code, int id, int tag) {
+		int n = sizes[p];
+		if (n == codes[p].length) {
+			int capacity = n + (n >> 1);
+			codes[p] = Arrays.copyOf(codes[p], capacity);
+			ids[p] = Arrays.copyOf(ids[p], capacity);
+			if (tagged)
+				tags[p] = Arrays.copyOf(tags[p], capacity);
+		}
+		codes[p][n] = code;
+		ids[p][n] = id;
+		if (tagged)
+			tags[p][n] = tag;
+		sizes[p] = n + 1;
+	}
+
+	/**
+	 * 将每个分区分组后按代码顺序写成一个 run 文件，各分区并行写入
+	 */
+	private void spill() throws IOException {
+		Path[] written = new Path[PARTITIONS];
+		try {
+			if (runDirectory == null)
+				runDirectory = Files.createTempDirectory(spillDirectory, "doublemeta-groups");
+			int spill = spills++;
+			IntStream.range(0, PARTITIONS).parallel().forEach(p -> {
+				if (sizes[p] == 0)
+					return;
+				Path run = runDirectory.resolve("run-" + spill + "-" + p);
+				try {
+					new Groups(codes[p], ids[p], tags[p], sizes[p]).write(run);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				written[p] = run;
+			});
+		} catch (UncheckedIOException e) {
+			throw fail(written, e.getCause());
+		} catch (IOException e) {
+			throw fail(written, e);
+		}
+		for (int p = 0; p < PARTITIONS; p++) {
+			if (written[p] != null)
+				runs.get(p).add(written[p]);
+		}
+		Arrays.fill(sizes, 0);
+		buffered = 0;
+	}
+
+	/**
+	 * 溢写失败时部分分区已经写出，它们的条目同时在 run 和缓冲区中，继续使用会重复输出这些条目。
+	 * 记录写出的 run 后关闭分组器，由 close 删除
+	 */
+	private IOException fail(Path[] written, IOException e) {
+		for (int p = 0; p < PARTITIONS; p++) {
+			if (written[p] != null)
+				runs.get(p).add(written[p]);
+		}
+		try {
+			close();
+		} catch (IOException suppressed) {
+			e.addSuppressed(suppressed);
+		}
+		return e;
+	}
+
+	/**
+	 * 合并一个分区的所有 run 和仍在内存中的条目。run 按写入顺序排在前面，所以同一代码的编号保持升序
+	 */
+	private void merge(int p, int minSize, Sink sink) throws IOException {
+		List<Run> sources = new ArrayList<Run>();
+		try {
+			for (Path path : runs.get(p))
+				sources.add(new FileRun(sources.size(), path, tagged));
+			if (sizes[p] > 0)
+				sources.add(new MemoryRun(sources.size(), new Groups(codes[p], ids[p], tags[p], sizes[p])));
+			PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, sources.size()));
+			for (Run run : sources) {
+				if (run.next())
+					queue.add(run);
+			}
+			int[] group = new int[16];
+			int[] groupTags = tagged ? new int[16] : null;
+			while (!queue.isEmpty()) {
+				long code = queue.peek().code;
+				int n = 0;
+				// 先累计组的大小，小于 minSize 的组直接跳过编号
+				List<Run> same = new ArrayList<Run>();
+				while (!queue.isEmpty() && (queue.peek().code == code)) {
+					Run run = queue.poll();
+					n += run.count;
+					same.add(run);
+				}
+				if (n >= minSize) {
+					if (group.length < n) {
+						group = new int[Math.max(n, group.length * 2)];
+						if (tagged)
+							groupTags = new int[group.length];
+					}
+					int at = 0;
+					for (Run run : same) {
+						run.readIds(group, groupTags, at);
+						at += run.count;
+					}
+				} else {
+					for (Run run : same)
+						run.skipIds();
+				}
+				for (Run run : same) {
+					if (run.next())
+						queue.add(run);
+				}
+				if (n >= minSize)
+					sink.group(code, group, groupTags, n);
+			}
+		} finally {
+			for (Run run : sources)
+				run.close();
+			codes[p] = null;
+			ids[p] = null;
+			tags[p] = null;
+		}
+	}
+
+	/**
+	 * 一个分区的分组结果，布局与 PhoneticIndex 相同：按无符号顺序排列的不同代码、偏移量和按组排列的编号
+	 */
+	private static final class Groups {
+
+		final long[] codes;
+		final int[] offsets;
+		final int[] members;
+		final int[] memberTags;
+
+		Groups(long[] entryCodes, int[] entryIds, int[] entryTags, int n) {
+			LongIntMap map = new LongIntMap(Math.max(16, n / 4));
+			for (int i = 0; i < n; i++)
+				map.putIfAbsent(entryCodes[i], 0);
+			codes = map.keys();
+			for (int k = 0; k < codes.length; k++)
+				codes[k] ^= Long.MIN_VALUE;
+			Arrays.sort(codes);
+			for (int k = 0; k < codes.length; k++) {
+				codes[k] ^= Long.MIN_VALUE;
+				map.replace(codes[k], k);
+			}
+			offsets = new int[codes.length + 1];
+			int[] group = new int[n];
+			for (int i = 0; i < n; i++) {
+				group[i] = map.get(entryCodes[i]);
+				offsets[group[i] + 1]++;
+			}
+			for (int k = 0; k < codes.length; k++)
+				offsets[k + 1] += offsets[k];
+			int[] fill = Arrays.copyOf(offsets, codes.length);
+			members = new int[n];
+			memberTags = (entryTags == null) ? null : new int[n];
+			// 条目按编号升序追加，所以每组的编号也是升序
+			for (int i = 0; i < n; i++) {
+				int j = fill[group[i]]++;
+				members[j] = entryIds[i];
+				if (entryTags != null)
+					memberTags[j] = entryTags[i];
+			}
+		}
+
+		void write(Path path) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+				out.writeInt(codes.length);
+				for (int k = 0; k < codes.length; k++) {
+					out.writeLong(codes[k]);
+					out.writeInt(offsets[k + 1] - offsets[k]);
+					for (int j = offsets[k]; j < offsets[k + 1]; j++) {
+						out.writeInt(members[j]);
+						if (memberTags != null)
+							out.writeInt(memberTags[j]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 按代码升序读出的一串分组，代码相同时按 run 的顺序排列
+	 */
+	private static abstract class Run implements Comparable<Run>, Closeable {
+
+		final int order;
+		long code;
+		int count;
+
+		Run(int order) {
+			this.order = order;
+		}
+
+		abstract boolean next() throws IOException;
+
+		abstract void readIds(int[] dst, int[] dstTags, int off) throws IOException;
+
+		abstract void skipIds() throws IOException;
+
+		public void close() throws IOException {
+		}
+
+		public int compareTo(Run other) {
+			int c = Long.compareUnsigned(code, other.code);
+			return (c != 0) ? c : Integer.compare(order, other.order);
+		}
+	}
+
+	private static final class MemoryRun extends Run {
+
+		private final Groups groups;
+		private int k = -1;
+
+		MemoryRun(int order, Groups groups) {
+			super(order);
+			this.groups = groups;
+		}
+
+		boolean next() {
+			if (++k == groups.codes.length)
+				return false;
+			code = groups.codes[k];
+			count = groups.offsets[k + 1] - groups.offsets[k];
+			return true;
+		}
+
+		void readIds(int[] dst, int[] dstTags, int off) {
+			System.arraycopy(groups.members, groups.offsets[k], dst, off, count);
+			if (dstTags != null)
+				System.arraycopy(groups.memberTags, groups.offsets[k], dstTags, off, count);
+		}
+
+		void skipIds() {
+		}
+	}
+
+	private static final class FileRun extends Run {
+
+		private final DataInputStream in;
+		private final boolean tagged;
+		private int remaining;
+
+		FileRun(int order, Path path, boolean tagged) throws IOException {
+			super(order);
+			this.tagged = tagged;
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+			remaining = in.readInt();
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0)
+				return false;
+			remaining--;
+			code = in.readLong();
+			count = in.readInt();
+			return true;
+		}
+
+		void readIds(int[] dst, int[] dstTags, int off) throws IOException {
+			for (int j = 0; j < count; j++) {
+				dst[off + j] = in.readInt();
+				if (tagged)
+					dstTags[off + j] = in.readInt();
+			}
+		}
+
+		void skipIds() throws IOException {
+			for (int j = (tagged ? 2 : 1) * count; j > 0; j--)
+				in.readInt();
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
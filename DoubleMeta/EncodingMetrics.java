@@ -0,0 +1,92 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters of the batches encoded by {@link DoubleMeta}, for
+ * monitoring code to poll. Each batch costs two System.nanoTime calls and a
+ * few LongAdder updates, which is nothing next to encoding the batch; single
+ * words are not counted here, wrap the encoder in a
+ * {@link MeteredTransformator} to time them.
+ * <p>
+ * Batches are also reported to Java Flight Recorder as
+ * <code>com.swabunga.spell.engine.BatchEncode</code> events when a recording
+ * has them enabled.
+ */
+public final class EncodingMetrics {
+
+	private static final LongAdder batches = new LongAdder();
+	private static final LongAdder words = new LongAdder();
+	private static final LongAdder characters = new LongAdder();
+	private static final LatencyHistogram batchLatency = new LatencyHistogram();
+
+	private EncodingMetrics() {
+	}
+
+	static void recordBatch(int n, long nanos) {
+		batches.increment();
+		words.add(n);
+		batchLatency.record(nanos);
+	}
+
+	static void addCharacters(long n) {
+		characters.add(n);
+	}
+
+	/**
+	 * @return the number of batches encoded
+	 */
+	public static long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return the number of words encoded in batches
+	 */
+	public static long getWordCount() {
+		return words.sum();
+	}
+
+	/**
+	 * @return the total length of the words encoded in batches
+	 */
+	public static long getCharacterCount() {
+		return characters.sum();
+	}
+
+	/**
+	 * @return the durations of the batches
+	 */
+	public static LatencyHistogram getBatchLatency() {
+		return batchLatency;
+	}
+
+	/**
+	 * Clears all the counters.
+	 */
+	public static void reset() {
+		batches.reset();
+		words.reset();
+		characters.reset();
+		batchLatency.reset();
+	}
+}
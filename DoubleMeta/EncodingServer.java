@@ -0,0 +1,575 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP service for {@link DoubleMeta}, built on the JDK HttpServer and
+ * free of other dependencies. The endpoints are:
+ * <ul>
+ * <li><code>GET /encode?w=word</code>: the primary and alternate codes of a
+ * word, as JSON;</li>
+ * <li><code>POST /encode</code>: one word per line of the UTF-8 body, at most
+ * {@link #MAX_BODY_SIZE} bytes, answered with <code>primary\talternate</code>
+ * lines in the same order; larger bodies are not kept and are refused with
+ * status 413;</li>
+ * <li><code>GET /lookup?w=word[&amp;limit=n]</code>: the words of the
+ * {@link MappedPhoneticIndex} having the code of the word, as JSON;</li>
+ * <li><code>GET /metrics</code>: request, batch and latency counters as
+ * text.</li>
+ * </ul>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21
+ * and later, looked up by reflection) and on a cached thread pool otherwise.
+ * The single-word encode requests are not encoded on their own threads: they
+ * are queued for a pool of batcher threads. A batcher takes all the waiting
+ * words, up to <code>maxBatchSize</code>, waits at most
+ * <code>maxBatchDelay</code> microseconds after the first one for the batch to
+ * fill, encodes it in one go and completes the waiting requests, while the
+ * other batchers drain the next batches. A delay of 0 batches only the
+ * requests that are already waiting. A request whose word is not encoded
+ * within {@link #ENCODE_TIMEOUT} milliseconds after the batch delay, and the
+ * requests still queued when the server stops, are answered with status 503.
+ */
+public final class EncodingServer {
+
+	/**
+	 * The largest body of a POST request, in bytes.
+	 */
+	public static final int MAX_BODY_SIZE = 1 << 20;
+
+	/**
+	 * The longest time in milliseconds a single-word request waits for its
+	 * batch to be encoded, on top of the batch delay.
+	 */
+	public static final long ENCODE_TIMEOUT = 5000;
+
+	private static final int QUEUE_CAPACITY = 65536;
+
+	// 拒绝过大的请求体之前最多读掉的字节数
+	private static final long MAX_DISCARDED_SIZE = 16L * MAX_BODY_SIZE;
+
+	private final DoubleMeta meta;
+	private final MappedPhoneticIndex index;
+	private final int maxBatchSize;
+	private final long maxBatchDelayNanos;
+	private final int batcherCount;
+	private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<Pending>(QUEUE_CAPACITY);
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder batchedWords = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private HttpServer server;
+	private ExecutorService executor;
+	private Thread[] batchers;
+	// 停止后新入队的单词由入队的请求自己取消
+	private volatile boolean stopped;
+
+	/**
+	 * Creates a server with one batcher thread per processor.
+	 *
+	 * @param meta the encoder of the encode endpoint
+	 * @param index the index of the lookup endpoint, or null to disable it
+	 * @param maxBatchSize the largest number of words encoded in one batch
+	 * @param maxBatchDelay the longest time in microseconds a word waits for
+	 *          others to join its batch
+	 */
+	public EncodingServer(DoubleMeta meta, MappedPhoneticIndex index, int maxBatchSize, long maxBatchDelay) {
+		this(meta, index, maxBatchSize, maxBatchDelay, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param meta the encoder of the encode endpoint
+	 * @param index the index of the lookup endpoint, or null to disable it
+	 * @param maxBatchSize the largest number of words encoded in one batch
+	 * @param maxBatchDelay the longest time in microseconds a word waits for
+	 *          others to join its batch
+	 * @param batcherCount the number of threads encoding batches
+	 */
+	public EncodingServer(DoubleMeta meta, MappedPhoneticIndex index, int maxBatchSize, long maxBatchDelay,
+			int batcherCount) {
+		if (meta == null)
+			throw new NullPointerException("meta");
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("maxBatchSize=" + maxBatchSize);
+		if (maxBatchDelay < 0)
+			throw new IllegalArgumentException("maxBatchDelay=" + maxBatchDelay);
+		if (batcherCount < 1)
+			throw new IllegalArgumentException("batcherCount=" + batcherCount);
+		this.meta = meta;
+		this.index = index;
+		this.maxBatchSize = maxBatchSize;
+		this.maxBatchDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxBatchDelay);
+		this.batcherCount = batcherCount;
+	}
+
+	/**
+	 * Starts serving.
+	 *
+	 * @param address the address to listen on, port 0 for any free port
+	 * @throws IOException if the server socket cannot be bound
+	 * @throws IllegalStateException if the server is already started
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		if (server != null)
+			throw new IllegalStateException("started");
+		server = HttpServer.create(address, 1024);
+		server.createContext("/encode", this::encode);
+		server.createContext("/lookup", this::lookup);
+		server.createContext("/metrics", this::metrics);
+		executor = requestExecutor();
+		server.setExecutor(executor);
+		stopped = false;
+		batchers = new Thread[batcherCount];
+		for (int i = 0; i < batchers.length; i++) {
+			batchers[i] = new Thread(this::batch, "EncodingServer-batcher-" + i);
+			batchers[i].setDaemon(true);
+			batchers[i].start();
+		}
+		server.start();
+	}
+
+	/**
+	 * Stops serving, waiting at most a second for the requests in progress.
+	 * The words still waiting for a batch are not encoded, their requests are
+	 * answered with status 503.
+	 */
+	public synchronized void stop() {
+		if (server == null)
+			return;
+		// 先让等待中的请求以 503 结束，再关闭连接，否则客户端只看到连接被关闭
+		stopped = true;
+		for (Thread batcher : batchers)
+			batcher.interrupt();
+		boolean interrupted = false;
+		for (Thread batcher : batchers) {
+			try {
+				batcher.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		cancelPending();
+		server.stop(1);
+		executor.shutdownNow();
+		server = null;
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * @return the address the server listens on
+	 * @throws IllegalStateException if the server is not started
+	 */
+	public synchronized InetSocketAddress getAddress() {
+		if (server == null)
+			throw new IllegalStateException("not started");
+		return server.getAddress();
+	}
+
+	/**
+	 * @return the number of requests served
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @return the number of threads encoding batches
+	 */
+	public int getBatcherCount() {
+		return batcherCount;
+	}
+
+	/**
+	 * @return the number of batches of single-word requests encoded
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return the mean number of words per batch, 0 if none
+	 */
+	public double getMeanBatchSize() {
+		long n = batches.sum();
+		return (n == 0) ? 0 : (double) batchedWords.sum() / n;
+	}
+
+	/**
+	 * @return the durations of the requests, from the handler being called to
+	 *         the response being sent
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * 每个请求一个虚拟线程；Java 21 之前的运行时退回到缓存线程池
+	 */
+	static ExecutorService requestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "EncodingServer-request");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	/**
+	 * 等待批量编码的单词
+	 */
+	private static final class Pending {
+
+		final String word;
+		final CompletableFuture<DoubleMetaResult> result = new CompletableFuture<DoubleMetaResult>();
+
+		Pending(String word) {
+			this.word = word;
+		}
+	}
+
+	/**
+	 * 批量线程：取出第一个单词和所有已在等待的单词，不满一批时最多再等待 maxBatchDelayNanos，然后一起编码。
+	 * 多个批量线程同时从队列中取单词
+	 */
+	private void batch() {
+		List<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+		StringBuilder primary = new StringBuilder();
+		StringBuilder alternate = new StringBuilder();
+		try {
+			for (;;) {
+				batch.add(queue.take());
+				queue.drainTo(batch, maxBatchSize - 1);
+				long deadline = System.nanoTime() + maxBatchDelayNanos;
+				while (batch.size() < maxBatchSize) {
+					long wait = deadline - System.nanoTime();
+					Pending next = (wait <= 0) ? queue.poll() : queue.poll(wait, TimeUnit.NANOSECONDS);
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+				long start = System.nanoTime();
+				for (Pending pending : batch) {
+					try {
+						primary.setLength(0);
+						alternate.setLength(0);
+						meta.transformBoth(pending.word, 0, pending.word.length(), primary, alternate);
+						pending.result.complete(new DoubleMetaResult(primary.toString(), alternate.toString()));
+					} catch (RuntimeException e) {
+						pending.result.completeExceptionally(e);
+					}
+				}
+				EncodingMetrics.recordBatch(batch.size(), System.nanoTime() - start);
+				batches.increment();
+				batchedWords.add(batch.size());
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			for (Pending pending : batch)
+				pending.result.completeExceptionally(new IllegalStateException("stopped"));
+		}
+	}
+
+	/**
+	 * 让队列中剩下的单词的请求失败
+	 */
+	private void cancelPending() {
+		for (Pending pending; (pending = queue.poll()) != null;)
+			pending.result.completeExceptionally(new IllegalStateException("stopped"));
+	}
+
+	/**
+	 * 读掉并丢弃输入，最多 max 字节
+	 */
+	private static void discard(InputStream in, long max) throws IOException {
+		byte[] buffer = new byte[8192];
+		for (long n = 0; n < max;) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, max - n));
+			if (read < 0)
+				return;
+			n += read;
+		}
+	}
+
+	/**
+	 * 请求头中的 Content-Length，没有或无法解析时返回 -1
+	 */
+	private static long declaredLength(HttpExchange exchange) {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		try {
+			return (length == null) ? -1 : Long.parseLong(length.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 读入整个请求体，超过 max 字节时返回 null
+	 */
+	private static byte[] readBody(InputStream in, int max) throws IOException {
+		byte[] body = new byte[8192];
+		int size = 0;
+		for (int n; (n = in.read(body, size, body.length - size)) >= 0;) {
+			size += n;
+			if (size > max)
+				return null;
+			if (size == body.length)
+				body = Arrays.copyOf(body, Math.min(2 * body.length, max + 1));
+		}
+		return Arrays.copyOf(body, size);
+	}
+
+	private void encode(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		try {
+			if ("GET".equals(exchange.getRequestMethod())) {
+				String word = parameter(exchange, "w");
+				if (word == null) {
+					respond(exchange, 400, "text/plain", "missing parameter w\n");
+					return;
+				}
+				Pending pending = new Pending(word);
+				if (!queue.offer(pending)) {
+					respond(exchange, 503, "text/plain", "too many pending requests\n");
+					return;
+				}
+				// 在 stop 清空队列之后入队的单词不会再有批量线程处理
+				if (stopped)
+					cancelPending();
+				DoubleMetaResult codes;
+				try {
+					codes = pending.result.get(maxBatchDelayNanos + TimeUnit.MILLISECONDS.toNanos(ENCODE_TIMEOUT),
+							TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					// 批量线程之后取到这个单词时，完成已取消的结果不起作用
+					pending.result.cancel(false);
+					respond(exchange, 503, "text/plain", "timed out waiting for the encoder\n");
+					return;
+				}
+				respond(exchange, 200, "application/json", "{\"word\":" + json(word) + ",\"primary\":"
+						+ json(codes.getPrimary()) + ",\"alternate\":" + json(codes.getAlternate()) + "}\n");
+			} else if ("POST".equals(exchange.getRequestMethod())) {
+				// 请求体本身就是一批，直接在请求线程上编码
+				byte[] request = (declaredLength(exchange) > MAX_BODY_SIZE) ? null
+						: readBody(exchange.getRequestBody(), MAX_BODY_SIZE);
+				if (request == null) {
+					// 读掉剩下的请求体，客户端才能收到回答；太大时直接关闭连接
+					discard(exchange.getRequestBody(), MAX_DISCARDED_SIZE);
+					exchange.getResponseHeaders().set("Connection", "close");
+					respond(exchange, 413, "text/plain", "body larger than " + MAX_BODY_SIZE + " bytes\n");
+					return;
+				}
+				StringBuilder body = new StringBuilder();
+				StringBuilder primary = new StringBuilder();
+				StringBuilder alternate = new StringBuilder();
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(new ByteArrayInputStream(request), StandardCharsets.UTF_8));
+				for (String line; (line = reader.readLine()) != null;) {
+					primary.setLength(0);
+					alternate.setLength(0);
+					meta.transformBoth(line, 0, line.length(), primary, alternate);
+					body.append(primary).append('\t').append(alternate).append('\n');
+				}
+				respond(exchange, 200, "text/plain", body.toString());
+			} else {
+				respond(exchange, 405, "text/plain", "GET or POST\n");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (stopped)
+				respond(exchange, 503, "text/plain", "stopped\n");
+			else
+				respond(exchange, 500, "text/plain", e.getCause() + "\n");
+		} finally {
+			served(start);
+		}
+	}
+
+	private void lookup(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		try {
+			if (index == null) {
+				respond(exchange, 404, "text/plain", "no index\n");
+				return;
+			}
+			String word = parameter(exchange, "w");
+			if (word == null) {
+				respond(exchange, 400, "text/plain", "missing parameter w\n");
+				return;
+			}
+			int limit = 100;
+			String value = parameter(exchange, "limit");
+			if (value != null) {
+				try {
+					limit = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					respond(exchange, 400, "text/plain", "bad limit " + value + "\n");
+					return;
+				}
+			}
+			long code = index.getTransformator().transformToLong(word);
+			int slot = index.find(code);
+			StringBuilder body = new StringBuilder();
+			body.append("{\"word\":").append(json(word)).append(",\"code\":").append(json(DoubleMeta.unpack(code)))
+					.append(",\"count\":").append((slot < 0) ? 0 : index.end(slot) - index.start(slot))
+					.append(",\"words\":[");
+			if (slot >= 0) {
+				int end = Math.min(index.end(slot), index.start(slot) + Math.max(0, limit));
+				for (int i = index.start(slot); i < end; i++) {
+					if (i > index.start(slot))
+						body.append(',');
+					body.append(json(index.word(index.posting(i))));
+				}
+			}
+			body.append("]}\n");
+			respond(exchange, 200, "application/json", body.toString());
+		} finally {
+			served(start);
+		}
+	}
+
+	private void metrics(HttpExchange exchange) throws IOException {
+		respond(exchange, 200, "text/plain", "requests " + getRequestCount() + "\nbatches " + getBatchCount()
+				+ "\nmean_batch_size " + String.format("%.2f", getMeanBatchSize()) + "\nlatency " + latency + "\n");
+	}
+
+	private void served(long start) {
+		requests.increment();
+		latency.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * 取查询字符串中的参数，没有时返回 null
+	 */
+	private static String parameter(HttpExchange exchange, String name) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null)
+			return null;
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String key = (eq < 0) ? pair : pair.substring(0, eq);
+			if (key.equals(name))
+				return (eq < 0) ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+		}
+		return null;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * 转为 JSON 字符串字面量
+	 */
+	private static String json(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if ((c == '"') || (c == '\\'))
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Runs the service until the process is stopped.
+	 *
+	 * @param args <code>[-p port] [-i index] [-l maxCodeLength] [-b maxBatchSize] [-w maxBatchDelay] [-t batchers]</code>
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = 8080;
+		String indexFile = null;
+		int maxCodeLength = 4;
+		int maxBatchSize = 256;
+		long maxBatchDelay = 200;
+		int batchers = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i += 2) {
+			switch ((i + 1 < args.length) ? args[i] : "") {
+			case "-p":
+				port = Integer.parseInt(args[i + 1]);
+				break;
+			case "-i":
+				indexFile = args[i + 1];
+				break;
+			case "-l":
+				maxCodeLength = Integer.parseInt(args[i + 1]);
+				break;
+			case "-b":
+				maxBatchSize = Integer.parseInt(args[i + 1]);
+				break;
+			case "-w":
+				maxBatchDelay = Long.parseLong(args[i + 1]);
+				break;
+			case "-t":
+				batchers = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				System.err.println("usage: java com.swabunga.spell.engine.EncodingServer [-p port] [-i index]"
+						+ " [-l maxCodeLength] [-b maxBatchSize] [-w maxBatchDelayMicros] [-t batchers]");
+				System.exit(2);
+			}
+		}
+		MappedPhoneticIndex index = (indexFile == null) ? null : MappedPhoneticIndex.open(Paths.get(indexFile));
+		EncodingServer server = new EncodingServer(new DoubleMeta(maxCodeLength), index, maxBatchSize,
+				maxBatchDelay, batchers);
+		server.start(new InetSocketAddress(port));
+		System.err.println("listening on " + server.getAddress());
+	}
+}
@@ -0,0 +1,147 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations in nanoseconds, in the manner of
+ * HdrHistogram. Values below 128 are counted exactly; larger values fall in
+ * buckets of 64 per power of two, so any recorded value is reported within
+ * 1.6% of its real value. The histogram has a fixed size of about 30KB and
+ * recording a value takes no lock.
+ * <p>
+ * The counts are read while values may still be recorded, so the statistics
+ * of a histogram in use are approximate.
+ */
+public final class LatencyHistogram {
+
+	// 小于 SUB_BUCKETS 的值精确计数，之后每个 2 的幂分成 HALF 个桶
+	private static final int SUB_BUCKETS = 128;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final int SUB_BITS = 7;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(Long.MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration in nanoseconds, negative values count as 0
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(indexOf(nanos));
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the longest recorded duration, 0 if none
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded durations, 0 if none
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the duration below which the given percentage of the recorded
+	 * durations fall, rounded up to the end of its bucket.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return the duration in nanoseconds, 0 if none was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if ((percentile < 0) || (percentile > 100))
+			throw new IllegalArgumentException("percentile=" + percentile);
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++)
+			total += counts.get(i);
+		if (total == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target)
+				return Math.min(highestOf(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears the histogram.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++)
+			counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	public String toString() {
+		return "count=" + getCount() + " mean=" + Math.round(getMean()) + "ns p50=" + getValueAtPercentile(50)
+				+ "ns p99=" + getValueAtPercentile(99) + "ns p99.9=" + getValueAtPercentile(99.9) + "ns max="
+				+ getMax() + "ns";
+	}
+
+	/**
+	 * 值所在的桶：保留最高 7 位
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+		return SUB_BUCKETS + (shift - 1) * HALF + (int) ((value >>> shift) - HALF);
+	}
+
+	/**
+	 * 桶中的最大值
+	 */
+	private static long highestOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int k = index - SUB_BUCKETS;
+		int shift = k / HALF + 1;
+		long sub = k % HALF + HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+/**
+ * A map from long keys to non-negative int values with open addressing and
+ * linear probing in two primitive arrays, for grouping packed codes without
+ * boxing. Not threadsafe.
+ */
+final class LongIntMap {
+
+	private long[] keys;
+	// 值加 1 后存储，0 表示空位
+	private int[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * @param expected the number of keys expected, the map grows beyond it
+	 */
+	LongIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) Math.min(1 << 30, expected * 2L)) - 1) << 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * 混合 64 位哈希（MurmurHash3 的 fmix64）
+	 */
+	static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the value of the key, or -1 if it is absent
+	 */
+	int get(long key) {
+		for (int i = (int) mix(key) & mask;; i = (i + 1) & mask) {
+			if (values[i] == 0)
+				return -1;
+			if (keys[i] == key)
+				return values[i] - 1;
+		}
+	}
+
+	/**
+	 * Puts the key with the value unless it is already present.
+	 *
+	 * @param key the key
+	 * @param value the value, not negative
+	 * @return the value already present, or -1 if the key was added
+	 */
+	int putIfAbsent(long key, int value) {
+		for (int i = (int) mix(key) & mask;; i = (i + 1) & mask) {
+			if (values[i] == 0) {
+				keys[i] = key;
+				values[i] = value + 1;
+				if (++size > (mask + 1) / 2)
+					grow();
+				return -1;
+			}
+			if (keys[i] == key)
+				return values[i] - 1;
+		}
+	}
+
+	/**
+	 * Sets the value of a key already in the map.
+	 */
+	void replace(long key, int value) {
+		for (int i = (int) mix(key) & mask;; i = (i + 1) & mask) {
+			if (values[i] == 0)
+				throw new IllegalStateException("no key " + key);
+			if (keys[i] == key) {
+				values[i] = value + 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the keys, in no particular order
+	 */
+	long[] keys() {
+		long[] all = new long[size];
+		int n = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != 0)
+				all[n++] = keys[i];
+		}
+		return all;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		mask = keys.length - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] == 0)
+				continue;
+			int i = (int) mix(oldKeys[j]) & mask;
+			while (values[i] != 0)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	public String toString() {
+		return "LongIntMap[size=" + size + ", capacity=" + keys.length + "]";
+	}
+}
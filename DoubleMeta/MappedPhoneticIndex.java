@@ -0,0 +1,284 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link PhoneticIndex} written by {@link PhoneticIndex#write} and mapped
+ * from disk. Lookups read the mapped buffer directly, nothing is copied onto
+ * the heap when the file is opened.
+ * <p>
+ * The file is big-endian and made of, in this order:
+ * <ul>
+ * <li>the header: the magic number "DMIX", the format version, the maximum
+ * code length of the encoder, the number of codes, the number of words and the
+ * size of the word arena, each an int</li>
+ * <li>the distinct packed codes in ascending unsigned order, each a long</li>
+ * <li>the offsets of the postings of each code, plus the total, each an int</li>
+ * <li>the postings, the word ids of each code in ascending order</li>
+ * <li>the offsets of each word in the arena, plus the total, each an int</li>
+ * <li>the arena, the UTF-8 bytes of all the words</li>
+ * </ul>
+ * Opening a file reads the offsets and the postings once to check that they
+ * stay within their sections, so that a corrupt file is rejected by
+ * {@link #open(Path)} rather than failing in a later lookup.
+ * <p>
+ * A file is limited to 2GB so that it can be mapped in one buffer. It does not
+ * record the rules of the encoder, so only indexes built with the
+ * {@link RuleSet#DOUBLE_METAPHONE} rules can be written.
+ * <p>
+ * The index is immutable and can be shared between threads.
+ */
+public final class MappedPhoneticIndex {
+
+	static final int MAGIC = 0x444D4958;
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 24;
+
+	private final DoubleMeta meta;
+	private final ByteBuffer buffer;
+	private final int codeCount;
+	private final int wordCount;
+	// 各段在文件中的起始位置
+	private final int codesAt;
+	private final int offsetsAt;
+	private final int postingsAt;
+	private final int wordsAt;
+	private final int arenaAt;
+
+	private MappedPhoneticIndex(ByteBuffer buffer) throws IOException {
+		if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC))
+			throw new IOException("not a phonetic index file");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("unsupported phonetic index version " + buffer.getInt(4));
+		int maxCodeLength = buffer.getInt(8);
+		codeCount = buffer.getInt(12);
+		wordCount = buffer.getInt(16);
+		int arena = buffer.getInt(20);
+		if ((maxCodeLength < 1) || (codeCount < 0) || (wordCount < 0) || (arena < 0))
+			throw new IOException("corrupt phonetic index header");
+		// 按 long 计算各段位置，损坏的文件头不会溢出
+		long offsets = HEADER_SIZE + 8L * codeCount;
+		long postings = offsets + 4L * (codeCount + 1L);
+		long words = postings + 4L * wordCount;
+		long arenaStart = words + 4L * (wordCount + 1L);
+		long end = arenaStart + arena;
+		// 每一段都必须在文件之内，文件也不能比各段长
+		for (long sectionEnd : new long[] { offsets, postings, words, arenaStart, end }) {
+			if (sectionEnd > buffer.capacity())
+				throw new IOException("truncated phonetic index file");
+		}
+		if (end != buffer.capacity())
+			throw new IOException("phonetic index file has " + (buffer.capacity() - end) + " extra bytes");
+		codesAt = HEADER_SIZE;
+		offsetsAt = (int) offsets;
+		postingsAt = (int) postings;
+		wordsAt = (int) words;
+		arenaAt = (int) arenaStart;
+		// 每个单词有且只有一个代码，所以倒排表共有 wordCount 项
+		checkOffsets(buffer, offsetsAt, codeCount, wordCount, "postings");
+		checkOffsets(buffer, wordsAt, wordCount, arena, "word");
+		checkPostings(buffer);
+		this.meta = new DoubleMeta(maxCodeLength);
+		this.buffer = buffer;
+	}
+
+	/**
+	 * 检查 count + 1 个偏移量：从 0 开始，不递减，最后一个等于 total
+	 */
+	private static void checkOffsets(ByteBuffer buffer, int at, int count, int total, String what)
+			throws IOException {
+		int previous = 0;
+		for (int i = 0; i <= count; i++) {
+			int offset = buffer.getInt(at + 4 * i);
+			if ((offset < previous) || (offset > total) || ((i == 0) && (offset != 0)))
+				throw new IOException("corrupt " + what + " offset " + offset + " at " + i);
+			previous = offset;
+		}
+		if (previous != total)
+			throw new IOException("corrupt " + what + " offsets: end " + previous + " instead of " + total);
+	}
+
+	/**
+	 * 检查倒排表：每个代码的单词编号在 [0, wordCount) 之内且递增
+	 */
+	private void checkPostings(ByteBuffer buffer) throws IOException {
+		for (int slot = 0; slot < codeCount; slot++) {
+			int from = buffer.getInt(offsetsAt + 4 * slot);
+			int to = buffer.getInt(offsetsAt + 4 * (slot + 1));
+			int previous = -1;
+			for (int i = from; i < to; i++) {
+				int id = buffer.getInt(postingsAt + 4 * i);
+				if ((id <= previous) || (id >= wordCount))
+					throw new IOException("corrupt posting " + id + " of code " + slot);
+				previous = id;
+			}
+		}
+	}
+
+	/**
+	 * Maps an index file read-only.
+	 *
+	 * @param file a file written by {@link PhoneticIndex#write}
+	 * @return the index
+	 * @throws IOException if the file cannot be mapped or is not a valid index
+	 */
+	public static MappedPhoneticIndex open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("phonetic index file of " + size + " bytes is too large to be mapped");
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new MappedPhoneticIndex(buffer.order(ByteOrder.BIG_ENDIAN));
+		}
+	}
+
+	/**
+	 * @return an encoder with the maximum code length the index was built with
+	 */
+	public DoubleMeta getTransformator() {
+		return meta;
+	}
+
+	/**
+	 * @return the number of indexed words
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	/**
+	 * @return the number of distinct codes
+	 */
+	public int codeCount() {
+		return codeCount;
+	}
+
+	/**
+	 * Returns the packed code stored in a slot. Slots are in ascending unsigned
+	 * order of the codes.
+	 *
+	 * @param slot a slot between 0 and {@link #codeCount()}
+	 * @return the packed code
+	 */
+	public long code(int slot) {
+		return buffer.getLong(codesAt + 8 * slot);
+	}
+
+	/**
+	 * Finds the slot of a packed code.
+	 *
+	 * @param packed a code packed by {@link DoubleMeta#transformToLong}
+	 * @return the slot of the code, or -1 if no word has this code
+	 */
+	public int find(long packed) {
+		int low = 0;
+		int high = codeCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int cmp = Long.compareUnsigned(buffer.getLong(codesAt + 8 * middle), packed);
+			if (cmp < 0)
+				low = middle + 1;
+			else if (cmp > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param slot a slot returned by {@link #find(long)}
+	 * @return the index in the postings of the first word id with this code
+	 */
+	public int start(int slot) {
+		return buffer.getInt(offsetsAt + 4 * slot);
+	}
+
+	/**
+	 * @param slot a slot returned by {@link #find(long)}
+	 * @return the index in the postings past the last word id with this code
+	 */
+	public int end(int slot) {
+		return buffer.getInt(offsetsAt + 4 * (slot + 1));
+	}
+
+	/**
+	 * @param i an index between {@link #start(int)} and {@link #end(int)}
+	 * @return the word id stored there
+	 */
+	public int posting(int i) {
+		return buffer.getInt(postingsAt + 4 * i);
+	}
+
+	/**
+	 * Decodes a word from the arena.
+	 *
+	 * @param id a word id
+	 * @return the word
+	 */
+	public String word(int id) {
+		if ((id < 0) || (id >= wordCount))
+			throw new IndexOutOfBoundsException("word id " + id + " out of " + wordCount);
+		int from = buffer.getInt(wordsAt + 4 * id);
+		int to = buffer.getInt(wordsAt + 4 * (id + 1));
+		byte[] bytes = new byte[to - from];
+		ByteBuffer view = buffer.duplicate();
+		view.position(arenaAt + from);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the ids of the words having the same code as the given word.
+	 *
+	 * @param word the word to look up
+	 * @return the ids of the words with the same code, in ascending order
+	 */
+	public int[] lookup(CharSequence word) {
+		return lookup(meta.transformToLong(word));
+	}
+
+	/**
+	 * Returns the ids of the words having the given code.
+	 *
+	 * @param packed a code packed by {@link DoubleMeta#transformToLong}
+	 * @return the ids of the words with this code, in ascending order
+	 */
+	public int[] lookup(long packed) {
+		int slot = find(packed);
+		if (slot < 0)
+			return new int[0];
+		int start = start(slot);
+		int[] ids = new int[end(slot) - start];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = posting(start + i);
+		return ids;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+/**
+ * A {@link Transformator} recording the duration of every call of the wrapped
+ * one, e.g. a {@link DoubleMeta} or a {@link CachingTransformator}, in a
+ * {@link LatencyHistogram}. Timing a call costs two System.nanoTime calls, so
+ * the wrapper is meant to be installed only where per-call latency is wanted.
+ */
+public final class MeteredTransformator implements Transformator {
+
+	private final Transformator delegate;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * @param delegate the transformator to time
+	 */
+	public MeteredTransformator(Transformator delegate) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @see com.swabunga.spell.engine.Transformator#transform(String)
+	 */
+	public String transform(String word) {
+		long start = System.nanoTime();
+		String code = delegate.transform(word);
+		latency.record(System.nanoTime() - start);
+		return code;
+	}
+
+	/**
+	 * @see com.swabunga.spell.engine.Transformator#getReplaceList()
+	 */
+	public char[] getReplaceList() {
+		return delegate.getReplaceList();
+	}
+
+	/**
+	 * @return the wrapped transformator
+	 */
+	public Transformator getTransformator() {
+		return delegate;
+	}
+
+	/**
+	 * @return the durations of the calls to {@link #transform(String)}
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+}
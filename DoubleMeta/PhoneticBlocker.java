@@ -0,0 +1,432 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Blocking for record linkage: generates the candidate pairs of records that
+ * share a blocking key, so that only those pairs need to be compared in full.
+ * <p>
+ * The keys of a record are any combination of its primary code
+ * ({@link #PRIMARY}), its alternate code when it differs from the primary one
+ * ({@link #ALTERNATE}) and the first letters of the record, uppercased and
+ * without accents ({@link #PREFIX}). The primary and alternate codes are keys
+ * of the same kind, so the primary code of a record meets the alternate code
+ * of another: "Smith" (SM0, XMT) and "Schmidt" (XMT, SMT) are a candidate
+ * pair. Records are added in batches and only the keys and ids are kept, in a
+ * {@link DuplicateGrouper} for the codes and one for the prefixes, which spill
+ * to disk beyond the memory budget. The id of a record is the number of
+ * records added before it. Records without letters or without a code have no
+ * key.
+ * <p>
+ * A block larger than the maximum block size, e.g. the code of "Smith", would
+ * produce a quadratic number of pairs. It is split into sub-blocks by a
+ * secondary key, a hash of the prefix for the code blocks and a hash of the
+ * primary code for the prefix blocks, and sub-blocks still larger than the
+ * maximum are dropped; {@link #getDroppedBlockCount()} and
+ * {@link #getDroppedRecordCount()} tell how much was lost. The blocks are
+ * processed in parallel. With a single kind of key the pairs are streamed to
+ * the handler as they are generated, so memory does not depend on the number
+ * of pairs. With several, a pair of records sharing more than one key is
+ * reported once: the pairs go through another grouper keyed by the two ids,
+ * which spills to disk like the others, and are reported at the end.
+ */
+public final class PhoneticBlocker implements Closeable {
+
+	/**
+	 * Receives the candidate pairs. It is called concurrently from the threads
+	 * of the common ForkJoinPool.
+	 */
+	public interface PairHandler {
+
+		/**
+		 * @param first the id of a record
+		 * @param second the id of the other record, greater than first
+		 * @throws IOException to stop the generation
+		 */
+		void pair(int first, int second) throws IOException;
+	}
+
+	/**
+	 * Blocks the records by their primary code.
+	 */
+	public static final int PRIMARY = 1;
+
+	/**
+	 * Blocks the records by their alternate code, when it differs from the
+	 * primary one.
+	 */
+	public static final int ALTERNATE = 2;
+
+	/**
+	 * Blocks the records by their first letters.
+	 */
+	public static final int PREFIX = 4;
+
+	/**
+	 * The longest prefix that can be used as a key.
+	 */
+	public static final int MAX_PREFIX_LENGTH = 12;
+
+	// 每个并行任务编码的记录数
+	private static final int CHUNK = 1024;
+
+	private final DoubleMeta meta;
+	private final int keys;
+	private final int prefixLength;
+	private final int maxBlockSize;
+	// 主代码和替代代码共用一个键空间
+	private final DuplicateGrouper codes;
+	private final DuplicateGrouper prefix;
+	// 有多种键时按（小编号，大编号）去重的候选对，否则为 null
+	private final DuplicateGrouper unique;
+	private final LongAdder blocks = new LongAdder();
+	private final LongAdder pairs = new LongAdder();
+	private final LongAdder splitBlocks = new LongAdder();
+	private final LongAdder droppedBlocks = new LongAdder();
+	private final LongAdder droppedRecords = new LongAdder();
+	private int count;
+	private boolean finished;
+
+	/**
+	 * @param meta the encoder of the records
+	 * @param keys the blocking keys, a combination of {@link #PRIMARY},
+	 *          {@link #ALTERNATE} and {@link #PREFIX}
+	 * @param prefixLength the number of letters of the prefix key and of the
+	 *          secondary key of the code blocks, at most
+	 *          {@link #MAX_PREFIX_LENGTH}
+	 * @param maxBlockSize the largest block or sub-block whose pairs are
+	 *          generated
+	 * @param memoryBudget the bytes of keys and pairs buffered before spilling,
+	 *          shared by the groupers
+	 * @param spillDirectory the directory of the spilled runs
+	 */
+	public PhoneticBlocker(DoubleMeta meta, int keys, int prefixLength, int maxBlockSize, long memoryBudget,
+			Path spillDirectory) {
+		if ((keys == 0) || ((keys & ~(PRIMARY | ALTERNATE | PREFIX)) != 0))
+			throw new IllegalArgumentException("keys=" + keys);
+		if ((prefixLength < 1) || (prefixLength > MAX_PREFIX_LENGTH))
+			throw new IllegalArgumentException("prefixLength=" + prefixLength);
+		if (maxBlockSize < 2)
+			throw new IllegalArgumentException("maxBlockSize=" + maxBlockSize);
+		this.meta = meta;
+		this.keys = keys;
+		this.prefixLength = prefixLength;
+		this.maxBlockSize = maxBlockSize;
+		boolean byCode = (keys & (PRIMARY | ALTERNATE)) != 0;
+		boolean byPrefix = (keys & PREFIX) != 0;
+		// 只有一种键时同一对记录不会出现在两个块里
+		boolean dedupe = Integer.bitCount(keys) > 1;
+		long budget = memoryBudget / ((byCode ? 1 : 0) + (byPrefix ? 1 : 0) + (dedupe ? 1 : 0));
+		codes = byCode ? new DuplicateGrouper(meta, budget, spillDirectory, true) : null;
+		prefix = byPrefix ? new DuplicateGrouper(meta, budget, spillDirectory, true) : null;
+		unique = dedupe ? new DuplicateGrouper(meta, budget, spillDirectory, false) : null;
+	}
+
+	/**
+	 * Computes the keys of a batch of records in parallel and buffers them.
+	 *
+	 * @param records the records, the first one gets the id
+	 *          {@link #getRecordCount()}
+	 * @return the id of the first record of the batch
+	 * @throws IOException if the keys cannot be spilled
+	 * @throws IllegalStateException if the blocker is finished or would hold
+	 *           more than <code>Integer.MAX_VALUE</code> records
+	 */
+	public synchronized int add(CharSequence[] records) throws IOException {
+		if (finished)
+			throw new IllegalStateException("finished");
+		if (records.length > Integer.MAX_VALUE - count)
+			throw new IllegalStateException("too many records");
+		int n = records.length;
+		int first = count;
+		long[] primaryCodes = new long[n];
+		long[] alternateCodes = new long[n];
+		long[] prefixes = new long[n];
+		IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+			StringBuilder p = new StringBuilder();
+			StringBuilder a = new StringBuilder();
+			for (int i = c * CHUNK; i < Math.min(n, (c + 1) * CHUNK); i++) {
+				p.setLength(0);
+				a.setLength(0);
+				meta.transformBoth(records[i], 0, records[i].length(), p, a);
+				primaryCodes[i] = DoubleMeta.pack(p, 0, p.length());
+				alternateCodes[i] = DoubleMeta.pack(a, 0, a.length());
+				prefixes[i] = prefixKey(records[i], prefixLength);
+			}
+		});
+		long[] entryKeys = new long[2 * n];
+		int[] entryIds = new int[2 * n];
+		int[] entryTags = new int[2 * n];
+		if (codes != null) {
+			int m = 0;
+			for (int i = 0; i < n; i++) {
+				int tag = tag(prefixes[i]);
+				if (((keys & PRIMARY) != 0) && (primaryCodes[i] != 0)) {
+					entryKeys[m] = primaryCodes[i];
+					entryIds[m] = first + i;
+					entryTags[m++] = tag;
+				}
+				if (((keys & ALTERNATE) != 0) && (alternateCodes[i] != 0) && (alternateCodes[i] != primaryCodes[i])) {
+					entryKeys[m] = alternateCodes[i];
+					entryIds[m] = first + i;
+					entryTags[m++] = tag;
+				}
+			}
+			codes.add(entryKeys, entryIds, entryTags, m);
+		}
+		if (prefix != null) {
+			int m = 0;
+			for (int i = 0; i < n; i++) {
+				if (prefixes[i] != 0) {
+					entryKeys[m] = prefixes[i];
+					entryIds[m] = first + i;
+					entryTags[m++] = tag(primaryCodes[i]);
+				}
+			}
+			prefix.add(entryKeys, entryIds, entryTags, m);
+		}
+		count += n;
+		return first;
+	}
+
+	/**
+	 * Generates the candidate pairs of all the blocks. The blocker cannot be used
+	 * anymore afterwards.
+	 *
+	 * @param handler receives the pairs, concurrently
+	 * @throws IOException if a spilled run cannot be read or the handler failed
+	 * @throws IllegalStateException if the blocker is already finished
+	 */
+	public void finish(PairHandler handler) throws IOException {
+		if (handler == null)
+			throw new NullPointerException("handler");
+		synchronized (this) {
+			if (finished)
+				throw new IllegalStateException("finished");
+			finished = true;
+		}
+		DuplicateGrouper.Sink sink = (key, ids, tags, n) -> block(ids, tags, n, handler);
+		try {
+			for (DuplicateGrouper grouper : new DuplicateGrouper[] { codes, prefix }) {
+				if (grouper != null)
+					grouper.finish(2, sink);
+			}
+			if (unique != null) {
+				// 每个不同的（小编号，大编号）恰好一组
+				unique.finish(1, (pair, ids, tags, n) -> {
+					handler.pair((int) (pair >>> 32), (int) pair);
+					pairs.increment();
+				});
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Deletes the spilled runs.
+	 */
+	public void close() throws IOException {
+		synchronized (this) {
+			finished = true;
+		}
+		for (DuplicateGrouper grouper : new DuplicateGrouper[] { codes, prefix, unique }) {
+			if (grouper != null)
+				grouper.close();
+		}
+	}
+
+	/**
+	 * @return the number of records added
+	 */
+	public synchronized int getRecordCount() {
+		return count;
+	}
+
+	/**
+	 * @return the blocking keys, see {@link #PRIMARY}, {@link #ALTERNATE} and
+	 *         {@link #PREFIX}
+	 */
+	public int getKeys() {
+		return keys;
+	}
+
+	/**
+	 * @return the number of blocks of at least two records processed so far
+	 */
+	public long getBlockCount() {
+		return blocks.sum();
+	}
+
+	/**
+	 * @return the number of candidate pairs reported so far
+	 */
+	public long getPairCount() {
+		return pairs.sum();
+	}
+
+	/**
+	 * @return the number of blocks split into sub-blocks
+	 */
+	public long getSplitBlockCount() {
+		return splitBlocks.sum();
+	}
+
+	/**
+	 * @return the number of sub-blocks dropped because they were still too
+	 *         large
+	 */
+	public long getDroppedBlockCount() {
+		return droppedBlocks.sum();
+	}
+
+	/**
+	 * @return the number of records in the dropped sub-blocks; a record is
+	 *         counted once per dropped sub-block it is in
+	 */
+	public long getDroppedRecordCount() {
+		return droppedRecords.sum();
+	}
+
+	public String toString() {
+		return "PhoneticBlocker[records=" + getRecordCount() + ", blocks=" + getBlockCount() + ", pairs="
+				 + getPairCount() + ", split=" + getSplitBlockCount() + ", dropped=" + getDroppedBlockCount()
+				+ ", droppedRecords=" + getDroppedRecordCount() + "]";
+	}
+
+	/**
+	 * 前缀键：前 length 个字母去重音后转大写，每个字母 5 位，第一个字母在最高位；没有字母时为 0
+	 */
+	static long prefixKey(CharSequence record, int length) {
+		long key = 0;
+		int letters = 0;
+		int len = record.length();
+		for (int i = 0; (i < len) && (letters < length); i++) {
+			char c = DoubleMeta.charAt(record, 0, len, i);
+			if (c == '\u00c7')
+				c = 'C';
+			else if (c == '\u00d1')
+				c = 'N';
+			if ((c >= 'A') && (c <= 'Z'))
+				key |= (long) (c - 'A' + 1) << (59 - 5 * letters++);
+		}
+		return key;
+	}
+
+	/**
+	 * 次级键取 64 位哈希的高 32 位；冲突只会合并两个子块，不会漏掉候选对
+	 */
+	private static int tag(long key) {
+		return (int) (LongIntMap.mix(key) >>> 32);
+	}
+
+	/**
+	 * 生成一个块的候选对，过大的块按标签拆成子块
+	 */
+	private void block(int[] ids, int[] tags, int n, PairHandler handler) throws IOException {
+		blocks.increment();
+		// 一个块的候选对不超过 n(n-1)/2 个
+		Pairs out = (unique != null) ? new Pairs((int) Math.min(Pairs.CAPACITY, (long) n * (n - 1) / 2)) : null;
+		if (n <= maxBlockSize) {
+			pairs(ids, n, handler, out);
+			if (out != null)
+				out.flush();
+			return;
+		}
+		splitBlocks.increment();
+		// 按（标签，位置）排序，同一子块内的编号保持升序
+		long[] order = new long[n];
+		for (int i = 0; i < n; i++)
+			order[i] = ((long) tags[i] << 32) | i;
+		Arrays.sort(order);
+		int[] sub = new int[Math.min(n, maxBlockSize)];
+		for (int start = 0, end; start < n; start = end) {
+			int tag = (int) (order[start] >> 32);
+			end = start + 1;
+			while ((end < n) && ((int) (order[end] >> 32) == tag))
+				end++;
+			if (end - start > maxBlockSize) {
+				droppedBlocks.increment();
+				droppedRecords.add(end - start);
+				continue;
+			}
+			for (int i = start; i < end; i++)
+				sub[i - start] = ids[(int) order[i]];
+			pairs(sub, end - start, handler, out);
+		}
+		if (out != null)
+			out.flush();
+	}
+
+	/**
+	 * 生成一个块或子块的候选对：需要去重时放进 out，否则直接交给 handler
+	 */
+	private void pairs(int[] ids, int n, PairHandler handler, Pairs out) throws IOException {
+		if (out == null) {
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++)
+					handler.pair(ids[i], ids[j]);
+			}
+			pairs.add((long) n * (n - 1) / 2);
+			return;
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++)
+				out.add(((long) ids[i] << 32) | ids[j]);
+		}
+	}
+
+	/**
+	 * 一个块的候选对，攒满一批后交给去重的分组器，减少对它的加锁
+	 */
+	private final class Pairs {
+
+		private static final int CAPACITY = 4096;
+
+		private final long[] keys;
+		// 去重只看键，编号不用
+		private final int[] ids;
+		private int size;
+
+		Pairs(int capacity) {
+			keys = new long[capacity];
+			ids = new int[capacity];
+		}
+
+		void add(long pair) throws IOException {
+			keys[size++] = pair;
+			if (size == keys.length)
+				flush();
+		}
+
+		void flush() throws IOException {
+			if (size > 0)
+				unique.add(keys, ids, null, size);
+			size = 0;
+		}
+	}
+}
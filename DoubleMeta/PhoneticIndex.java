@@ -0,0 +1,409 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An inverted index from phonetic code to the words sharing it. The words are
+ * identified by their position in the array the index was built from.
+ * <p>
+ * The index is kept in three primitive arrays, in the compressed sparse row
+ * layout: the distinct codes packed by {@link DoubleMeta#transformToLong} in
+ * ascending order, an offsets array with one more entry than there are codes,
+ * and the postings, where the word ids of code <code>k</code> are
+ * <code>postings[offsets[k] .. offsets[k + 1])</code> in ascending order. A
+ * lookup is a binary search over the codes. Codes longer than
+ * {@link DoubleMeta#MAX_PACKED_LENGTH} symbols are indexed by their packed
+ * prefix.
+ * <p>
+ * The sorted codes are also an implicit trie: the codes sharing a prefix are
+ * contiguous, so {@link #findWithin(long, int)} finds the codes within an edit
+ * distance of a code by walking the prefixes and pruning those already too far,
+ * without looking at most of the codes.
+ * <p>
+ * An index is immutable once built and can be shared between threads. It can be
+ * saved with {@link #write(CharSequence[], Path)} and opened again without
+ * rebuilding with {@link MappedPhoneticIndex#open(Path)}.
+ */
+public final class PhoneticIndex {
+
+	private final DoubleMeta meta;
+	// 打包代码异或符号位后按有符号顺序排列，即按无符号顺序排列
+	private final long[] codes;
+	private final int[] offsets;
+	private final int[] postings;
+
+	PhoneticIndex(DoubleMeta meta, long[] codes, int[] offsets, int[] postings) {
+		this.meta = meta;
+		this.codes = codes;
+		this.offsets = offsets;
+		this.postings = postings;
+	}
+
+	/**
+	 * Builds the index of a dictionary, encoding the words in parallel with
+	 * {@link DoubleMeta#transformAllToLong(CharSequence[])}.
+	 *
+	 * @param meta the encoder used for the words and the lookups
+	 * @param words the dictionary, the id of a word is its index
+	 * @return the index
+	 */
+	public static PhoneticIndex build(DoubleMeta meta, CharSequence[] words) {
+		return build(meta, meta.transformAllToLong(words));
+	}
+
+	/**
+	 * Builds the index from already packed codes. The codes are sorted and
+	 * placed in parallel.
+	 *
+	 * @param meta the encoder used for the lookups
+	 * @param packed the packed code of each word, the id of a word is its index
+	 * @return the index
+	 */
+	public static PhoneticIndex build(DoubleMeta meta, long[] packed) {
+		int n = packed.length;
+		long[] sorted = new long[n];
+		for (int i = 0; i < n; i++)
+			sorted[i] = packed[i] ^ Long.MIN_VALUE;
+		Arrays.parallelSort(sorted);
+		// 去重得到所有不同的代码
+		int keys = 0;
+		for (int i = 0; i < n; i++) {
+			if ((i == 0) || (sorted[i] != sorted[keys - 1]))
+				sorted[keys++] = sorted[i];
+		}
+		long[] codes = Arrays.copyOf(sorted, keys);
+		// 统计每个代码的单词数，再累加为偏移量
+		int[] slots = new int[n];
+		int[] offsets = new int[keys + 1];
+		IntStream.range(0, n).parallel().forEach(i -> slots[i] = Arrays.binarySearch(codes, packed[i] ^ Long.MIN_VALUE));
+		for (int i = 0; i < n; i++)
+			offsets[slots[i] + 1]++;
+		for (int k = 0; k < keys; k++)
+			offsets[k + 1] += offsets[k];
+		// 按单词编号顺序填入，每个代码下的编号保持升序
+		int[] fill = Arrays.copyOf(offsets, keys);
+		int[] postings = new int[n];
+		for (int i = 0; i < n; i++)
+			postings[fill[slots[i]]++] = i;
+		return new PhoneticIndex(meta, codes, offsets, postings);
+	}
+
+	/**
+	 * @return the encoder used for lookups
+	 */
+	public DoubleMeta getTransformator() {
+		return meta;
+	}
+
+	/**
+	 * @return the number of indexed words
+	 */
+	public int size() {
+		return postings.length;
+	}
+
+	/**
+	 * @return the number of distinct codes
+	 */
+	public int codeCount() {
+		return codes.length;
+	}
+
+	/**
+	 * Returns the packed code stored in a slot. Slots are in ascending unsigned
+	 * order of the codes.
+	 *
+	 * @param slot a slot between 0 and {@link #codeCount()}
+	 * @return the packed code
+	 */
+	public long code(int slot) {
+		return codes[slot] ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Finds the slot of a packed code.
+	 *
+	 * @param packed a code packed by {@link DoubleMeta#transformToLong}
+	 * @return the slot of the code, or -1 if no word has this code
+	 */
+	public int find(long packed) {
+		int slot = Arrays.binarySearch(codes, packed ^ Long.MIN_VALUE);
+		return (slot >= 0) ? slot : -1;
+	}
+
+	/**
+	 * Tells whether the code of some word starts with the given symbols. Since
+	 * the codes are sorted, the codes sharing a prefix are contiguous and one
+	 * binary search finds them.
+	 *
+	 * @param packed a packed code, only its first <code>length</code> symbols
+	 *          are used
+	 * @param length the number of symbols of the prefix, at most
+	 *          {@link DoubleMeta#MAX_PACKED_LENGTH}
+	 * @return true if a code starts with the prefix
+	 */
+	public boolean hasPrefix(long packed, int length) {
+		if ((length < 0) || (length > DoubleMeta.MAX_PACKED_LENGTH))
+			throw new IllegalArgumentException("length=" + length);
+		if (length == 0)
+			return codes.length > 0;
+		long mask = -1L << (64 - 4 * length);
+		long prefix = packed & mask;
+		int slot = Arrays.binarySearch(codes, prefix ^ Long.MIN_VALUE);
+		if (slot < 0)
+			slot = -slot - 1;
+		return (slot < codes.length) && ((code(slot) & mask) == prefix);
+	}
+
+	/**
+	 * Finds the slots of the codes within an edit distance of a code, counting
+	 * insertions, deletions and substitutions of symbols. For example PRN, the
+	 * code of Brown, is within distance 1 of PRNT, the code of Brandt. Codes
+	 * longer than {@link DoubleMeta#MAX_PACKED_LENGTH} symbols are compared by
+	 * their packed prefix.
+	 * <p>
+	 * The search keeps one row of the edit distance table per symbol of the
+	 * current prefix and does not enter a prefix whose row is entirely above the
+	 * distance, so it only looks at the codes near the given one. It allocates
+	 * its own rows and can run concurrently with other lookups.
+	 *
+	 * @param packed a code packed by {@link DoubleMeta#transformToLong}
+	 * @param distance the largest edit distance, at least 0
+	 * @return the slots of the matching codes, in ascending order
+	 */
+	public int[] findWithin(long packed, int distance) {
+		if (distance < 0)
+			throw new IllegalArgumentException("distance=" + distance);
+		int m = 0;
+		while ((m < DoubleMeta.MAX_PACKED_LENGTH) && (symbol(packed, m) != 0))
+			m++;
+		int[] query = new int[m];
+		for (int j = 0; j < m; j++)
+			query[j] = symbol(packed, j);
+		// rows[d] 是长度为 d 的前缀与查询代码各前缀的编辑距离
+		int[][] rows = new int[DoubleMeta.MAX_PACKED_LENGTH + 1][m + 1];
+		for (int j = 0; j <= m; j++)
+			rows[0][j] = j;
+		Slots found = new Slots();
+		walk(0, codes.length, 0, 0L, query, distance, rows, found);
+		return Arrays.copyOf(found.slots, found.size);
+	}
+
+	/**
+	 * Returns the ids of the words whose code is within an edit distance of the
+	 * code of the given word.
+	 *
+	 * @param word the word to look up
+	 * @param distance the largest edit distance between the codes, at least 0
+	 * @return the ids of the matching words, in ascending order
+	 * @see #findWithin(long, int)
+	 */
+	public int[] lookup(CharSequence word, int distance) {
+		int[] slots = findWithin(meta.transformToLong(word), distance);
+		int total = 0;
+		for (int slot : slots)
+			total += offsets[slot + 1] - offsets[slot];
+		int[] ids = new int[total];
+		int n = 0;
+		for (int slot : slots) {
+			System.arraycopy(postings, offsets[slot], ids, n, offsets[slot + 1] - offsets[slot]);
+			n += offsets[slot + 1] - offsets[slot];
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * 遍历 [low, high) 中共享前 depth 个符号 prefix 的代码，rows[depth] 已经算好
+	 */
+	private void walk(int low, int high, int depth, long prefix, int[] query, int distance, int[][] rows,
+			Slots found) {
+		if (low == high)
+			return;
+		int m = query.length;
+		int[] row = rows[depth];
+		if (depth == DoubleMeta.MAX_PACKED_LENGTH) {
+			// 满长度的代码，可能还有一个带溢出标志的
+			if (row[m] <= distance) {
+				for (int slot = low; slot < high; slot++)
+					found.add(slot);
+			}
+			return;
+		}
+		// 代码在此结束的排在最前面，因为结束的符号是 0
+		if (symbol(code(low), depth) == 0) {
+			if (row[m] <= distance)
+				found.add(low);
+			low++;
+		}
+		long mask = -1L << (60 - 4 * depth);
+		int[] next = rows[depth + 1];
+		while (low < high) {
+			int s = symbol(code(low), depth);
+			long child = prefix | ((long) s << (60 - 4 * depth));
+			// 二分查找下一个符号不同的第一个代码
+			int from = low + 1;
+			int to = high;
+			while (from < to) {
+				int middle = (from + to) >>> 1;
+				if ((code(middle) & mask) == child)
+					from = middle + 1;
+				else
+					to = middle;
+			}
+			next[0] = depth + 1;
+			int best = next[0];
+			for (int j = 1; j <= m; j++) {
+				int d = Math.min(Math.min(row[j], next[j - 1]) + 1, row[j - 1] + ((query[j - 1] == s) ? 0 : 1));
+				next[j] = d;
+				best = Math.min(best, d);
+			}
+			// 整行都超过距离时，这个前缀下的代码都不可能匹配
+			if (best <= distance)
+				walk(low, from, depth + 1, child, query, distance, rows, found);
+			low = from;
+		}
+	}
+
+	private static int symbol(long packed, int i) {
+		return (int) (packed >>> (60 - 4 * i)) & 0xF;
+	}
+
+	/**
+	 * 找到的槽位，按升序追加
+	 */
+	private static final class Slots {
+		int[] slots = new int[16];
+		int size;
+
+		void add(int slot) {
+			if (size == slots.length)
+				slots = Arrays.copyOf(slots, size * 2);
+			slots[size++] = slot;
+		}
+	}
+
+	/**
+	 * @param slot a slot returned by {@link #find(long)}
+	 * @return the index in the postings of the first word id with this code
+	 */
+	public int start(int slot) {
+		return offsets[slot];
+	}
+
+	/**
+	 * @param slot a slot returned by {@link #find(long)}
+	 * @return the index in the postings past the last word id with this code
+	 */
+	public int end(int slot) {
+		return offsets[slot + 1];
+	}
+
+	/**
+	 * @param i an index between {@link #start(int)} and {@link #end(int)}
+	 * @return the word id stored there
+	 */
+	public int posting(int i) {
+		return postings[i];
+	}
+
+	/**
+	 * Returns the ids of the words having the same code as the given word.
+	 *
+	 * @param word the word to look up
+	 * @return the ids of the words with the same code, in ascending order
+	 */
+	public int[] lookup(CharSequence word) {
+		return lookup(meta.transformToLong(word));
+	}
+
+	/**
+	 * Returns the ids of the words having the given code.
+	 *
+	 * @param packed a code packed by {@link DoubleMeta#transformToLong}
+	 * @return the ids of the words with this code, in ascending order
+	 */
+	public int[] lookup(long packed) {
+		int slot = find(packed);
+		if (slot < 0)
+			return new int[0];
+		return Arrays.copyOfRange(postings, offsets[slot], offsets[slot + 1]);
+	}
+
+	/**
+	 * Writes the index and its words in the format read by
+	 * {@link MappedPhoneticIndex}, replacing the file if it exists.
+	 *
+	 * @param words the words the index was built from
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written or the index does not fit
+	 *           in the format, including indexes built with other rules than
+	 *           {@link RuleSet#DOUBLE_METAPHONE}, which the format does not record
+	 */
+	public void write(CharSequence[] words, Path file) throws IOException {
+		if (words.length != postings.length)
+			throw new IllegalArgumentException("the index has " + postings.length + " words, got " + words.length);
+		// 文件只记录最大代码长度，打开时总是使用默认规则，其它规则的代码查不到
+		if (meta.getRules() != RuleSet.DOUBLE_METAPHONE)
+			throw new IOException("an index built with custom rules cannot be written, the format only supports "
+					+ "the Double Metaphone rules");
+		byte[][] bytes = new byte[words.length][];
+		long arena = 0;
+		for (int i = 0; i < words.length; i++) {
+			bytes[i] = words[i].toString().getBytes(StandardCharsets.UTF_8);
+			arena += bytes[i].length;
+		}
+		long total = MappedPhoneticIndex.HEADER_SIZE + 8L * codes.length + 4L * (codes.length + 1) + 4L * postings.length
+				+ 4L * (words.length + 1) + arena;
+		if (total > Integer.MAX_VALUE)
+			throw new IOException("index of " + total + " bytes is too large to be mapped");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			out.writeInt(MappedPhoneticIndex.MAGIC);
+			out.writeInt(MappedPhoneticIndex.VERSION);
+			out.writeInt(meta.getMaxCodeLength());
+			out.writeInt(codes.length);
+			out.writeInt(postings.length);
+			out.writeInt((int) arena);
+			for (long code : codes)
+				out.writeLong(code ^ Long.MIN_VALUE);
+			for (int offset : offsets)
+				out.writeInt(offset);
+			for (int posting : postings)
+				out.writeInt(posting);
+			int position = 0;
+			out.writeInt(position);
+			for (byte[] word : bytes) {
+				position += word.length;
+				out.writeInt(position);
+			}
+			for (byte[] word : bytes)
+				out.write(word);
+		}
+	}
+}
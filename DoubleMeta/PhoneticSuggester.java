@@ -0,0 +1,294 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spelling suggestions from a {@link PhoneticIndex}, in the manner of Jazzy's
+ * getSuggestions: the words having the code of the misspelled word or the code
+ * of one of its edits (two adjacent letters swapped, a letter replaced by or a
+ * letter inserted from {@link DoubleMeta#getReplaceList()}, a letter deleted),
+ * within an edit distance of the misspelled word.
+ * <p>
+ * The edits are about thirty per letter, and encoding each one from scratch is
+ * most of the cost. The rules only look a few letters ahead of the current
+ * position, so an edit at position <code>i</code> cannot change the steps of
+ * the encoding that start well before <code>i</code>. The misspelled word is
+ * encoded once, recording the code length at every step, and each edit resumes
+ * the encoding from the last step that cannot see it. Edits whose code prefix,
+ * just past the edited letter, starts no code of the dictionary are dropped
+ * without encoding the rest of the word. Edits near the start of the word and
+ * encoders running other rules than {@link RuleSet#DOUBLE_METAPHONE} are
+ * encoded in full.
+ * <p>
+ * The suggester is immutable and can be shared between threads.
+ */
+public final class PhoneticSuggester {
+
+	private final PhoneticIndex index;
+	private final CharSequence[] words;
+	private final DoubleMeta meta;
+	private final char[] replaceList;
+	private final boolean incremental;
+
+	/**
+	 * @param index the index of the dictionary, its encoder is used for the
+	 *          edits
+	 * @param words the dictionary the index was built from
+	 */
+	public PhoneticSuggester(PhoneticIndex index, CharSequence[] words) {
+		this(index, words, index.getTransformator().getRules() == RuleSet.DOUBLE_METAPHONE);
+	}
+
+	/**
+	 * 可以关闭增量编码，用于对比
+	 */
+	PhoneticSuggester(PhoneticIndex index, CharSequence[] words, boolean incremental) {
+		if (words.length != index.size())
+			throw new IllegalArgumentException("words.length=" + words.length + ", index.size()=" + index.size());
+		this.index = index;
+		this.words = words;
+		this.meta = index.getTransformator();
+		this.replaceList = meta.getReplaceList();
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Returns the words of the dictionary sounding like the misspelled word or
+	 * like one of its edits, ordered by their edit distance to the misspelled
+	 * word and then alphabetically. The distance ignores case.
+	 *
+	 * @param word the misspelled word
+	 * @param threshold the largest edit distance of a suggestion
+	 * @return the suggestions
+	 */
+	public List<String> suggest(String word, int threshold) {
+		Search search = new Search(word);
+		search.run();
+		char[] query = upperCase(word, new char[word.length()]);
+		char[] other = new char[32];
+		int[][] rows = new int[2][];
+		long[] ranked = new long[16];
+		int n = 0;
+		for (long code : search.codes.keys()) {
+			int slot = index.find(code);
+			for (int i = index.start(slot); i < index.end(slot); i++) {
+				int id = index.posting(i);
+				CharSequence candidate = words[id];
+				if (Math.abs(candidate.length() - query.length) > threshold)
+					continue;
+				if (other.length < candidate.length())
+					other = new char[candidate.length() * 2];
+				int distance = distance(query, query.length, upperCase(candidate, other), candidate.length(),
+						threshold, rows);
+				if (distance <= threshold) {
+					if (n == ranked.length)
+						ranked = Arrays.copyOf(ranked, n * 2);
+					ranked[n++] = ((long) distance << 32) | id;
+				}
+			}
+		}
+		Arrays.sort(ranked, 0, n);
+		List<String> suggestions = new ArrayList<String>(n);
+		for (int k = 0; k < n;) {
+			// 同一距离内按字母顺序排列
+			int distance = (int) (ranked[k] >>> 32);
+			int from = suggestions.size();
+			for (; (k < n) && ((int) (ranked[k] >>> 32) == distance); k++)
+				suggestions.add(words[(int) ranked[k]].toString());
+			suggestions.subList(from, suggestions.size()).sort(null);
+		}
+		return suggestions;
+	}
+
+	/**
+	 * @return the number of distinct dictionary codes among the misspelled word
+	 *         and its edits, for diagnostics
+	 */
+	int countCodes(String word) {
+		Search search = new Search(word);
+		search.run();
+		return search.codes.size();
+	}
+
+	/**
+	 * 一次查询的状态：原单词的代码和每一步开始时的代码长度，以及找到的代码
+	 */
+	private final class Search {
+
+		final String word;
+		final int length;
+		final int limit;
+		final StringBuilder code = new StringBuilder();
+		final StringBuilder scratch = new StringBuilder();
+		final StringBuilder candidate = new StringBuilder();
+		final int[] trace;
+		final int flags;
+		final LongIntMap codes = new LongIntMap(64);
+		// 已经查过的代码和前缀：1 表示存在，0 表示不存在；许多修改得到相同的代码，只查一次索引
+		final LongIntMap probed = new LongIntMap(256);
+		final LongIntMap prefixes = new LongIntMap(256);
+
+		Search(String word) {
+			this.word = word;
+			this.length = word.length();
+			// 与 transformToLong 相同：多编码一个符号即可判断是否溢出
+			this.limit = Math.min(meta.getMaxCodeLength(), DoubleMeta.MAX_PACKED_LENGTH + 1);
+			this.trace = new int[length + 1];
+			this.flags = DoubleMeta.wordFlags(word, 0, length);
+		}
+
+		void run() {
+			Arrays.fill(trace, -1);
+			if (incremental)
+				DoubleMeta.encode(word, 0, length, limit, code, null, trace);
+			found(incremental ? DoubleMeta.pack(code, 0, code.length()) : meta.transformToLong(word));
+			// 交换相邻的两个字母
+			for (int i = 0; i + 1 < length; i++) {
+				candidate.setLength(0);
+				candidate.append(word, 0, i).append(word.charAt(i + 1)).append(word.charAt(i)).append(word, i + 2,
+						length);
+				edit(i);
+			}
+			// 用替换表中的字符替换每个字母
+			for (int i = 0; i < length; i++) {
+				for (char c : replaceList) {
+					if (DoubleMeta.charAt(word, 0, length, i) == c)
+						continue;
+					candidate.setLength(0);
+					candidate.append(word, 0, i).append(c).append(word, i + 1, length);
+					edit(i);
+				}
+			}
+			// 在每个位置插入替换表中的字符
+			for (int i = 0; i <= length; i++) {
+				for (char c : replaceList) {
+					candidate.setLength(0);
+					candidate.append(word, 0, i).append(c).append(word, i, length);
+					edit(i);
+				}
+			}
+			// 删除每个字母
+			for (int i = 0; i < length; i++) {
+				candidate.setLength(0);
+				candidate.append(word, 0, i).append(word, i + 1, length);
+				edit(i);
+			}
+		}
+
+		/**
+		 * 编码从位置 i 开始被修改的候选词，代码存在于字典中时记录下来
+		 */
+		private void edit(int i) {
+			int n = candidate.length();
+			if (!incremental) {
+				found(meta.transformToLong(candidate, 0, n, scratch));
+				return;
+			}
+			int candidateFlags = DoubleMeta.wordFlags(candidate, 0, n);
+			int checkpoint = i - DoubleMeta.FORWARD_REACH + 1;
+			if ((i < DoubleMeta.PREFIX_REACH) || (candidateFlags != flags))
+				checkpoint = -1;
+			while ((checkpoint >= 0) && (trace[checkpoint] < 0))
+				checkpoint--;
+			scratch.setLength(0);
+			int current;
+			if (checkpoint < 0) {
+				// 没有可用的检查点，从词首开始，但仍然在修改处之后剪枝
+				current = DoubleMeta.encodeStart(candidate, 0, n, scratch, null);
+			} else {
+				scratch.append(code, 0, trace[checkpoint]);
+				current = checkpoint;
+			}
+			current = DoubleMeta.encodeFrom(candidate, 0, n, current, Math.min(n, i + 1), candidateFlags, limit, 0,
+					scratch, null, null);
+			// 剪枝：修改处之后的代码前缀不是任何代码的前缀时，编码剩余部分也不会得到字典中的代码
+			int prefix = Math.min(Math.min(scratch.length(), limit), DoubleMeta.MAX_PACKED_LENGTH);
+			long packed = DoubleMeta.pack(scratch, 0, prefix);
+			int known = prefixes.get(packed);
+			if (known < 0) {
+				known = index.hasPrefix(packed, prefix) ? 1 : 0;
+				prefixes.putIfAbsent(packed, known);
+			}
+			if (known == 0)
+				return;
+			DoubleMeta.encodeFrom(candidate, 0, n, current, n, candidateFlags, limit, 0, scratch, null, null);
+			if (scratch.length() > limit)
+				scratch.setLength(limit);
+			found(DoubleMeta.pack(scratch, 0, scratch.length()));
+		}
+
+		private void found(long packed) {
+			if ((probed.putIfAbsent(packed, 0) < 0) && (index.find(packed) >= 0))
+				codes.putIfAbsent(packed, 0);
+		}
+	}
+
+	private static char[] upperCase(CharSequence s, char[] dst) {
+		for (int i = 0; i < s.length(); i++)
+			dst[i] = Character.toUpperCase(s.charAt(i));
+		return dst;
+	}
+
+	/**
+	 * a[0, m) 和 b[0, n) 的编辑距离，只计算对角线两侧 threshold 以内的格子，超过 threshold 时返回 threshold + 1
+	 *
+	 * @param rows 两行的缓冲区，不够长时重新分配
+	 */
+	static int distance(char[] a, int m, char[] b, int n, int threshold, int[][] rows) {
+		int far = threshold + 1;
+		if (Math.abs(m - n) > threshold)
+			return far;
+		if ((rows[0] == null) || (rows[0].length < n + 1)) {
+			rows[0] = new int[n + 1 + 16];
+			rows[1] = new int[n + 1 + 16];
+		}
+		int[] previous = rows[0];
+		int[] row = rows[1];
+		Arrays.fill(previous, 0, n + 1, far);
+		for (int j = 0; j <= Math.min(n, threshold); j++)
+			previous[j] = j;
+		for (int i = 1; i <= m; i++) {
+			int from = Math.max(1, i - threshold);
+			int to = Math.min(n, i + threshold);
+			// 带外的格子视为超过阈值
+			row[from - 1] = (from == 1) ? i : far;
+			if (to < n)
+				row[to + 1] = far;
+			int best = far;
+			char c = a[i - 1];
+			for (int j = from; j <= to; j++) {
+				int cost = (c == b[j - 1]) ? 0 : 1;
+				int d = Math.min(Math.min(row[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+				row[j] = d;
+				best = Math.min(best, d);
+			}
+			if (best > threshold)
+				return far;
+			int[] swap = previous;
+			previous = row;
+			row = swap;
+		}
+		return Math.min(previous[n], far);
+	}
+}
@@ -0,0 +1,280 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.Arrays;
+
+/**
+ * Encodes a word as it is typed, for type-ahead lookups. Each keystroke
+ * appends to or cuts the word, and the codes of the whole word are available
+ * after every change.
+ * <p>
+ * Encoding the word again on every keystroke costs time proportional to its
+ * length. The rules only read a few letters ahead of the current position, and
+ * the absolute positions they read are all near the start of the word, so
+ * once enough letters follow a step of the encoding no later letter can change
+ * it. The encoder keeps the steps that are final and their output. After a
+ * change it only runs the steps past them again, and a keystroke costs about
+ * the same whatever the length of the word. The Slavo-Germanic test looks at
+ * the whole word and is kept up to date as characters are typed. When it
+ * changes, the word is encoded again from the start, which happens at most once
+ * while letters are only appended. The LL of ALLE looks at how the word ends
+ * (Gallegos), so no step from there on is final and such words are encoded
+ * from that LL on every change.
+ * <p>
+ * Encoders running other rules than {@link RuleSet#DOUBLE_METAPHONE} encode
+ * the whole word on every change.
+ * <p>
+ * An encoder is mutable and must not be shared between threads.
+ */
+public final class PrefixEncoder {
+
+	private final DoubleMeta meta;
+	private final boolean incremental;
+	private final int limit;
+	private final StringBuilder word = new StringBuilder();
+	// 已确定的步骤的输出，以及计算当前代码时追加在后面的未确定部分
+	private final StringBuilder primary = new StringBuilder();
+	private final StringBuilder alternate = new StringBuilder();
+	// 已确定的步骤，每步三个数：开始位置、开始前语音代码和替代语音代码的长度
+	private int[] steps = new int[3 * 16];
+	private int stepCount;
+	// 单词达到 PREFIX_REACH 个字母后才处理词首，之前每次都从头编码
+	private boolean started;
+	// 已确定的步骤之后的位置
+	private int current;
+	// 两个代码都已达到最大长度，之后的字母不再影响代码
+	private boolean full;
+	// 单词在这个长度时开始有斯拉夫日耳曼语字符，没有时为 -1
+	private int slavoGermanicAt = -1;
+	// 开始处理词首时得到的判别结果，见 DoubleMeta.wordFlags
+	private int flags;
+	// 当前单词的代码，dirty 为 false 时有效
+	private final StringBuilder codePrimary = new StringBuilder();
+	private final StringBuilder codeAlternate = new StringBuilder();
+	private boolean dirty;
+
+	/**
+	 * @param meta the encoder whose rules and maximum code length are used
+	 */
+	public PrefixEncoder(DoubleMeta meta) {
+		this.meta = meta;
+		this.incremental = meta.getRules() == RuleSet.DOUBLE_METAPHONE;
+		this.limit = meta.getMaxCodeLength();
+	}
+
+	/**
+	 * Appends a character to the word.
+	 *
+	 * @param c the character typed
+	 * @return this encoder
+	 */
+	public PrefixEncoder append(char c) {
+		add(c);
+		advance();
+		return this;
+	}
+
+	/**
+	 * Appends characters to the word, for pasted text.
+	 *
+	 * @param s the characters to append
+	 * @return this encoder
+	 */
+	public PrefixEncoder append(CharSequence s) {
+		for (int i = 0; i < s.length(); i++)
+			add(s.charAt(i));
+		advance();
+		return this;
+	}
+
+	/**
+	 * Cuts the word to its first characters, for deletions at the end of the
+	 * word. Only the steps of the encoding that could see the removed
+	 * characters are undone.
+	 *
+	 * @param length the new length of the word, at most {@link #length()}
+	 * @throws IndexOutOfBoundsException if length is negative or greater than
+	 *           the length of the word
+	 */
+	public void setLength(int length) {
+		if ((length < 0) || (length > word.length()))
+			throw new IndexOutOfBoundsException("length=" + length + ", word length=" + word.length());
+		if (length == word.length())
+			return;
+		word.setLength(length);
+		dirty = true;
+		if ((slavoGermanicAt >= 0) && (length < slavoGermanicAt)) {
+			slavoGermanicAt = -1;
+			restart();
+		} else if (length < DoubleMeta.PREFIX_REACH) {
+			restart();
+		} else {
+			// 撤销读取范围超出新长度的步骤
+			while ((stepCount > 0) && (steps[3 * (stepCount - 1)] + DoubleMeta.FORWARD_REACH > length)) {
+				stepCount--;
+				current = steps[3 * stepCount];
+				primary.setLength(steps[3 * stepCount + 1]);
+				alternate.setLength(steps[3 * stepCount + 2]);
+				full = false;
+			}
+		}
+	}
+
+	/**
+	 * Empties the word.
+	 */
+	public void clear() {
+		setLength(0);
+	}
+
+	/**
+	 * @return the number of characters of the word
+	 */
+	public int length() {
+		return word.length();
+	}
+
+	/**
+	 * @return the word typed so far
+	 */
+	public String getWord() {
+		return word.toString();
+	}
+
+	/**
+	 * @return the primary code of the word, the one
+	 *         {@link DoubleMeta#transform(String)} returns
+	 */
+	public String getPrimary() {
+		update();
+		return codePrimary.toString();
+	}
+
+	/**
+	 * @return the alternate code of the word, the one
+	 *         {@link DoubleMeta#transformBoth(CharSequence)} returns
+	 */
+	public String getAlternate() {
+		update();
+		return codeAlternate.toString();
+	}
+
+	/**
+	 * @return the primary code of the word packed as by
+	 *         {@link DoubleMeta#transformToLong(CharSequence)}, for lookups in a
+	 *         {@link PhoneticIndex}
+	 */
+	public long toLong() {
+		update();
+		return DoubleMeta.pack(codePrimary, 0, Math.min(codePrimary.length(), DoubleMeta.MAX_PACKED_LENGTH + 1));
+	}
+
+	/**
+	 * 追加一个字符，更新斯拉夫日耳曼语判别
+	 */
+	private void add(char c) {
+		word.append(c);
+		dirty = true;
+		if (slavoGermanicAt >= 0)
+			return;
+		int n = word.length();
+		// 与 DoubleMeta.wordFlags 相同：出现 W、K 或 CZ
+		char u = DoubleMeta.charAt(word, 0, n, n - 1);
+		if ((u == 'W') || (u == 'K') || ((u == 'Z') && (n > 1) && (DoubleMeta.charAt(word, 0, n, n - 2) == 'C'))) {
+			slavoGermanicAt = n;
+			// 已确定的步骤可能读取过该判别，全部重新编码
+			restart();
+		}
+	}
+
+	/**
+	 * 放弃所有已确定的步骤
+	 */
+	private void restart() {
+		started = false;
+		stepCount = 0;
+		full = false;
+		primary.setLength(0);
+		alternate.setLength(0);
+	}
+
+	/**
+	 * 执行所有在当前长度下已经确定的步骤：从位置 p 开始的一步只读取 p + FORWARD_REACH 之前和词首
+	 * PREFIX_REACH 个字符，这些字符都已经输入时，之后输入的字符不会再改变这一步
+	 */
+	private void advance() {
+		int n = word.length();
+		if (!incremental || (n < DoubleMeta.PREFIX_REACH))
+			return;
+		if (!started) {
+			// 词首的判别只取决于前 PREFIX_REACH 个字母，此时已经确定
+			flags = DoubleMeta.wordFlags(word, 0, DoubleMeta.PREFIX_REACH) & ~DoubleMeta.SLAVO_GERMANIC;
+			if (slavoGermanicAt >= 0)
+				flags |= DoubleMeta.SLAVO_GERMANIC;
+			current = DoubleMeta.encodeStart(word, 0, n, primary, alternate);
+			started = true;
+		}
+		while (!full && (current + DoubleMeta.FORWARD_REACH <= n)) {
+			if ((primary.length() >= limit) && (alternate.length() >= limit)) {
+				full = true;
+				break;
+			}
+			// 读取单词结尾的一步在单词变长后可能改变，之后的步骤都不确定
+			if (DoubleMeta.readsEnd(word, 0, n, current))
+				break;
+			if (3 * stepCount == steps.length)
+				steps = Arrays.copyOf(steps, steps.length * 2);
+			steps[3 * stepCount] = current;
+			steps[3 * stepCount + 1] = primary.length();
+			steps[3 * stepCount + 2] = alternate.length();
+			stepCount++;
+			current = DoubleMeta.encodeFrom(word, 0, n, current, current + 1, flags, limit, limit, primary,
+					alternate, null);
+		}
+	}
+
+	/**
+	 * 计算当前单词的代码：已确定的输出加上未确定的几步
+	 */
+	private void update() {
+		if (!dirty)
+			return;
+		dirty = false;
+		codePrimary.setLength(0);
+		codeAlternate.setLength(0);
+		int n = word.length();
+		if (!incremental) {
+			meta.transformBoth(word, 0, n, codePrimary, codeAlternate);
+		} else if (!started) {
+			DoubleMeta.encode(word, 0, n, limit, codePrimary, codeAlternate, null);
+		} else {
+			int p = primary.length();
+			int a = alternate.length();
+			if (!full)
+				DoubleMeta.encodeFrom(word, 0, n, current, n, flags, limit, limit, primary, alternate, null);
+			// 一次可能添加两个字母（如 KS），截去超出最大长度的部分
+			codePrimary.append(primary, 0, Math.min(primary.length(), limit));
+			codeAlternate.append(alternate, 0, Math.min(alternate.length(), limit));
+			primary.setLength(p);
+			alternate.setLength(a);
+		}
+	}
+}
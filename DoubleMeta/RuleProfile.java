@@ -0,0 +1,167 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often the rules of {@link DoubleMeta} and {@link RuleSet} are
+ * used, to find the hot rules and to notice when the input data changes.
+ * <p>
+ * Profiling is off unless the JVM is started with
+ * <code>-Dcom.swabunga.spell.engine.profile=true</code>. The flag is read once
+ * into a static final field, so when it is off the JIT folds the checks away
+ * and the encoder runs exactly as without them.
+ * <p>
+ * When it is on, every encoded letter is counted, and every evaluation of a
+ * key list by stringAt is counted together with the number of times it
+ * matched. The lists matched at the start of the word (list9, list10, list11,
+ * list16, list41 and list51) are evaluated once per word, by the scan that
+ * precedes the encoding, for the words starting with a letter the list can
+ * match; they are counted there under the same names. The counters are
+ * LongAdders, so encoding threads do not contend on them.
+ */
+public final class RuleProfile {
+
+	/**
+	 * The system property turning profiling on.
+	 */
+	public static final String PROPERTY = "com.swabunga.spell.engine.profile";
+
+	static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	// 下标为字符，最后一个元素统计表外的字符
+	private static final LongAdder[] letters = new LongAdder[0x181];
+
+	private static final ConcurrentHashMap<long[], LongAdder[]> lists = new ConcurrentHashMap<long[], LongAdder[]>();
+
+	static {
+		for (int i = 0; i < letters.length; i++)
+			letters[i] = new LongAdder();
+	}
+
+	private RuleProfile() {
+	}
+
+	/**
+	 * @return true if the JVM was started with profiling on
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	static void letter(char c) {
+		letters[Math.min(c, letters.length - 1)].increment();
+	}
+
+	// 数组没有重写 equals/hashCode，按对象标识区分各个列表
+	static boolean stringAt(long[] list, boolean matched) {
+		LongAdder[] counters = lists.get(list);
+		if (counters == null)
+			counters = lists.computeIfAbsent(list, k -> new LongAdder[] { new LongAdder(), new LongAdder() });
+		counters[0].increment();
+		if (matched)
+			counters[1].increment();
+		return matched;
+	}
+
+	/**
+	 * Returns the current counts, sorted by name:
+	 * <ul>
+	 * <li><code>letter C</code>: the letters encoded, <code>letter other</code>
+	 * for characters past Latin Extended-A</li>
+	 * <li><code>stringAt list69 SIO|SIA</code>: the evaluations of a key list,
+	 * named after its field in DoubleMeta when it has one</li>
+	 * <li><code>stringAt list69 SIO|SIA matched</code>: how many of them
+	 * matched</li>
+	 * </ul>
+	 * Counts that are zero are left out. The counts are read while encoding may
+	 * go on, so they are not an atomic snapshot.
+	 *
+	 * @return the counts by name
+	 */
+	public static Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for (int c = 0; c < letters.length; c++) {
+			long n = letters[c].sum();
+			if (n != 0)
+				snapshot.put("letter " + ((c == letters.length - 1) ? "other" : String.valueOf((char) c)), n);
+		}
+		Map<long[], String> names = listNames();
+		for (Map.Entry<long[], LongAdder[]> list : lists.entrySet()) {
+			String name = names.get(list.getKey());
+			name = "stringAt " + ((name != null) ? name + " " : "") + keys(list.getKey());
+			long evaluated = list.getValue()[0].sum();
+			long matched = list.getValue()[1].sum();
+			if (evaluated != 0)
+				snapshot.put(name, evaluated);
+			if (matched != 0)
+				snapshot.put(name + " matched", matched);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Sets all the counts back to zero.
+	 */
+	public static void reset() {
+		for (LongAdder letter : letters)
+			letter.reset();
+		for (LongAdder[] counters : lists.values()) {
+			counters[0].reset();
+			counters[1].reset();
+		}
+	}
+
+	// 通过反射找到 DoubleMeta 中各个列表的字段名
+	private static Map<long[], String> listNames() {
+		Map<long[], String> names = new IdentityHashMap<long[], String>();
+		for (Field field : DoubleMeta.class.getDeclaredFields()) {
+			if ((field.getType() != long[].class) || !Modifier.isStatic(field.getModifiers()))
+				continue;
+			try {
+				field.setAccessible(true);
+				names.put((long[]) field.get(null), field.getName());
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// 无法访问时只用键来命名
+			}
+		}
+		return names;
+	}
+
+	// 把打包的键还原成字符串，每个字符占 8 位
+	private static String keys(long[] list) {
+		StringBuilder keys = new StringBuilder();
+		for (long key : list) {
+			if (keys.length() > 0)
+				keys.append('|');
+			int start = keys.length();
+			for (; key != 0; key >>>= 8)
+				keys.insert(start, (char) (key & 0xFF));
+		}
+		return keys.toString();
+	}
+}
@@ -0,0 +1,708 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of Double Metaphone rules written as data and compiled into a table
+ * driven program, so that variants of the rules can be run by
+ * {@link DoubleMeta#DoubleMeta(RuleSet, int)} without changing the encoder.
+ * <p>
+ * The rules of a letter are tried in order and the first rule whose condition
+ * holds is applied. A rule is a list of actions: {@link #emit(String, String)}
+ * appends to the primary and alternate codes, {@link #advance(int)} ends the
+ * letter and moves past the given number of characters, and
+ * {@link #choose(Rule...)} applies the first matching rule of a nested list and
+ * then goes on with the next action. A letter whose rules end without an
+ * advance moves one character forward. The {@link Builder#prefix(Rule...)}
+ * rules run once at the start of the word and may advance by 0.
+ * <p>
+ * Conditions look at the uppercased and folded characters of the word, which
+ * read as spaces past its end. Positions are relative to the current letter
+ * unless stated otherwise. {@link #atEnd(int, String...)} and
+ * {@link #positionFromEnd(int)} count from the last letter of the word.
+ * <p>
+ * {@link #build()} compiles the rules into one int array where each condition
+ * is a test with a jump for true and one for false, and each rule list is a
+ * chain of such tests ending in emit and advance instructions. Encoding a
+ * letter walks this array from the entry of the letter, without any object
+ * allocation. {@link #DOUBLE_METAPHONE} holds the rules of {@link DoubleMeta}
+ * and produces the same codes.
+ * <p>
+ * A rule set is immutable and can be shared between threads.
+ */
+public final class RuleSet {
+
+	/**
+	 * The Double Metaphone rules, producing the same codes as the built-in
+	 * encoder. Use {@link #builder(RuleSet)} to derive variants.
+	 */
+	public static final RuleSet DOUBLE_METAPHONE = DoubleMetaphoneRules.builder().build();
+
+	// 指令格式：操作码、三个参数、条件为真时的下一条指令、为假时的下一条指令
+	private static final int STRIDE = 6;
+
+	private static final int AT = 0;
+	private static final int AT_INDEX = 1;
+	private static final int AT_END = 2;
+	private static final int VOWEL = 3;
+	private static final int VOWEL_AT = 4;
+	private static final int POSITION = 5;
+	private static final int AFTER = 6;
+	private static final int BEFORE = 7;
+	private static final int POSITION_FROM_END = 8;
+	private static final int SLAVO_GERMANIC = 9;
+	private static final int EMIT = 10;
+	private static final int ADVANCE = 11;
+
+	private final Rule[] prefix;
+	private final TreeMap<Character, Rule[]> letters;
+
+	private final int[] program;
+	private final String[] codes;
+	private final long[][] lists;
+	private final int prefixEntry;
+	private final int defaultEntry;
+	private final int[] dispatch;
+	private final boolean usesSlavoGermanic;
+
+	private RuleSet(Rule[] prefix, TreeMap<Character, Rule[]> letters) {
+		this.prefix = prefix;
+		this.letters = letters;
+		Compiler compiler = new Compiler();
+		int advanceNone = compiler.add(ADVANCE, 0, 0, 0, 0, 0);
+		int advanceOne = compiler.add(ADVANCE, 1, 0, 0, 0, 0);
+		this.prefixEntry = compiler.choose(prefix, advanceNone, 0);
+		this.defaultEntry = advanceOne;
+		this.dispatch = new int[letters.isEmpty() ? 0 : letters.lastKey() + 1];
+		Arrays.fill(dispatch, advanceOne);
+		for (Map.Entry<Character, Rule[]> letter : letters.entrySet())
+			dispatch[letter.getKey()] = compiler.choose(letter.getValue(), advanceOne, 1);
+		this.program = Arrays.copyOf(compiler.program, compiler.size);
+		this.codes = compiler.codes.toArray(new String[compiler.codes.size()]);
+		this.lists = compiler.lists.toArray(new long[compiler.lists.size()][]);
+		this.usesSlavoGermanic = compiler.usesSlavoGermanic;
+	}
+
+	/**
+	 * @return a builder without any rule
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param base the rules to start from
+	 * @return a builder holding the rules of base
+	 */
+	public static Builder builder(RuleSet base) {
+		Builder builder = new Builder();
+		builder.prefix = base.prefix;
+		builder.letters.putAll(base.letters);
+		return builder;
+	}
+
+	/**
+	 * @return the number of ints in the compiled program
+	 */
+	public int programSize() {
+		return program.length;
+	}
+
+	/**
+	 * 编码 in 中从 off 开始的 len 个字符，结果追加到 primary 和 alternate，与 DoubleMeta.encode 一致
+	 *
+	 * @param in 单词
+	 * @param off 单词在 in 中的起始位置
+	 * @param len 单词长度
+	 * @param limit 语音代码的最大长度，达到后立即停止编码
+	 * @param primary 语音代码
+	 * @param alternate 替代语音代码，为 null 时只编码主语音代码
+	 */
+	final void encode(CharSequence in, int off, int len, int limit, StringBuilder primary, StringBuilder alternate) {
+		int end = DoubleMeta.endOf(primary, limit);
+		int altEnd = (alternate != null) ? DoubleMeta.endOf(alternate, limit) : 0;
+		boolean isSlavoGermaic = usesSlavoGermanic && DoubleMeta.SlavoGermanic(in, off, len);
+		int current = run(prefixEntry, in, off, len, 0, isSlavoGermaic, primary, alternate);
+		while ((current < len)
+				&& ((primary.length() < end) || ((alternate != null) && (alternate.length() < altEnd)))) {
+			char c = DoubleMeta.charAt(in, off, len, current);
+			if (RuleProfile.ENABLED)
+				RuleProfile.letter(c);
+			int entry = (c < dispatch.length) ? dispatch[c] : defaultEntry;
+			current = run(entry, in, off, len, current, isSlavoGermaic, primary, alternate);
+		}
+		if (primary.length() > end)
+			primary.setLength(end);
+		if ((alternate != null) && (alternate.length() > altEnd))
+			alternate.setLength(altEnd);
+	}
+
+	/**
+	 * 从 pc 开始执行程序，直到遇到 ADVANCE 指令
+	 *
+	 * @return 下一个要编码的位置
+	 */
+	private int run(int pc, CharSequence in, int off, int len, int current, boolean isSlavoGermaic,
+			StringBuilder primary, StringBuilder alternate) {
+		final int[] program = this.program;
+		for (;;) {
+			boolean test;
+			switch (program[pc]) {
+			case AT:
+				test = DoubleMeta.stringAt(in, off, len, current + program[pc + 1], program[pc + 2],
+						lists[program[pc + 3]]);
+				break;
+			case AT_INDEX:
+				test = DoubleMeta.stringAt(in, off, len, program[pc + 1], program[pc + 2], lists[program[pc + 3]]);
+				break;
+			case AT_END:
+				test = DoubleMeta.stringAt(in, off, len, len - 1 - program[pc + 1], program[pc + 2],
+						lists[program[pc + 3]]);
+				break;
+			case VOWEL:
+				test = DoubleMeta.isVowel(in, off, len, current + program[pc + 1]);
+				break;
+			case VOWEL_AT:
+				test = DoubleMeta.isVowel(in, off, len, program[pc + 1]);
+				break;
+			case POSITION:
+				test = current == program[pc + 1];
+				break;
+			case AFTER:
+				test = current > program[pc + 1];
+				break;
+			case BEFORE:
+				test = current < program[pc + 1];
+				break;
+			case POSITION_FROM_END:
+				test = current == len - 1 - program[pc + 1];
+				break;
+			case SLAVO_GERMANIC:
+				test = isSlavoGermaic;
+				break;
+			case EMIT:
+				int main = program[pc + 1];
+				int alt = program[pc + 2];
+				DoubleMeta.MetaphAdd(primary, alternate, (main < 0) ? null : codes[main],
+						(alt < 0) ? null : codes[alt]);
+				test = true;
+				break;
+			default:
+				return current + program[pc + 1];
+			}
+			pc = test ? program[pc + 4] : program[pc + 5];
+		}
+	}
+
+	/**
+	 * Compiles rules into the instruction array, from the last action of a list
+	 * to the first, so that every instruction knows the one that follows it.
+	 */
+	private static final class Compiler {
+
+		int[] program = new int[STRIDE * 64];
+		int size;
+		final List<String> codes = new ArrayList<String>();
+		final Map<String, Integer> codeIndex = new HashMap<String, Integer>();
+		final List<long[]> lists = new ArrayList<long[]>();
+		final Map<String, Integer> listIndex = new HashMap<String, Integer>();
+		boolean usesSlavoGermanic;
+
+		int add(int op, int a, int b, int c, int onTrue, int onFalse) {
+			if (size + STRIDE > program.length)
+				program = Arrays.copyOf(program, program.length * 2);
+			int pc = size;
+			program[pc] = op;
+			program[pc + 1] = a;
+			program[pc + 2] = b;
+			program[pc + 3] = c;
+			program[pc + 4] = onTrue;
+			program[pc + 5] = onFalse;
+			size += STRIDE;
+			return pc;
+		}
+
+		int code(String code) {
+			if (code == null)
+				return -1;
+			Integer index = codeIndex.get(code);
+			if (index == null) {
+				index = codes.size();
+				codes.add(code);
+				codeIndex.put(code, index);
+			}
+			return index;
+		}
+
+		int list(String[] keys) {
+			String name = String.join("|", keys);
+			Integer index = listIndex.get(name);
+			if (index == null) {
+				index = lists.size();
+				lists.add(DoubleMeta.keys(keys));
+				listIndex.put(name, index);
+			}
+			return index;
+		}
+
+		// 依次尝试 rules，都不匹配时转到 next
+		int choose(Rule[] rules, int next, int minAdvance) {
+			int entry = next;
+			for (int i = rules.length - 1; i >= 0; i--) {
+				int body = actions(rules[i].actions, next, minAdvance);
+				entry = (rules[i].condition == null) ? body : rules[i].condition.compile(this, body, entry);
+			}
+			return entry;
+		}
+
+		int actions(Action[] actions, int next, int minAdvance) {
+			int entry = next;
+			for (int i = actions.length - 1; i >= 0; i--) {
+				Action action = actions[i];
+				if (action instanceof Advance) {
+					if (i != actions.length - 1)
+						throw new IllegalArgumentException("actions after advance(" + ((Advance) action).n + ")");
+					if (((Advance) action).n < minAdvance)
+						throw new IllegalArgumentException("a letter must advance by at least " + minAdvance);
+					entry = add(ADVANCE, ((Advance) action).n, 0, 0, 0, 0);
+				} else if (action instanceof Emit) {
+					entry = add(EMIT, code(((Emit) action).main), code(((Emit) action).alt), 0, entry, entry);
+				} else {
+					entry = choose(((Choose) action).rules, entry, minAdvance);
+				}
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * A condition on the word around the current letter.
+	 */
+	public static abstract class Condition {
+
+		Condition() {
+		}
+
+		/**
+		 * 编译条件，返回入口指令
+		 *
+		 * @param onTrue 条件为真时转到的指令
+		 * @param onFalse 条件为假时转到的指令
+		 */
+		abstract int compile(Compiler compiler, int onTrue, int onFalse);
+	}
+
+	private static final class Test extends Condition {
+
+		private final int op;
+		private final int a;
+		private final String[] keys;
+
+		Test(int op, int a, String[] keys) {
+			this.op = op;
+			this.a = a;
+			this.keys = keys;
+		}
+
+		int compile(Compiler compiler, int onTrue, int onFalse) {
+			if (op == SLAVO_GERMANIC)
+				compiler.usesSlavoGermanic = true;
+			if (keys == null)
+				return compiler.add(op, a, 0, 0, onTrue, onFalse);
+			return compiler.add(op, a, keys[0].length(), compiler.list(keys), onTrue, onFalse);
+		}
+	}
+
+	private static final class And extends Condition {
+
+		private final Condition[] all;
+
+		And(Condition[] all) {
+			this.all = all;
+		}
+
+		int compile(Compiler compiler, int onTrue, int onFalse) {
+			int entry = onTrue;
+			for (int i = all.length - 1; i >= 0; i--)
+				entry = all[i].compile(compiler, entry, onFalse);
+			return entry;
+		}
+	}
+
+	private static final class Or extends Condition {
+
+		private final Condition[] any;
+
+		Or(Condition[] any) {
+			this.any = any;
+		}
+
+		int compile(Compiler compiler, int onTrue, int onFalse) {
+			int entry = onFalse;
+			for (int i = any.length - 1; i >= 0; i--)
+				entry = any[i].compile(compiler, onTrue, entry);
+			return entry;
+		}
+	}
+
+	private static final class Not extends Condition {
+
+		private final Condition condition;
+
+		Not(Condition condition) {
+			this.condition = condition;
+		}
+
+		int compile(Compiler compiler, int onTrue, int onFalse) {
+			return condition.compile(compiler, onFalse, onTrue);
+		}
+	}
+
+	/**
+	 * Something a rule does when its condition holds.
+	 */
+	public static abstract class Action {
+
+		Action() {
+		}
+	}
+
+	private static final class Emit extends Action {
+
+		final String main;
+		final String alt;
+
+		Emit(String main, String alt) {
+			this.main = main;
+			this.alt = alt;
+		}
+	}
+
+	private static final class Advance extends Action {
+
+		final int n;
+
+		Advance(int n) {
+			this.n = n;
+		}
+	}
+
+	private static final class Choose extends Action {
+
+		final Rule[] rules;
+
+		Choose(Rule[] rules) {
+			this.rules = rules.clone();
+		}
+	}
+
+	/**
+	 * A condition and the actions applied when it holds.
+	 */
+	public static final class Rule {
+
+		final Condition condition;
+		final Action[] actions;
+
+		Rule(Condition condition, Action[] actions) {
+			this.condition = condition;
+			this.actions = actions.clone();
+		}
+	}
+
+	/**
+	 * Matches when the characters starting at <code>offset</code> from the
+	 * current letter are one of the keys.
+	 *
+	 * @param offset the position of the first character, relative to the letter
+	 * @param keys strings of the same length, of uppercase letters and spaces
+	 * @return the condition
+	 */
+	public static Condition at(int offset, String... keys) {
+		return new Test(AT, offset, checkKeys(keys));
+	}
+
+	/**
+	 * Matches when the characters starting at an index of the word are one of
+	 * the keys.
+	 *
+	 * @param index the index of the first character in the word
+	 * @param keys strings of the same length, of uppercase letters and spaces
+	 * @return the condition
+	 */
+	public static Condition atIndex(int index, String... keys) {
+		return new Test(AT_INDEX, index, checkKeys(keys));
+	}
+
+	/**
+	 * Matches when the characters starting <code>fromEnd</code> characters
+	 * before the last letter of the word are one of the keys.
+	 *
+	 * @param fromEnd the position of the first character, 0 being the last
+	 * @param keys strings of the same length, of uppercase letters and spaces
+	 * @return the condition
+	 */
+	public static Condition atEnd(int fromEnd, String... keys) {
+		return new Test(AT_END, fromEnd, checkKeys(keys));
+	}
+
+	/**
+	 * @param offset a position relative to the current letter
+	 * @return a condition matching when that character is a vowel, Y included
+	 */
+	public static Condition vowel(int offset) {
+		return new Test(VOWEL, offset, null);
+	}
+
+	/**
+	 * @param index an index in the word
+	 * @return a condition matching when that character is a vowel, Y included
+	 */
+	public static Condition vowelAt(int index) {
+		return new Test(VOWEL_AT, index, null);
+	}
+
+	/**
+	 * @param index an index in the word
+	 * @return a condition matching when the current letter is at that index
+	 */
+	public static Condition position(int index) {
+		return new Test(POSITION, index, null);
+	}
+
+	/**
+	 * @param index an index in the word
+	 * @return a condition matching when the current letter is after that index
+	 */
+	public static Condition after(int index) {
+		return new Test(AFTER, index, null);
+	}
+
+	/**
+	 * @param index an index in the word
+	 * @return a condition matching when the current letter is before that index
+	 */
+	public static Condition before(int index) {
+		return new Test(BEFORE, index, null);
+	}
+
+	/**
+	 * @param fromEnd a position counted from the end of the word, 0 being the
+	 *          last letter
+	 * @return a condition matching when the current letter is at that position
+	 */
+	public static Condition positionFromEnd(int fromEnd) {
+		return new Test(POSITION_FROM_END, fromEnd, null);
+	}
+
+	/**
+	 * @return a condition matching words containing W, K or CZ
+	 */
+	public static Condition slavoGermanic() {
+		return new Test(SLAVO_GERMANIC, 0, null);
+	}
+
+	/**
+	 * @param all conditions
+	 * @return a condition matching when all the conditions match
+	 */
+	public static Condition and(Condition... all) {
+		return new And(all.clone());
+	}
+
+	/**
+	 * @param any conditions
+	 * @return a condition matching when one of the conditions matches
+	 */
+	public static Condition or(Condition... any) {
+		return new Or(any.clone());
+	}
+
+	/**
+	 * @param condition a condition
+	 * @return a condition matching when condition does not
+	 */
+	public static Condition not(Condition condition) {
+		return new Not(condition);
+	}
+
+	/**
+	 * @param condition the condition of the rule
+	 * @param actions the actions applied when the condition holds
+	 * @return the rule
+	 */
+	public static Rule when(Condition condition, Action... actions) {
+		if (condition == null)
+			throw new NullPointerException("condition");
+		return new Rule(condition, actions);
+	}
+
+	/**
+	 * @param actions the actions
+	 * @return a rule that always applies
+	 */
+	public static Rule otherwise(Action... actions) {
+		return new Rule(null, actions);
+	}
+
+	/**
+	 * @param code the symbols appended to both codes
+	 * @return the action
+	 */
+	public static Action emit(String code) {
+		return emit(code, code);
+	}
+
+	/**
+	 * @param main the symbols appended to the primary code, or null
+	 * @param alt the symbols appended to the alternate code, or null
+	 * @return the action
+	 * @throws IllegalArgumentException if a symbol cannot appear in a code
+	 */
+	public static Action emit(String main, String alt) {
+		checkCode(main);
+		checkCode(alt);
+		return new Emit(main, alt);
+	}
+
+	/**
+	 * @param n the number of characters to move forward
+	 * @return the action ending the letter
+	 * @throws IllegalArgumentException if n is negative
+	 */
+	public static Action advance(int n) {
+		if (n < 0)
+			throw new IllegalArgumentException("n=" + n);
+		return new Advance(n);
+	}
+
+	/**
+	 * @param rules rules tried in order
+	 * @return the action applying the first rule that matches, if any
+	 */
+	public static Action choose(Rule... rules) {
+		return new Choose(rules);
+	}
+
+	private static String[] checkKeys(String[] keys) {
+		if (keys.length == 0)
+			throw new IllegalArgumentException("no keys");
+		int length = keys[0].length();
+		if ((length < 1) || (length > 6))
+			throw new IllegalArgumentException("keys of 1 to 6 characters expected, got \"" + keys[0] + "\"");
+		for (String key : keys) {
+			if (key.length() != length)
+				throw new IllegalArgumentException("keys of different lengths: " + Arrays.toString(keys));
+			for (int i = 0; i < length; i++) {
+				char c = key.charAt(i);
+				if ((c < ' ') || (c > 'Z'))
+					throw new IllegalArgumentException("keys are uppercase, got \"" + key + "\"");
+			}
+		}
+		return keys.clone();
+	}
+
+	private static void checkCode(String code) {
+		if (code == null)
+			return;
+		for (int i = 0; i < code.length(); i++) {
+			if (!DoubleMeta.isCodeSymbol(code.charAt(i)))
+				throw new IllegalArgumentException("not a code symbol in \"" + code + "\"");
+		}
+	}
+
+	/**
+	 * Collects the rules of a {@link RuleSet}.
+	 */
+	public static final class Builder {
+
+		private Rule[] prefix = new Rule[0];
+		private final TreeMap<Character, Rule[]> letters = new TreeMap<Character, Rule[]>();
+
+		Builder() {
+		}
+
+		/**
+		 * Sets the rules applied once at the start of the word, replacing the
+		 * previous ones. They may advance by 0.
+		 *
+		 * @param rules the rules, tried in order
+		 * @return this builder
+		 */
+		public Builder prefix(Rule... rules) {
+			prefix = rules.clone();
+			return this;
+		}
+
+		/**
+		 * Sets the rules of some letters, replacing their previous rules.
+		 *
+		 * @param chars the letters, uppercase
+		 * @param rules the rules, tried in order
+		 * @return this builder
+		 */
+		public Builder letters(String chars, Rule... rules) {
+			for (int i = 0; i < chars.length(); i++)
+				letter(chars.charAt(i), rules);
+			return this;
+		}
+
+		/**
+		 * Sets the rules of a letter, replacing its previous rules.
+		 *
+		 * @param c the letter, uppercase
+		 * @param rules the rules, tried in order
+		 * @return this builder
+		 */
+		public Builder letter(char c, Rule... rules) {
+			letters.put(c, rules.clone());
+			return this;
+		}
+
+		/**
+		 * Removes the rules of a letter, which is then skipped.
+		 *
+		 * @param c the letter
+		 * @return this builder
+		 */
+		public Builder remove(char c) {
+			letters.remove(c);
+			return this;
+		}
+
+		/**
+		 * Compiles the rules.
+		 *
+		 * @return the rule set
+		 * @throws IllegalArgumentException if a letter can advance by 0 or an
+		 *           action follows an advance
+		 */
+		public RuleSet build() {
+			return new RuleSet(prefix, new TreeMap<Character, Rule[]>(letters));
+		}
+	}
+}
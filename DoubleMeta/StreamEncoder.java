@@ -0,0 +1,285 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits a stream of text into words and encodes each of them with a
+ * {@link DoubleMeta}, reading the input in chunks of a fixed size. Words are
+ * encoded in place in the chunk, so the memory used does not depend on the
+ * size of the document.
+ * <p>
+ * A word is a run of letters, the characters for which
+ * {@link Character#isLetter(int)} is true, so the same text is split the same
+ * way whether it is read as chars or as bytes. Streams of bytes are read as
+ * UTF-8 and report offsets and lengths in bytes; malformed bytes are not
+ * letters. Readers report offsets and lengths in chars. A word longer than the
+ * chunk is cut at the chunk size.
+ * <p>
+ * An encoder holds no state between calls and can be shared between threads.
+ */
+public final class StreamEncoder {
+
+	/**
+	 * Receives the words found in a stream, in order.
+	 */
+	public interface Handler {
+
+		/**
+		 * Called for each word.
+		 *
+		 * @param offset the offset of the word in the stream
+		 * @param length the length of the word
+		 * @param code the phonetic code of the word, only valid during the call
+		 */
+		void token(long offset, int length, CharSequence code);
+	}
+
+	/**
+	 * The default size of the chunks, in chars or bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The smallest size of the chunks, the length of the longest UTF-8
+	 * character.
+	 */
+	public static final int MIN_BUFFER_SIZE = 4;
+
+	private final DoubleMeta meta;
+	private final int bufferSize;
+
+	/**
+	 * @param meta the encoder for the words
+	 */
+	public StreamEncoder(DoubleMeta meta) {
+		this(meta, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param meta the encoder for the words
+	 * @param bufferSize the size of the chunks, which is also the longest word
+	 * @throws IllegalArgumentException if bufferSize is smaller than
+	 *           {@link #MIN_BUFFER_SIZE}
+	 */
+	public StreamEncoder(DoubleMeta meta, int bufferSize) {
+		if (bufferSize < MIN_BUFFER_SIZE)
+			throw new IllegalArgumentException("bufferSize=" + bufferSize);
+		this.meta = meta;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Encodes all the words of a Reader, up to its end. The reader is not
+	 * closed.
+	 *
+	 * @param in the text
+	 * @param handler receives the words
+	 * @throws IOException if the reader fails
+	 */
+	public void encode(Reader in, Handler handler) throws IOException {
+		char[] buffer = new char[bufferSize];
+		CharBuffer chars = CharBuffer.wrap(buffer);
+		StringBuilder code = new StringBuilder(32);
+		long base = 0;
+		int filled = 0;
+		int pos = 0;
+		int start = -1;
+		boolean eof = false;
+		while (!eof) {
+			int n = in.read(buffer, filled, buffer.length - filled);
+			if (n < 0)
+				eof = true;
+			else
+				filled += n;
+			while (pos < filled) {
+				n = wordChar(buffer, pos, filled);
+				if (n == 0) {
+					// 代理对的后一半还没有读入
+					if (!eof)
+						break;
+					n = -1;
+				}
+				if (n > 0) {
+					if (start < 0)
+						start = pos;
+					pos += n;
+				} else {
+					if (start >= 0) {
+						emit(chars, base, start, pos - start, code, handler);
+						start = -1;
+					}
+					pos -= n;
+				}
+			}
+			if (eof || (filled < buffer.length))
+				continue;
+			// 缓冲区已满：丢弃已处理的部分，把未结束的单词或字符移到开头
+			if (start == 0) {
+				emit(chars, base, 0, pos, code, handler);
+				start = -1;
+			}
+			int keepFrom = (start < 0) ? pos : start;
+			System.arraycopy(buffer, keepFrom, buffer, 0, filled - keepFrom);
+			base += keepFrom;
+			filled -= keepFrom;
+			pos -= keepFrom;
+			start = (start < 0) ? -1 : 0;
+		}
+		if (start >= 0)
+			emit(chars, base, start, pos - start, code, handler);
+	}
+
+	/**
+	 * Encodes all the words of an InputStream of UTF-8 text, up to its end. The
+	 * stream is not closed.
+	 *
+	 * @param in the text
+	 * @param handler receives the words
+	 * @throws IOException if the stream fails
+	 */
+	public void encode(InputStream in, Handler handler) throws IOException {
+		encode(Channels.newChannel(in), handler);
+	}
+
+	/**
+	 * Encodes all the words of a blocking channel of UTF-8 text, up to its end.
+	 * The channel is not closed.
+	 *
+	 * @param in the text
+	 * @param handler receives the words
+	 * @throws IOException if the channel fails
+	 */
+	public void encode(ReadableByteChannel in, Handler handler) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+		StringBuilder code = new StringBuilder(32);
+		long base = 0;
+		int pos = 0;
+		int start = -1;
+		boolean eof = false;
+		while (!eof) {
+			eof = in.read(buffer) == -1;
+			int filled = buffer.position();
+			while (pos < filled) {
+				int n = wordChar(buffer, pos, filled);
+				if (n == 0) {
+					// 多字节字符还没有读完整
+					if (!eof)
+						break;
+					n = -1;
+				}
+				if (n > 0) {
+					if (start < 0)
+						start = pos;
+					pos += n;
+				} else {
+					if (start >= 0) {
+						emit(buffer, base, start, pos - start, code, handler);
+						start = -1;
+					}
+					pos -= n;
+				}
+			}
+			if (eof || buffer.hasRemaining())
+				continue;
+			// 缓冲区已满：丢弃已处理的部分，把未结束的单词或字符移到开头
+			if (start == 0) {
+				emit(buffer, base, 0, pos, code, handler);
+				start = -1;
+			}
+			int keepFrom = (start < 0) ? pos : start;
+			buffer.limit(filled).position(keepFrom);
+			buffer.compact();
+			base += keepFrom;
+			pos -= keepFrom;
+			start = (start < 0) ? -1 : 0;
+		}
+		if (start >= 0)
+			emit(buffer, base, start, pos - start, code, handler);
+	}
+
+	/**
+	 * 从 pos 开始的字符：是字母时返回它占的 char 数，不是字母时返回负的 char 数，代理对不完整时返回 0
+	 */
+	private static int wordChar(char[] buffer, int pos, int filled) {
+		char c = buffer[pos];
+		if (!Character.isHighSurrogate(c))
+			return Character.isLetter(c) ? 1 : -1;
+		if (pos + 1 >= filled)
+			return 0;
+		char low = buffer[pos + 1];
+		if (!Character.isLowSurrogate(low))
+			return -1;
+		return Character.isLetter(Character.toCodePoint(c, low)) ? 2 : -2;
+	}
+
+	/**
+	 * 从 pos 开始的 UTF-8 字符：解码后按 Character.isLetter 判断，与 Reader 的判断相同。
+	 * 是字母时返回它占的字节数，不是字母或不是合法的开始字节时返回负的字节数，字符不完整时返回 0
+	 */
+	private static int wordChar(ByteBuffer buffer, int pos, int filled) {
+		int b = buffer.get(pos);
+		if (b >= 0)
+			return Character.isLetter(b) ? 1 : -1;
+		int n;
+		int codePoint;
+		if ((b & 0xE0) == 0xC0) {
+			n = 2;
+			codePoint = b & 0x1F;
+		} else if ((b & 0xF0) == 0xE0) {
+			n = 3;
+			codePoint = b & 0x0F;
+		} else if ((b & 0xF8) == 0xF0) {
+			n = 4;
+			codePoint = b & 0x07;
+		} else {
+			// 续字节或无效字节
+			return -1;
+		}
+		for (int i = 1; i < n; i++) {
+			if (pos + i >= filled)
+				return 0;
+			int next = buffer.get(pos + i);
+			if ((next & 0xC0) != 0x80)
+				return -1;
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+		return Character.isLetter(codePoint) ? n : -n;
+	}
+
+	private void emit(CharBuffer chars, long base, int off, int len, StringBuilder code, Handler handler) {
+		code.setLength(0);
+		meta.transform(chars, off, len, code);
+		handler.token(base + off, len, code);
+	}
+
+	private void emit(ByteBuffer bytes, long base, int off, int len, StringBuilder code, Handler handler) {
+		code.setLength(0);
+		meta.transform(bytes, off, len, code);
+		handler.token(base + off, len, code);
+	}
+}
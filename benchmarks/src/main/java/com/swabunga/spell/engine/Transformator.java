@@ -0,0 +1,45 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+/**
+ * The Jazzy interface implemented by {@link DoubleMeta}. Only this interface
+ * of the Jazzy engine is needed by the encoder, so it is repeated here to let
+ * the benchmark module build without a Jazzy checkout.
+ */
+public interface Transformator {
+
+	/**
+	 * Take the given word, and return the best phonetic hash for it.
+	 *
+	 * @param word the text to transform
+	 * @return the result of the phonetic transformation
+	 */
+	public String transform(String word);
+
+	/**
+	 * gets the list of characters that should be swapped in to the misspelled
+	 * word in order to try to find more suggestions.
+	 *
+	 * @return char[] misspelled words should try replacing with these characters
+	 *         to get more suggestions
+	 */
+	public char[] getReplaceList();
+}
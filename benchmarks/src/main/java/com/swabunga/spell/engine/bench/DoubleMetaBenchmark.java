@@ -0,0 +1,243 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.swabunga.spell.engine.DoubleMeta;
+import com.swabunga.spell.engine.DoubleMetaResult;
+import com.swabunga.spell.engine.PhoneticIndex;
+import com.swabunga.spell.engine.RuleSet;
+
+/**
+ * Measures the encoding of one word per invocation, cycling through one of the
+ * corpora checked in under <code>/corpora</code>:
+ * <ul>
+ * <li>english: common dictionary words</li>
+ * <li>slavo-germanic: surnames containing W, K or CZ, which switch the
+ * SlavoGermanic rules on</li>
+ * <li>spanish-italian: names hitting the J, LL, GLI and CC rules</li>
+ * <li>long: compound names, addresses and very long words</li>
+ * </ul>
+ * Run with <code>java -jar target/benchmarks.jar -prof gc</code> to get the
+ * allocation rate next to the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoubleMetaBenchmark {
+
+	@Param({ "english", "slavo-germanic", "spanish-italian", "long" })
+	public String corpus;
+
+	private String[] words;
+	private int next;
+	private ByteBuffer bytes;
+	private int[] offsets;
+	private final ByteBuffer code = ByteBuffer.allocate(1024);
+
+	private final DoubleMeta meta = new DoubleMeta();
+	private final DoubleMeta meta4 = new DoubleMeta(4);
+	private final DoubleMeta compiled = new DoubleMeta(RuleSet.DOUBLE_METAPHONE, Integer.MAX_VALUE);
+	private final StringBuilder primary = new StringBuilder();
+	private final StringBuilder alternate = new StringBuilder();
+	private PhoneticIndex index;
+
+	@Setup
+	public void load() throws IOException {
+		words = Corpora.load(corpus);
+		index = PhoneticIndex.build(meta, words);
+		offsets = new int[words.length + 1];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < words.length; i++) {
+			byte[] word = words[i].getBytes(StandardCharsets.UTF_8);
+			out.write(word, 0, word.length);
+			offsets[i + 1] = out.size();
+		}
+		bytes = ByteBuffer.allocateDirect(out.size());
+		bytes.put(out.toByteArray()).clear();
+	}
+
+	private int nextIndex() {
+		int i = next;
+		if (++next == words.length)
+			next = 0;
+		return i;
+	}
+
+	private String nextWord() {
+		String word = words[next];
+		if (++next == words.length)
+			next = 0;
+		return word;
+	}
+
+	/**
+	 * The String API, allocating the uppercased input and the result.
+	 */
+	@Benchmark
+	public String transform() {
+		return meta.transform(nextWord());
+	}
+
+	/**
+	 * The allocation-free API writing into a reused builder.
+	 */
+	@Benchmark
+	public int transformInto() {
+		String word = nextWord();
+		primary.setLength(0);
+		meta.transform(word, 0, word.length(), primary);
+		return primary.length();
+	}
+
+	/**
+	 * The same rules run from the compiled {@link RuleSet} program.
+	 */
+	@Benchmark
+	public int transformRuleSet() {
+		String word = nextWord();
+		primary.setLength(0);
+		compiled.transform(word, 0, word.length(), primary);
+		return primary.length();
+	}
+
+	/**
+	 * A 4 symbol blocking key, stopping as soon as it is complete.
+	 */
+	@Benchmark
+	public int transformMax4() {
+		String word = nextWord();
+		primary.setLength(0);
+		meta4.transform(word, 0, word.length(), primary);
+		return primary.length();
+	}
+
+	/**
+	 * The packed primitive key.
+	 */
+	@Benchmark
+	public long transformToLong() {
+		String word = nextWord();
+		return meta.transformToLong(word, 0, word.length(), primary);
+	}
+
+	/**
+	 * Primary and alternate codes in one pass.
+	 */
+	@Benchmark
+	public int transformBoth() {
+		String word = nextWord();
+		primary.setLength(0);
+		alternate.setLength(0);
+		meta.transformBoth(word, 0, word.length(), primary, alternate);
+		return primary.length() + alternate.length();
+	}
+
+	/**
+	 * Primary and alternate codes as a result object.
+	 */
+	@Benchmark
+	public DoubleMetaResult transformBothResult() {
+		return meta.transformBoth(nextWord());
+	}
+
+	/**
+	 * Encoding UTF-8 bytes from a direct buffer without decoding them.
+	 */
+	@Benchmark
+	public int transformBytes() {
+		int i = nextIndex();
+		code.clear();
+		return meta.transform(bytes, offsets[i], offsets[i + 1] - offsets[i], code);
+	}
+
+	/**
+	 * The packed primitive key of UTF-8 bytes from a direct buffer.
+	 */
+	@Benchmark
+	public long transformBytesToLong() {
+		int i = nextIndex();
+		return meta.transformToLong(bytes, offsets[i], offsets[i + 1] - offsets[i], primary);
+	}
+
+	/**
+	 * Encoding a word and finding the words sharing its code in the index.
+	 */
+	@Benchmark
+	public int indexLookup() {
+		String word = nextWord();
+		int slot = index.find(meta.transformToLong(word, 0, word.length(), primary));
+		return index.end(slot) - index.start(slot);
+	}
+
+	/**
+	 * Loads the corpora checked in with the benchmarks.
+	 */
+	static final class Corpora {
+
+		private Corpora() {
+		}
+
+		/**
+		 * @param name the corpus name, e.g. "english"
+		 * @return the non-empty lines of the corpus
+		 * @throws IOException if the corpus cannot be read
+		 */
+		static String[] load(String name) throws IOException {
+			InputStream in = Corpora.class.getResourceAsStream("/corpora/" + name + ".txt");
+			if (in == null)
+				throw new IOException("no corpus named " + name);
+			List<String> words = new ArrayList<String>();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.length() > 0)
+						words.add(line);
+				}
+			}
+			return words.toArray(new String[words.size()]);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the uppercasing and accent folding of charAt, and that the codes do
+ * not depend on the default locale.
+ */
+class AccentFoldingTest {
+
+	@Test
+	void accentedLettersEncodeLikeTheirBaseLetters() {
+		DoubleMeta meta = new DoubleMeta();
+		String[][] pairs = { { "\u00c9mile", "Emile" }, { "\u00e9mile", "Emile" }, { "M\u00fcller", "Muller" },
+				{ "\u00d6zil", "Ozil" }, { "G\u00f6del", "Godel" }, { "C\u00e9sar", "Cesar" },
+				{ "Stra\u00dfe", "Strasse" }, { "\u0130stanbul", "Istanbul" }, { "\u0131van", "Ivan" } };
+		for (String[] pair : pairs)
+			assertEquals(meta.transformBoth(pair[1]), meta.transformBoth(pair[0]), pair[0]);
+		assertEquals("AML", meta.transform("\u00c9mile"));
+		assertEquals("SSR", meta.transform("C\u00e9sar"));
+	}
+
+	@Test
+	void cedillaAndTildeKeepTheirRules() {
+		DoubleMeta meta = new DoubleMeta();
+		// 原来的实现对 C 和 N 的变音字母（U+00C7、U+00D1）有专门的规则
+		assertEquals("MNS", meta.transform("Mu\u00f1oz"));
+		assertEquals("FRNSS", meta.transform("Fran\u00e7ois"));
+		assertEquals("KRSN", meta.transform("Gar\u00e7on"));
+		assertEquals("SLK", meta.transform("\u00c7elik"));
+		assertEquals(meta.transform("MU\u00d1OZ"), meta.transform("mu\u00f1oz"));
+	}
+
+	@Test
+	void turkishLocaleGivesTheSameCodes() throws IOException {
+		Map<String, String> golden = GoldenCodesTest.golden();
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr"));
+		try {
+			// 土耳其语中 i 的大写是带点的 I（U+0130），I 的小写是不带点的 i（U+0131）
+			assertEquals("ISTANBUL", "istanbul".toUpperCase().replace("\u0130", "I"));
+			assertNotEquals("ISTANBUL", "istanbul".toUpperCase());
+			DoubleMeta meta = new DoubleMeta();
+			int words = 0;
+			for (Map.Entry<String, String> entry : golden.entrySet()) {
+				String word = entry.getKey();
+				if ((word.indexOf('i') < 0) && (word.indexOf('I') < 0))
+					continue;
+				assertEquals(entry.getValue(), meta.transform(word), word);
+				assertEquals(entry.getValue(), meta.transform(word.toLowerCase(Locale.ROOT)), word);
+				words++;
+			}
+			assertTrue(words > 1000, "words " + words);
+			assertEquals("ASTNPL", meta.transform("istanbul"));
+			assertEquals("AFN", meta.transform("ivan"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class BatchTransformTest {
+
+	@Test
+	void batchesMatchSingleWords() throws IOException {
+		String[] golden = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		int threshold = BatchTransform.PARALLEL_THRESHOLD;
+		// 并行阈值两侧的大小，以及可以拆成多个叶子的大小
+		for (int size : new int[] { 0, 1, threshold - 1, threshold, threshold + 1, 3 * threshold + 5 }) {
+			String[] words = new String[size];
+			for (int i = 0; i < size; i++)
+				words[i] = golden[(7 * i) % golden.length];
+			for (DoubleMeta meta : new DoubleMeta[] { new DoubleMeta(), new DoubleMeta(4) }) {
+				String[] codes = meta.transformAll(words);
+				long[] packed = meta.transformAllToLong(words);
+				assertEquals(size, codes.length);
+				assertEquals(size, packed.length);
+				for (int i = 0; i < size; i++) {
+					assertEquals(meta.transform(words[i]), codes[i], words[i]);
+					assertEquals(meta.transformToLong(words[i]), packed[i], words[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the encoder over in-memory channels with small chunks and several
+ * workers.
+ */
+class BulkEncoderTest {
+
+	@Test
+	void quotedFieldsLineEndingsAndHeader() throws IOException {
+		DoubleMeta meta = new DoubleMeta(4);
+		BulkEncoder encoder = new BulkEncoder(meta, ',', new int[] { 2, 0 }, true, 3, 16);
+		String input = "first,id,last\r\n"
+				+ "John,1,Smith\r\n"
+				+ "\r\n"
+				+ "\"Schmidt, Jr\",2,\"O\"\"Brien\"\n"
+				+ "\n"
+				+ "Jones,3\n"
+				+ "Thompson,4,\"Wasserman\"";
+		String expected = "first,id,last,last_dm,first_dm\r\n"
+				+ "John,1,Smith," + meta.transform("Smith") + "," + meta.transform("John") + "\r\n"
+				+ "\r\n"
+				+ "\"Schmidt, Jr\",2,\"O\"\"Brien\"," + meta.transform("O\"\"Brien") + ","
+				+ meta.transform("Schmidt, Jr") + "\n"
+				+ "\n"
+				// 缺少的列按空字段编码
+				+ "Jones,3,," + meta.transform("Jones") + "\n"
+				+ "Thompson,4,\"Wasserman\"," + meta.transform("Wasserman") + "," + meta.transform("Thompson");
+		assertEquals(4, run(encoder, input, expected));
+		assertEquals(meta.transform("O\"Brien"), meta.transform("O\"\"Brien"));
+	}
+
+	@Test
+	void rowsKeepTheirOrderAcrossChunks() throws IOException {
+		DoubleMeta meta = new DoubleMeta();
+		String[] words = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		Random random = new Random(20261017);
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < words.length; i++) {
+			String word = words[i];
+			String other = words[random.nextInt(words.length)];
+			// 偶尔有比块长得多的行
+			if (random.nextInt(50) == 0)
+				other = other.repeat(40);
+			String line = i + "\t" + word + "\t\"" + other + "\"";
+			String ending = random.nextBoolean() ? "\n" : "\r\n";
+			input.append(line).append(ending);
+			expected.append(line).append('\t').append(meta.transform(other)).append('\t').append(meta.transform(word))
+					.append(ending);
+		}
+		for (int chunkSize : new int[] { 64, 1000, BulkEncoder.DEFAULT_CHUNK_SIZE }) {
+			BulkEncoder encoder = new BulkEncoder(meta, '\t', new int[] { 2, 1 }, false, 4, chunkSize);
+			assertEquals(words.length, run(encoder, input.toString(), expected.toString()));
+		}
+	}
+
+	/**
+	 * 编码 input，比较输出，返回编码的行数
+	 */
+	private static long run(BulkEncoder encoder, String input, String expected) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+		long rows = encoder.encode(Channels.newChannel(in), Channels.newChannel(out));
+		List<String> actual = lines(out.toString(StandardCharsets.UTF_8));
+		List<String> lines = lines(expected);
+		assertEquals(lines.size(), actual.size());
+		for (int i = 0; i < lines.size(); i++)
+			assertEquals(lines.get(i), actual.get(i), "line " + i);
+		return rows;
+	}
+
+	private static List<String> lines(String s) {
+		List<String> lines = new ArrayList<String>();
+		int from = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '\n') {
+				lines.add(s.substring(from, i + 1));
+				from = i + 1;
+			}
+		}
+		if (from < s.length())
+			lines.add(s.substring(from));
+		return lines;
+	}
+}
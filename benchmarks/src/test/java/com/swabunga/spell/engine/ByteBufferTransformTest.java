@@ -0,0 +1,155 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the ByteBuffer overloads of DoubleMeta and the AsciiSequence view
+ * against the String path.
+ */
+class ByteBufferTransformTest {
+
+	private static final String[] ACCENTED = { "\u00c9mile", "M\u00fcller", "Mu\u00f1oz", "Fran\u00e7ois",
+			"\u00c7elik", "Stra\u00dfe" };
+
+	@Test
+	void bytesEncodeLikeStrings() throws IOException {
+		for (DoubleMeta meta : new DoubleMeta[] { new DoubleMeta(), new DoubleMeta(4) }) {
+			StringBuilder scratch = new StringBuilder();
+			for (String word : words()) {
+				for (boolean direct : new boolean[] { false, true }) {
+					byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+					// 单词前后各有三个字节的其它内容，位置和界限都不在单词上
+					ByteBuffer src = direct ? ByteBuffer.allocateDirect(bytes.length + 6)
+							: ByteBuffer.allocate(bytes.length + 6);
+					src.put("xy ".getBytes(StandardCharsets.US_ASCII)).put(bytes)
+							.put(" zz".getBytes(StandardCharsets.US_ASCII));
+					src.position(1);
+					String code = meta.transform(word);
+
+					ByteBuffer dst = ByteBuffer.allocate(64);
+					dst.position(5);
+					assertEquals(code.length(), meta.transform(src, 3, bytes.length, dst), word);
+					assertEquals(code, new String(dst.array(), 5, code.length(), StandardCharsets.US_ASCII), word);
+					assertEquals(5 + code.length(), dst.position());
+
+					StringBuilder builder = new StringBuilder("code:");
+					meta.transform(src, 3, bytes.length, builder);
+					assertEquals("code:" + code, builder.toString(), word);
+
+					assertEquals(meta.transformToLong(word), meta.transformToLong(src, 3, bytes.length, scratch), word);
+					assertEquals(1, src.position());
+				}
+			}
+		}
+	}
+
+	@Test
+	void fullDestinationIsLeftUntouched() {
+		DoubleMeta meta = new DoubleMeta();
+		ByteBuffer src = ByteBuffer.wrap("Schmidt".getBytes(StandardCharsets.US_ASCII));
+		ByteBuffer dst = ByteBuffer.allocate(8);
+		dst.position(6);
+		assertThrows(BufferOverflowException.class, () -> meta.transform(src, 0, 7, dst));
+		assertEquals(6, dst.position());
+		dst.position(5);
+		assertEquals(3, meta.transform(src, 0, 7, dst));
+		assertEquals(8, dst.position());
+	}
+
+	@Test
+	void rangesOutsideTheBufferAreRejected() {
+		DoubleMeta meta = new DoubleMeta();
+		ByteBuffer src = ByteBuffer.wrap("Smith Jones".getBytes(StandardCharsets.US_ASCII));
+		src.limit(5);
+		StringBuilder dst = new StringBuilder();
+		assertThrows(IndexOutOfBoundsException.class, () -> meta.transform(src, -1, 3, dst));
+		assertThrows(IndexOutOfBoundsException.class, () -> meta.transform(src, 0, -1, dst));
+		// 界限之后的字节不属于单词
+		assertThrows(IndexOutOfBoundsException.class, () -> meta.transform(src, 3, 3, dst));
+		assertThrows(IndexOutOfBoundsException.class, () -> meta.transform(src, Integer.MAX_VALUE, 1, dst));
+		assertThrows(IndexOutOfBoundsException.class,
+				() -> meta.transform(src, 6, 5, ByteBuffer.allocate(16)));
+		assertThrows(IndexOutOfBoundsException.class,
+				() -> meta.transformToLong(src, 0, 6, new StringBuilder()));
+		meta.transform(src, 5, 0, dst);
+		assertEquals("", dst.toString());
+		meta.transform(src, 0, 5, dst);
+		assertEquals("SM0", dst.toString());
+	}
+
+	@Test
+	void asciiTestFindsEveryHighByte() {
+		byte[] bytes = new byte[40];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) ('a' + i % 26);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		for (int off = 0; off < 10; off++) {
+			for (int len = 0; off + len <= 30; len++)
+				assertTrue(AsciiSequence.isAscii(buffer, off, len));
+		}
+		// 非 ASCII 字节出现在 8 字节块内和块后的每个位置
+		for (int at = 0; at < bytes.length; at++) {
+			bytes[at] = (byte) 0xC3;
+			for (int off = 0; off <= at; off++) {
+				for (int len = at - off + 1; off + len <= bytes.length; len += 3)
+					assertFalse(AsciiSequence.isAscii(buffer, off, len), at + " in " + off + "+" + len);
+				assertTrue(AsciiSequence.isAscii(buffer, off, at - off));
+			}
+			bytes[at] = (byte) ('a' + at % 26);
+		}
+	}
+
+	@Test
+	void asciiViewIsUppercased() {
+		ByteBuffer buffer = ByteBuffer.wrap("--Smith-jones!".getBytes(StandardCharsets.US_ASCII));
+		AsciiSequence view = new AsciiSequence(buffer, 2, 5);
+		assertEquals(5, view.length());
+		assertEquals('S', view.charAt(0));
+		assertEquals('M', view.charAt(1));
+		assertEquals("SMITH", view.toString());
+		assertEquals("MIT", view.subSequence(1, 4).toString());
+		assertEquals("", view.subSequence(5, 5).toString());
+		assertThrows(IndexOutOfBoundsException.class, () -> view.subSequence(2, 6));
+		assertThrows(IndexOutOfBoundsException.class, () -> view.subSequence(-1, 2));
+		assertThrows(IndexOutOfBoundsException.class, () -> view.subSequence(3, 2));
+		assertEquals("JONES!", view.wrap(buffer, 8, 6).toString());
+		assertEquals(0, buffer.position());
+	}
+
+	private static String[] words() throws IOException {
+		String[] golden = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		String[] words = new String[golden.length + ACCENTED.length];
+		System.arraycopy(golden, 0, words, 0, golden.length);
+		System.arraycopy(ACCENTED, 0, words, golden.length, ACCENTED.length);
+		return words;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class CachingTransformatorTest {
+
+	@Test
+	void hitsGiveTheCodesOfMisses() throws IOException {
+		DoubleMeta meta = new DoubleMeta(4);
+		CachingTransformator cache = new CachingTransformator(meta, 1L << 30);
+		Map<String, String> golden = GoldenCodesTest.golden();
+		for (int pass = 0; pass < 2; pass++) {
+			for (String word : golden.keySet())
+				assertEquals(meta.transform(word), cache.transform(word), word);
+		}
+		assertEquals(golden.size(), cache.getMissCount());
+		assertEquals(golden.size(), cache.getHitCount());
+		assertEquals(golden.size(), cache.size());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test
+	void entriesAreEvictedToStayUnderTheBudget() throws IOException {
+		DoubleMeta meta = new DoubleMeta();
+		long maxBytes = 20 * (CachingTransformator.ENTRY_OVERHEAD + 40);
+		CachingTransformator cache = new CachingTransformator(meta, maxBytes, 1);
+		String hot = "Smith";
+		cache.transform(hot);
+		int n = 0;
+		for (String word : GoldenCodesTest.golden().keySet()) {
+			if (word.equals(hot))
+				continue;
+			assertEquals(meta.transform(word), cache.transform(word), word);
+			// 每次插入之间都被引用的条目不会被时钟淘汰
+			assertEquals(meta.transform(hot), cache.transform(hot));
+			assertTrue(cache.getWeightedSize() <= maxBytes, cache.getWeightedSize() + " > " + maxBytes);
+			n++;
+		}
+		assertEquals(n, cache.getHitCount());
+		assertTrue(cache.getEvictionCount() > n / 2, "evictions " + cache.getEvictionCount());
+		assertTrue(cache.size() <= maxBytes / CachingTransformator.ENTRY_OVERHEAD, "size " + cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeightedSize());
+	}
+
+	@Test
+	void entriesLargerThanAStripeAreNotCached() {
+		CachingTransformator cache = new CachingTransformator(new DoubleMeta(), CachingTransformator.ENTRY_OVERHEAD, 1);
+		assertEquals("SM0", cache.transform("Smith"));
+		assertEquals("SM0", cache.transform("Smith"));
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	void concurrentCallersGetTheRightCodes() throws Exception {
+		DoubleMeta meta = new DoubleMeta();
+		String[] words = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		// 预算只够缓存一部分单词，插入和淘汰同时发生
+		long maxBytes = 200 * (CachingTransformator.ENTRY_OVERHEAD + 40);
+		CachingTransformator cache = new CachingTransformator(meta, maxBytes, 4);
+		int threads = 8;
+		int calls = 20000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for (int t = 0; t < threads; t++) {
+				long seed = t;
+				results.add(executor.submit(() -> {
+					Random random = new Random(seed);
+					for (int i = 0; i < calls; i++) {
+						// 一半的调用集中在前 100 个单词上
+						String word = words[random.nextInt(random.nextBoolean() ? 100 : words.length)];
+						assertEquals(meta.transform(word), cache.transform(word), word);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results)
+				result.get();
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals((long) threads * calls, cache.getHitCount() + cache.getMissCount());
+		assertTrue(cache.getHitCount() > 0);
+		assertTrue(cache.getWeightedSize() <= maxBytes, cache.getWeightedSize() + " > " + maxBytes);
+	}
+}
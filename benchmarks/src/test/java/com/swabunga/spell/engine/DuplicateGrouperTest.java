@@ -0,0 +1,122 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DuplicateGrouperTest {
+
+	@TempDir
+	Path spill;
+
+	@Test
+	void groupsInMemoryMatchTheCodes() throws IOException {
+		String[] names = names();
+		DuplicateGrouper grouper = new DuplicateGrouper(new DoubleMeta(), Long.MAX_VALUE, spill);
+		grouper.add(names);
+		assertEquals(expected(new DoubleMeta(), names, 2), finish(grouper, 2));
+		assertEquals(0, grouper.getSpillCount());
+	}
+
+	@Test
+	void spilledRunsAreMergedAndDeleted() throws IOException {
+		String[] names = names();
+		// 每 500 个条目溢写一次，每个分区合并多个 run
+		DuplicateGrouper grouper = new DuplicateGrouper(new DoubleMeta(), 12 * 500, spill);
+		for (int from = 0; from < names.length; from += 777)
+			assertEquals(from, grouper.add(Arrays.copyOfRange(names, from, Math.min(names.length, from + 777))));
+		assertEquals(names.length, grouper.size());
+		assertTrue(grouper.getSpillCount() > 10, grouper.toString());
+		assertEquals(expected(new DoubleMeta(), names, 2), finish(grouper, 2));
+		try (Stream<Path> files = Files.list(spill)) {
+			assertEquals(0, files.count());
+		}
+		assertThrows(IllegalStateException.class, () -> grouper.add(names));
+	}
+
+	@Test
+	void minSizeFiltersTheGroups() throws IOException {
+		String[] names = names();
+		for (int minSize : new int[] { 1, 3 }) {
+			DoubleMeta meta = new DoubleMeta(4);
+			DuplicateGrouper grouper = new DuplicateGrouper(meta, 12 * 1000, spill);
+			grouper.add(names);
+			assertEquals(expected(meta, names, minSize), finish(grouper, minSize));
+		}
+	}
+
+	@Test
+	void failedSpillClosesTheGrouper() throws IOException {
+		// 溢写目录是一个文件，创建 run 目录失败
+		Path file = Files.createFile(spill.resolve("not-a-directory"));
+		DuplicateGrouper grouper = new DuplicateGrouper(new DoubleMeta(), 12 * 10, file);
+		assertThrows(IOException.class, () -> grouper.add(names()));
+		assertThrows(IllegalStateException.class, () -> grouper.add(new String[] { "Smith" }));
+		assertThrows(IllegalStateException.class, () -> grouper.finish(2, (code, ids, count) -> {
+		}));
+	}
+
+	/**
+	 * 金标准文件中的单词，后面再重复一遍前一半，使每组都有多个编号
+	 */
+	private static String[] names() throws IOException {
+		String[] words = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		String[] names = Arrays.copyOf(words, words.length + words.length / 2);
+		System.arraycopy(words, 0, names, words.length, words.length / 2);
+		return names;
+	}
+
+	private static Map<Long, List<Integer>> expected(DoubleMeta meta, String[] names, int minSize) {
+		Map<Long, List<Integer>> groups = new HashMap<Long, List<Integer>>();
+		for (int i = 0; i < names.length; i++)
+			groups.computeIfAbsent(meta.transformToLong(names[i]), code -> new ArrayList<Integer>()).add(i);
+		groups.values().removeIf(ids -> ids.size() < minSize);
+		return groups;
+	}
+
+	private static Map<Long, List<Integer>> finish(DuplicateGrouper grouper, int minSize) throws IOException {
+		Map<Long, List<Integer>> groups = new HashMap<Long, List<Integer>>();
+		grouper.finish(minSize, (code, ids, count) -> {
+			List<Integer> group = new ArrayList<Integer>();
+			for (int i = 0; i < count; i++) {
+				// 组内编号升序
+				assertTrue((i == 0) || (ids[i - 1] < ids[i]));
+				group.add(ids[i]);
+			}
+			assertEquals(null, groups.put(code, group));
+		});
+		return groups;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the server on a loopback port chosen by the system.
+ */
+class EncodingServerTest {
+
+	private static final String[] WORDS = { "Smith", "Schmidt", "hegemony", "Arnow", "Cabrillo", "Jankelowicz",
+			"Thumb", "Wasserman", "Gallegos", "Xavier" };
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Test
+	void concurrentRequestsGetTheirOwnCodes() throws Exception {
+		DoubleMeta meta = new DoubleMeta(4);
+		EncodingServer server = new EncodingServer(meta, null, 16, 200, 2);
+		server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		try {
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 200; i++)
+				responses.add(
+						client.sendAsync(get(server, WORDS[i % WORDS.length]), HttpResponse.BodyHandlers.ofString()));
+			for (int i = 0; i < responses.size(); i++) {
+				String word = WORDS[i % WORDS.length];
+				DoubleMetaResult codes = meta.transformBoth(word);
+				HttpResponse<String> response = responses.get(i).get();
+				assertEquals(200, response.statusCode());
+				assertEquals("{\"word\":\"" + word + "\",\"primary\":\"" + codes.getPrimary() + "\",\"alternate\":\""
+						+ codes.getAlternate() + "\"}\n", response.body());
+			}
+
+			HttpResponse<String> batch = client.send(post(server, String.join("\n", WORDS)),
+					HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, batch.statusCode());
+			StringBuilder expected = new StringBuilder();
+			for (String word : WORDS) {
+				DoubleMetaResult codes = meta.transformBoth(word);
+				expected.append(codes.getPrimary()).append('\t').append(codes.getAlternate()).append('\n');
+			}
+			assertEquals(expected.toString(), batch.body());
+
+			String large = "Smith\n".repeat(EncodingServer.MAX_BODY_SIZE / 6 + 1);
+			assertEquals(413, client.send(post(server, large), HttpResponse.BodyHandlers.ofString()).statusCode());
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	void queuedRequestsFailWhenTheServerStops() throws Exception {
+		// 一分钟的批量延迟，请求一直等到 stop
+		EncodingServer server = new EncodingServer(new DoubleMeta(), null, 2, 60_000_000L, 1);
+		server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		CompletableFuture<HttpResponse<String>> response = client.sendAsync(get(server, "Smith"),
+				HttpResponse.BodyHandlers.ofString());
+		Thread.sleep(500);
+		server.stop();
+		assertEquals(503, response.get().statusCode());
+	}
+
+	private static HttpRequest get(EncodingServer server, String word) {
+		return HttpRequest.newBuilder(uri(server, "/encode?w=" + URLEncoder.encode(word, StandardCharsets.UTF_8)))
+				.build();
+	}
+
+	private static HttpRequest post(EncodingServer server, String body) {
+		return HttpRequest.newBuilder(uri(server, "/encode"))
+				.POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build();
+	}
+
+	private static URI uri(EncodingServer server, String path) {
+		InetSocketAddress address = server.getAddress();
+		return URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+	}
+}
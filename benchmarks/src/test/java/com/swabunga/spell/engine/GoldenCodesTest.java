@@ -0,0 +1,96 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the codes against those of the original port, kept in
+ * <code>/golden/transform.txt</code>, so that the rewrites of the encoder
+ * cannot drift from it together.
+ */
+class GoldenCodesTest {
+
+	@Test
+	void transformGivesTheGoldenCodes() throws IOException {
+		Map<String, String> golden = golden();
+		assertTrue(golden.size() > 10000, "golden words " + golden.size());
+		DoubleMeta meta = new DoubleMeta();
+		StringBuilder code = new StringBuilder();
+		for (Map.Entry<String, String> entry : golden.entrySet()) {
+			String word = entry.getKey();
+			assertEquals(entry.getValue(), meta.transform(word), word);
+			// 单词位于更长的字符序列中间
+			code.setLength(0);
+			meta.transform("<" + word + ">", 1, word.length(), code);
+			assertEquals(entry.getValue(), code.toString(), word);
+			assertEquals(entry.getValue(), meta.transformBoth(word).getPrimary(), word);
+		}
+	}
+
+	@Test
+	void boundedCodesAreTruncatedGoldenCodes() throws IOException {
+		DoubleMeta meta = new DoubleMeta(4);
+		for (Map.Entry<String, String> entry : golden().entrySet()) {
+			String expected = entry.getValue();
+			if (expected.length() > 4)
+				expected = expected.substring(0, 4);
+			assertEquals(expected, meta.transform(entry.getKey()), entry.getKey());
+		}
+	}
+
+	@Test
+	void ruleTableGivesTheGoldenCodes() throws IOException {
+		DoubleMeta meta = new DoubleMeta(RuleSet.DOUBLE_METAPHONE, Integer.MAX_VALUE);
+		for (Map.Entry<String, String> entry : golden().entrySet())
+			assertEquals(entry.getValue(), meta.transform(entry.getKey()), entry.getKey());
+	}
+
+	/**
+	 * 读入单词和原始实现的代码，以 # 开头的行是注释
+	 */
+	static Map<String, String> golden() throws IOException {
+		InputStream in = GoldenCodesTest.class.getResourceAsStream("/golden/transform.txt");
+		assertNotNull(in, "/golden/transform.txt");
+		Map<String, String> golden = new LinkedHashMap<String, String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#"))
+					continue;
+				int tab = line.indexOf('\t');
+				golden.put(line.substring(0, tab), line.substring(tab + 1));
+			}
+		}
+		return golden;
+	}
+}
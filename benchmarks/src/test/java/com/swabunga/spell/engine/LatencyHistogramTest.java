@@ -0,0 +1,104 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 100; v++)
+			histogram.record(v);
+		assertEquals(100, histogram.getCount());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+		assertEquals(1, histogram.getValueAtPercentile(0));
+		assertEquals(1, histogram.getValueAtPercentile(1));
+		assertEquals(50, histogram.getValueAtPercentile(50));
+		assertEquals(99, histogram.getValueAtPercentile(99));
+		assertEquals(100, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	void largeValuesAreWithinTheBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(17);
+		long[] values = new long[20000];
+		for (int i = 0; i < values.length; i++) {
+			// 跨越从纳秒到几分钟的量级
+			values[i] = (long) Math.pow(10, 11 * random.nextDouble());
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		for (double p : new double[] { 0.1, 1, 10, 25, 50, 75, 90, 99, 99.9, 100 }) {
+			long target = Math.max(1, (long) Math.ceil(p / 100 * values.length));
+			long exact = values[(int) target - 1];
+			long reported = histogram.getValueAtPercentile(p);
+			assertTrue(reported >= exact, p + ": " + reported + " < " + exact);
+			assertTrue(reported <= exact + exact / 64, p + ": " + reported + " > " + exact);
+		}
+		assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+		assertEquals(values[values.length - 1], histogram.getMax());
+	}
+
+	@Test
+	void extremesAndResets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0, histogram.getMean());
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.5));
+		histogram.record(-5);
+		assertEquals(0, histogram.getValueAtPercentile(100));
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	void metricsCountBatches() {
+		String[] words = { "Smith", "Schmidt", "Thompson", "Knight" };
+		EncodingMetrics.reset();
+		new DoubleMeta().transformAll(words);
+		new DoubleMeta().transformAllToLong(words);
+		assertEquals(2, EncodingMetrics.getBatchCount());
+		assertEquals(8, EncodingMetrics.getWordCount());
+		assertEquals(2 * (5 + 7 + 8 + 6), EncodingMetrics.getCharacterCount());
+		assertEquals(2, EncodingMetrics.getBatchLatency().getCount());
+		EncodingMetrics.reset();
+		assertEquals(0, EncodingMetrics.getBatchCount());
+		assertEquals(0, EncodingMetrics.getWordCount());
+		assertEquals(0, EncodingMetrics.getCharacterCount());
+		assertEquals(0, EncodingMetrics.getBatchLatency().getCount());
+	}
+}
@@ -0,0 +1,115 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedPhoneticIndexTest {
+
+	private static final String[] WORDS = { "Smith", "Smyth", "Schmidt", "Jones", "Johns", "hegemony" };
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void lookupsMatchTheIndexItWasWrittenFrom() throws IOException {
+		DoubleMeta meta = new DoubleMeta(4);
+		PhoneticIndex index = PhoneticIndex.build(meta, WORDS);
+		Path file = directory.resolve("words.dmix");
+		index.write(WORDS, file);
+		MappedPhoneticIndex mapped = MappedPhoneticIndex.open(file);
+		assertEquals(index.codeCount(), mapped.codeCount());
+		for (int i = 0; i < WORDS.length; i++) {
+			assertArrayEquals(index.lookup(WORDS[i]), mapped.lookup(WORDS[i]));
+			assertEquals(WORDS[i], mapped.word(i));
+		}
+	}
+
+	@Test
+	void hugeCountsInACorruptHeaderAreRejected() throws IOException {
+		Path file = directory.resolve("corrupt.dmix");
+		PhoneticIndex.build(new DoubleMeta(4), WORDS).write(WORDS, file);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			// 代码数量使各段位置在 int 运算中溢出
+			raf.seek(12);
+			raf.writeInt(0x20000000);
+		}
+		assertThrows(IOException.class, () -> MappedPhoneticIndex.open(file));
+	}
+
+	@Test
+	void hugeWordCountIsRejected() throws IOException {
+		// 单词数量加一在 int 运算中溢出时，各段的结束位置恰好等于 64
+		ByteBuffer header = ByteBuffer.allocate(64);
+		header.putInt(MappedPhoneticIndex.MAGIC).putInt(MappedPhoneticIndex.VERSION).putInt(4).putInt(0)
+				.putInt(Integer.MAX_VALUE).putInt(40);
+		Path file = directory.resolve("overflow.dmix");
+		Files.write(file, header.array());
+		assertThrows(IOException.class, () -> MappedPhoneticIndex.open(file));
+	}
+
+	@Test
+	void offsetsOutsideTheirSectionsAreRejected() throws IOException {
+		Path file = directory.resolve("words.dmix");
+		PhoneticIndex index = PhoneticIndex.build(new DoubleMeta(4), WORDS);
+		index.write(WORDS, file);
+		long wordsAt = MappedPhoneticIndex.HEADER_SIZE + 8L * index.codeCount() + 4L * (index.codeCount() + 1)
+				+ 4L * WORDS.length;
+		// 单词偏移量递减
+		corrupt(file, wordsAt + 4, Integer.MAX_VALUE);
+		assertThrows(IOException.class, () -> MappedPhoneticIndex.open(file));
+		// 倒排表的偏移量超出倒排表
+		index.write(WORDS, file);
+		corrupt(file, MappedPhoneticIndex.HEADER_SIZE + 8L * index.codeCount() + 4, WORDS.length + 1);
+		assertThrows(IOException.class, () -> MappedPhoneticIndex.open(file));
+		// 单词编号超出单词数量
+		index.write(WORDS, file);
+		corrupt(file, wordsAt - 4, WORDS.length);
+		assertThrows(IOException.class, () -> MappedPhoneticIndex.open(file));
+	}
+
+	@Test
+	void indexesWithCustomRulesAreNotWritten() {
+		RuleSet rules = RuleSet.builder(RuleSet.DOUBLE_METAPHONE).remove('B').build();
+		PhoneticIndex index = PhoneticIndex.build(new DoubleMeta(rules, 4), WORDS);
+		Path file = directory.resolve("custom.dmix");
+		assertThrows(IOException.class, () -> index.write(WORDS, file));
+		assertFalse(Files.exists(file));
+	}
+
+	private static void corrupt(Path file, long position, int value) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(position);
+			raf.writeInt(value);
+		}
+	}
+}
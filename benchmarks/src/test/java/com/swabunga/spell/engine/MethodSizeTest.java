@@ -0,0 +1,161 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the encoding methods stay small enough for HotSpot to compile.
+ * Methods whose bytecode is longer than HugeMethodLimit (8000 bytes) are left
+ * to the interpreter unless -XX:-DontCompileHugeMethods is given.
+ */
+class MethodSizeTest {
+
+	private static final int HUGE_METHOD_LIMIT = 8000;
+
+	@Test
+	void encodeMethodsAreUnderHugeMethodLimit() throws IOException {
+		Map<String, Integer> sizes = codeSizes(DoubleMeta.class);
+		for (String name : new String[] { "encode", "encodeStart", "encodeFrom", "wordFlags", "charAt", "stringAt",
+				"encodeC", "encodeD", "encodeG", "encodeH", "encodeJ", "encodeL", "encodeM", "encodeP", "encodeS",
+				"encodeT", "encodeW", "encodeX", "encodeZ" }) {
+			if (!sizes.containsKey(name))
+				fail("DoubleMeta." + name + " not found");
+		}
+		assertUnderLimit(DoubleMeta.class, sizes);
+	}
+
+	@Test
+	void ruleSetMethodsAreUnderHugeMethodLimit() throws IOException {
+		assertUnderLimit(RuleSet.class, codeSizes(RuleSet.class));
+	}
+
+	private static void assertUnderLimit(Class<?> type, Map<String, Integer> sizes) {
+		for (Map.Entry<String, Integer> method : sizes.entrySet())
+			assertTrue(method.getValue() <= HUGE_METHOD_LIMIT, type.getSimpleName() + "." + method.getKey() + " has "
+					+ method.getValue() + " bytes of bytecode, over " + HUGE_METHOD_LIMIT);
+	}
+
+	/**
+	 * 读取类文件中每个方法 Code 属性的 code_length，同名方法取最大值
+	 */
+	private static Map<String, Integer> codeSizes(Class<?> type) throws IOException {
+		Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		try (InputStream stream = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+			DataInputStream in = new DataInputStream(stream);
+			if (in.readInt() != 0xCAFEBABE)
+				throw new IOException("not a class file");
+			in.readUnsignedShort();
+			in.readUnsignedShort();
+			// 常量池：只保留 UTF8 常量，其它按类型跳过
+			int count = in.readUnsignedShort();
+			String[] utf8 = new String[count];
+			for (int i = 1; i < count; i++) {
+				int tag = in.readUnsignedByte();
+				switch (tag) {
+				case 1:
+					utf8[i] = in.readUTF();
+					break;
+				case 7:
+				case 8:
+				case 16:
+				case 19:
+				case 20:
+					in.readUnsignedShort();
+					break;
+				case 15:
+					in.readUnsignedByte();
+					in.readUnsignedShort();
+					break;
+				case 3:
+				case 4:
+				case 9:
+				case 10:
+				case 11:
+				case 12:
+				case 17:
+				case 18:
+					in.readInt();
+					break;
+				case 5:
+				case 6:
+					// long 和 double 占两个位置
+					in.readLong();
+					i++;
+					break;
+				default:
+					throw new IOException("unknown constant pool tag " + tag);
+				}
+			}
+			in.readUnsignedShort();
+			in.readUnsignedShort();
+			in.readUnsignedShort();
+			skip(in, 2 * in.readUnsignedShort());
+			int fields = in.readUnsignedShort();
+			for (int i = 0; i < fields; i++) {
+				skip(in, 6);
+				skipAttributes(in);
+			}
+			int methods = in.readUnsignedShort();
+			for (int i = 0; i < methods; i++) {
+				in.readUnsignedShort();
+				String name = utf8[in.readUnsignedShort()];
+				in.readUnsignedShort();
+				int attributes = in.readUnsignedShort();
+				for (int a = 0; a < attributes; a++) {
+					String attribute = utf8[in.readUnsignedShort()];
+					int length = in.readInt();
+					if ("Code".equals(attribute)) {
+						in.readUnsignedShort();
+						in.readUnsignedShort();
+						int code = in.readInt();
+						skip(in, length - 8);
+						sizes.merge(name, code, Math::max);
+					} else {
+						skip(in, length);
+					}
+				}
+			}
+		}
+		return sizes;
+	}
+
+	private static void skipAttributes(DataInputStream in) throws IOException {
+		int attributes = in.readUnsignedShort();
+		for (int a = 0; a < attributes; a++) {
+			in.readUnsignedShort();
+			skip(in, in.readInt());
+		}
+	}
+
+	private static void skip(DataInputStream in, int n) throws IOException {
+		for (int i = 0; i < n; i++)
+			in.readUnsignedByte();
+	}
+}
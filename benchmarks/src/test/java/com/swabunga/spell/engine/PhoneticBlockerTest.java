@@ -0,0 +1,106 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PhoneticBlockerTest {
+
+	@TempDir
+	Path spill;
+
+	@Test
+	void primaryCodeMeetsAlternateCode() throws IOException {
+		// Smith 为 SM0/XMT，Schmidt 为 XMT/SMT
+		List<Long> pairs = run(PhoneticBlocker.PRIMARY | PhoneticBlocker.ALTERNATE, 2, "Smith", "Schmidt");
+		assertEquals(List.of(pair(0, 1)), pairs);
+	}
+
+	@Test
+	void pairSharingSeveralKeysIsReportedOnce() throws IOException {
+		// 主代码、替代代码和前缀都相同
+		List<Long> pairs = run(PhoneticBlocker.PRIMARY | PhoneticBlocker.ALTERNATE | PhoneticBlocker.PREFIX, 2,
+				"Smith", "Smyth", "Jones");
+		assertEquals(List.of(pair(0, 1)), pairs);
+	}
+
+	@Test
+	void droppedBlocksAreCounted() throws IOException {
+		PhoneticBlocker blocker = new PhoneticBlocker(new DoubleMeta(), PhoneticBlocker.PRIMARY, 2, 2, 1 << 20, spill);
+		blocker.add(new String[] { "Smith", "Smith", "Smith", "Jones", "Jones" });
+		List<Long> pairs = new ArrayList<Long>();
+		blocker.finish((first, second) -> {
+			synchronized (pairs) {
+				pairs.add(pair(first, second));
+			}
+		});
+		// 三个 Smith 的前缀也相同，子块仍然过大
+		assertEquals(List.of(pair(3, 4)), pairs);
+		assertEquals(1, blocker.getDroppedBlockCount());
+		assertEquals(3, blocker.getDroppedRecordCount());
+	}
+
+	@Test
+	void spilledPairsAreReportedOnce() throws IOException {
+		String[] names = new String[300];
+		for (int i = 0; i < names.length; i++)
+			names[i] = (i % 2 == 0) ? "Smith" : "Smyth";
+		// 很小的内存预算，候选对要溢写多次
+		PhoneticBlocker blocker = new PhoneticBlocker(new DoubleMeta(),
+				PhoneticBlocker.PRIMARY | PhoneticBlocker.ALTERNATE | PhoneticBlocker.PREFIX, 2, names.length, 1 << 16,
+				spill);
+		blocker.add(names);
+		List<Long> pairs = new ArrayList<Long>();
+		blocker.finish((first, second) -> {
+			synchronized (pairs) {
+				pairs.add(pair(first, second));
+			}
+		});
+		assertEquals(names.length * (names.length - 1) / 2, pairs.size());
+		assertEquals(pairs.size(), pairs.stream().distinct().count());
+		assertEquals(pairs.size(), blocker.getPairCount());
+		assertTrue(pairs.stream().allMatch(p -> (p >>> 32) < (p & 0xffffffffL)));
+	}
+
+	private List<Long> run(int keys, int prefixLength, String... names) throws IOException {
+		PhoneticBlocker blocker = new PhoneticBlocker(new DoubleMeta(), keys, prefixLength, 100, 1 << 20, spill);
+		blocker.add(names);
+		List<Long> pairs = new ArrayList<Long>();
+		blocker.finish((first, second) -> {
+			synchronized (pairs) {
+				pairs.add(pair(first, second));
+			}
+		});
+		return pairs;
+	}
+
+	private static long pair(int first, int second) {
+		return ((long) first << 32) | second;
+	}
+}
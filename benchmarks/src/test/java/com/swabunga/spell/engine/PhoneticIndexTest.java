@@ -0,0 +1,98 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhoneticIndexTest {
+
+	@Test
+	void codesWithinADistance() {
+		DoubleMeta meta = new DoubleMeta();
+		String[] words = { "Brown", "Brandt", "Brian", "Bryant", "Smith" };
+		PhoneticIndex index = PhoneticIndex.build(meta, words);
+		// Brown 为 PRN，Brandt 为 PRNT，Brian 和 Bryant 与它们相同，Smith 为 SM0
+		assertEquals("PRN", meta.transform("Brown"));
+		assertEquals("PRNT", meta.transform("Brandt"));
+		assertArrayEquals(new int[] { 0, 2 }, index.lookup("Brown", 0));
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, index.lookup("Brown", 1));
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, index.lookup("Brandt", 1));
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, index.lookup("Smith", 4));
+	}
+
+	@Test
+	void findWithinMatchesALinearScan() throws IOException {
+		String[] words = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		Random random = new Random(20261017);
+		for (int maxCodeLength : new int[] { 4, Integer.MAX_VALUE }) {
+			PhoneticIndex index = PhoneticIndex.build(new DoubleMeta(maxCodeLength), words);
+			String[] codes = new String[index.codeCount()];
+			for (int slot = 0; slot < codes.length; slot++)
+				codes[slot] = DoubleMeta.unpack(index.code(slot));
+			for (int k = 0; k < 200; k++) {
+				// 字典中的代码和随机的代码
+				long packed = (k % 2 == 0) ? index.code(random.nextInt(codes.length)) : randomCode(random);
+				String query = DoubleMeta.unpack(packed);
+				for (int distance = 0; distance <= 2; distance++) {
+					int[] expected = new int[codes.length];
+					int n = 0;
+					for (int slot = 0; slot < codes.length; slot++) {
+						if (distance(query, codes[slot]) <= distance)
+							expected[n++] = slot;
+					}
+					assertArrayEquals(Arrays.copyOf(expected, n), index.findWithin(packed, distance),
+							query + ", distance " + distance);
+				}
+			}
+		}
+	}
+
+	private static long randomCode(Random random) {
+		String symbols = "0ABFHJKLMNPRSTX";
+		StringBuilder code = new StringBuilder();
+		for (int n = 1 + random.nextInt(8); n > 0; n--)
+			code.append(symbols.charAt(random.nextInt(symbols.length())));
+		return DoubleMeta.pack(code, 0, code.length());
+	}
+
+	private static int distance(String a, String b) {
+		int[] previous = new int[b.length() + 1];
+		int[] row = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			row[0] = i;
+			for (int j = 1; j <= b.length(); j++)
+				row[j] = Math.min(Math.min(row[j - 1], previous[j]) + 1,
+						previous[j - 1] + ((a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1));
+			int[] t = previous;
+			previous = row;
+			row = t;
+		}
+		return previous[b.length()];
+	}
+}
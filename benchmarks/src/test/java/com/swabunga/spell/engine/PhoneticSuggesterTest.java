@@ -0,0 +1,92 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhoneticSuggesterTest {
+
+	private static final String[] NAMES = { "Smith", "Smyth", "Schmidt", "Jones", "Johns", "hegemony", "Thompson",
+			"Thomson", "Wasserman", "Vasserman", "Gallegos", "Cabrillo" };
+
+	@Test
+	void suggestionsAreRankedByDistance() {
+		PhoneticSuggester suggester = new PhoneticSuggester(PhoneticIndex.build(new DoubleMeta(), NAMES), NAMES);
+		assertEquals(List.of("Smith"), suggester.suggest("Smiht", 2));
+		assertEquals(List.of(), suggester.suggest("Smiht", 1));
+		assertEquals(List.of("Jones"), suggester.suggest("Jnoes", 2));
+		// 距离相同时按字母顺序
+		assertEquals(List.of("Thomson", "Thompson"), suggester.suggest("Tomson", 2));
+		assertEquals(List.of("Wasserman", "Vasserman"), suggester.suggest("Wassermann", 2));
+		assertEquals(List.of("Gallegos"), suggester.suggest("galegos", 1));
+		assertEquals(List.of("hegemony"), suggester.suggest("hegemoni", 1));
+	}
+
+	@Test
+	void incrementalEditsMatchFullEncoding() throws IOException {
+		String[] words = GoldenCodesTest.golden().keySet().toArray(new String[0]);
+		for (int maxCodeLength : new int[] { 4, Integer.MAX_VALUE }) {
+			PhoneticIndex index = PhoneticIndex.build(new DoubleMeta(maxCodeLength), words);
+			PhoneticSuggester incremental = new PhoneticSuggester(index, words, true);
+			PhoneticSuggester full = new PhoneticSuggester(index, words, false);
+			Random random = new Random(20261017);
+			for (int k = 0; k < 300; k++) {
+				String word = misspell(words[random.nextInt(words.length)], random);
+				assertEquals(full.countCodes(word), incremental.countCodes(word), word);
+				assertEquals(full.suggest(word, 2), incremental.suggest(word, 2), word);
+			}
+		}
+	}
+
+	/**
+	 * 随机交换、替换、插入或删除一个字母
+	 */
+	private static String misspell(String word, Random random) {
+		StringBuilder sb = new StringBuilder(word);
+		int i = random.nextInt(word.length() + 1);
+		char c = (char) ('A' + random.nextInt(26));
+		switch (random.nextInt(4)) {
+		case 0:
+			if (i + 1 < sb.length()) {
+				char t = sb.charAt(i);
+				sb.setCharAt(i, sb.charAt(i + 1));
+				sb.setCharAt(i + 1, t);
+			}
+			break;
+		case 1:
+			if (i < sb.length())
+				sb.setCharAt(i, c);
+			break;
+		case 2:
+			sb.insert(i, c);
+			break;
+		default:
+			if (i < sb.length())
+				sb.deleteCharAt(i);
+		}
+		return sb.toString();
+	}
+}
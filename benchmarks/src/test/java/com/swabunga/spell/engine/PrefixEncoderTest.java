@@ -0,0 +1,140 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Types and deletes words one keystroke at a time and compares the codes with
+ * those of the whole word after every keystroke.
+ */
+class PrefixEncoderTest {
+
+	private static final int[] LIMITS = { 4, Integer.MAX_VALUE };
+
+	@Test
+	void typingAndDeletingCorpusWords() throws IOException {
+		for (String corpus : new String[] { "english", "slavo-germanic", "spanish-italian", "long" }) {
+			String[] words = RuleSetEquivalenceTest.load(corpus);
+			for (int limit : LIMITS) {
+				DoubleMeta meta = new DoubleMeta(limit);
+				PrefixEncoder encoder = new PrefixEncoder(meta);
+				for (String word : words) {
+					encoder.clear();
+					for (int i = 0; i < word.length(); i++) {
+						encoder.append(word.charAt(i));
+						check(meta, encoder);
+					}
+					for (int n = word.length() - 1; n >= 0; n--) {
+						encoder.setLength(n);
+						check(meta, encoder);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void slavoGermanicFlagFlips() {
+		for (int limit : LIMITS) {
+			DoubleMeta meta = new DoubleMeta(limit);
+			PrefixEncoder encoder = new PrefixEncoder(meta);
+			// 输入 W、K 或 CZ 之后斯拉夫日耳曼语判别成立，前面的 J 和 Z 的编码随之改变
+			for (String word : new String[] { "Jozefiak", "Zajac", "Rozalewski", "Tejadaczyk" }) {
+				encoder.clear();
+				for (int i = 0; i < word.length(); i++) {
+					encoder.append(word.charAt(i));
+					check(meta, encoder);
+				}
+				// 删去 W、K 或 CZ 之后判别不再成立
+				for (int n = word.length() - 1; n >= 0; n--) {
+					encoder.setLength(n);
+					check(meta, encoder);
+					encoder.append(word.substring(n));
+					check(meta, encoder);
+					encoder.setLength(n);
+				}
+			}
+		}
+	}
+
+	@Test
+	void cuttingBelowThePrefixReach() {
+		DoubleMeta meta = new DoubleMeta();
+		PrefixEncoder encoder = new PrefixEncoder(meta);
+		encoder.append("Vanderbilt");
+		check(meta, encoder);
+		// 词首的判别（VAN）在长度小于 PREFIX_REACH 时重新计算
+		encoder.setLength(DoubleMeta.PREFIX_REACH - 3);
+		check(meta, encoder);
+		encoder.append("essa");
+		check(meta, encoder);
+		encoder.clear();
+		encoder.append("Schmidt");
+		check(meta, encoder);
+		encoder.setLength(2);
+		encoder.append("ulz");
+		assertEquals("Sculz", encoder.getWord());
+		check(meta, encoder);
+	}
+
+	@Test
+	void randomKeystrokes() {
+		Random random = new Random(20261017);
+		String letters = "ABCDEGHIJKLMNORSTUWXZ";
+		for (int limit : LIMITS) {
+			DoubleMeta meta = new DoubleMeta(limit);
+			PrefixEncoder encoder = new PrefixEncoder(meta);
+			for (int k = 0; k < 20000; k++) {
+				if ((encoder.length() > 0) && (random.nextInt(4) == 0))
+					encoder.setLength(random.nextInt(encoder.length()));
+				else
+					encoder.append(letters.charAt(random.nextInt(letters.length())));
+				check(meta, encoder);
+				if (encoder.length() > 24)
+					encoder.clear();
+			}
+		}
+	}
+
+	@Test
+	void customRulesEncodeTheWholeWord() {
+		RuleSet rules = RuleSet.builder(RuleSet.DOUBLE_METAPHONE).remove('B').build();
+		DoubleMeta meta = new DoubleMeta(rules, 4);
+		PrefixEncoder encoder = new PrefixEncoder(meta);
+		for (char c : "Bubbleworth".toCharArray()) {
+			encoder.append(c);
+			check(meta, encoder);
+		}
+	}
+
+	private static void check(DoubleMeta meta, PrefixEncoder encoder) {
+		String word = encoder.getWord();
+		DoubleMetaResult codes = meta.transformBoth(word);
+		assertEquals(codes.getPrimary(), encoder.getPrimary(), word);
+		assertEquals(codes.getAlternate(), encoder.getAlternate(), word);
+		assertEquals(meta.transformToLong(word), encoder.toLong(), word);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs in its own JVM with -Dcom.swabunga.spell.engine.profile=true, see the
+ * surefire "profile" execution in pom.xml.
+ */
+class RuleProfileTest {
+
+	@BeforeEach
+	void reset() {
+		assertTrue(RuleProfile.isEnabled(), "run with -Dcom.swabunga.spell.engine.profile=true");
+		RuleProfile.reset();
+	}
+
+	@Test
+	void countsLettersAndStringChecks() {
+		new DoubleMeta().transform("Smith");
+		Map<String, Long> snapshot = RuleProfile.snapshot();
+		assertEquals(1L, snapshot.get("letter S"));
+		assertEquals(1L, snapshot.get("letter M"));
+		assertEquals(1L, snapshot.get("letter I"));
+		assertEquals(1L, snapshot.get("letter T"));
+		// TH 一次处理两个字母，H 不单独计数
+		assertFalse(snapshot.containsKey("letter H"));
+		assertEquals(1L, snapshot.get("stringAt list82 TH"));
+		assertEquals(1L, snapshot.get("stringAt list82 TH matched"));
+		assertEquals(1L, snapshot.get("stringAt list69 SIO|SIA"));
+		assertFalse(snapshot.containsKey("stringAt list69 SIO|SIA matched"));
+
+		RuleProfile.reset();
+		assertTrue(RuleProfile.snapshot().isEmpty());
+	}
+
+	@Test
+	void countsTheRuleSetPath() {
+		new DoubleMeta(RuleSet.DOUBLE_METAPHONE, 10).transform("Schmidt");
+		Map<String, Long> snapshot = RuleProfile.snapshot();
+		assertEquals(1L, snapshot.get("letter S"));
+		assertEquals(1L, snapshot.get("letter D"));
+		assertEquals(1L, snapshot.get("stringAt SC matched"));
+		assertEquals(1L, snapshot.get("stringAt DT|DD matched"));
+	}
+
+	@Test
+	void countsFromManyThreads() throws InterruptedException {
+		DoubleMeta meta = new DoubleMeta();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++)
+					meta.transform("Smith");
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		Map<String, Long> snapshot = RuleProfile.snapshot();
+		assertEquals(4000L, snapshot.get("letter S"));
+		assertEquals(4000L, snapshot.get("stringAt list82 TH matched"));
+	}
+}
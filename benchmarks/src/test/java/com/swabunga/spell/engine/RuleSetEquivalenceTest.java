@@ -0,0 +1,100 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the hand-written rules of {@link DoubleMeta} and the table
+ * driven {@link RuleSet#DOUBLE_METAPHONE} give the same primary and alternate
+ * codes.
+ */
+class RuleSetEquivalenceTest {
+
+	private static final String[] CORPORA = { "english", "slavo-germanic", "spanish-italian", "long" };
+
+	// 随机单词的字母表，重复规则里常见的字母
+	private static final String LETTERS = "ABCDEGHIJKLMNOPRSTUWXZAEIOUCCGGHHSSTTWXZ\u00c7\u00d1";
+
+	@Test
+	void corporaEncodeTheSame() throws IOException {
+		Set<String> words = new LinkedHashSet<String>();
+		for (String name : CORPORA) {
+			for (String line : load(name)) {
+				words.add(line);
+				for (String word : line.split("[^\\p{L}]+")) {
+					// 每个后缀都从不同的字母开始，覆盖词首规则
+					for (int i = 0; i < word.length(); i++)
+						words.add(word.substring(i));
+				}
+			}
+		}
+		assertSame(words);
+	}
+
+	@Test
+	void randomWordsEncodeTheSame() {
+		Random random = new Random(42);
+		Set<String> words = new LinkedHashSet<String>();
+		while (words.size() < 200000) {
+			char[] word = new char[1 + random.nextInt(12)];
+			for (int i = 0; i < word.length; i++)
+				word[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+			words.add(new String(word));
+		}
+		assertSame(words);
+	}
+
+	private static void assertSame(Set<String> words) {
+		for (int maxCodeLength : new int[] { 4, Integer.MAX_VALUE }) {
+			DoubleMeta handWritten = new DoubleMeta(maxCodeLength);
+			DoubleMeta table = new DoubleMeta(RuleSet.DOUBLE_METAPHONE, maxCodeLength);
+			for (String word : words)
+				assertEquals(handWritten.transformBoth(word), table.transformBoth(word),
+						word + ", maxCodeLength=" + maxCodeLength);
+		}
+	}
+
+	static String[] load(String name) throws IOException {
+		InputStream in = RuleSetEquivalenceTest.class.getResourceAsStream("/corpora/" + name + ".txt");
+		assertNotNull(in, name);
+		Set<String> lines = new LinkedHashSet<String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0)
+					lines.add(line);
+			}
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+}
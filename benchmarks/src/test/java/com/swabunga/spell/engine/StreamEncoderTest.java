@@ -0,0 +1,67 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class StreamEncoderTest {
+
+	// 破折号、弯引号、不换行空格和非 BMP 字母
+	private static final String TEXT = "Smith\u2014Jones \u201cSchmidt\u201d O\u2019Brien caf\u00e9\u00a0noir "
+			+ "\u00c9mile \ud835\udc9c\ud835\udc9cb end";
+
+	@Test
+	void readerAndBytesSplitTheSameWords() throws IOException {
+		DoubleMeta meta = new DoubleMeta();
+		for (int bufferSize : new int[] { 16, 17, 18, 19, StreamEncoder.DEFAULT_BUFFER_SIZE }) {
+			StreamEncoder encoder = new StreamEncoder(meta, bufferSize);
+			List<String> chars = new ArrayList<String>();
+			encoder.encode(new StringReader(TEXT), (offset, length, code) -> chars.add(code.toString()));
+			List<String> bytes = new ArrayList<String>();
+			encoder.encode(new ByteArrayInputStream(TEXT.getBytes(StandardCharsets.UTF_8)),
+					(offset, length, code) -> bytes.add(code.toString()));
+			assertEquals(chars, bytes, "bufferSize=" + bufferSize);
+		}
+	}
+
+	@Test
+	void punctuationOutsideAsciiSeparatesWords() throws IOException {
+		DoubleMeta meta = new DoubleMeta();
+		List<String> words = new ArrayList<String>();
+		List<Long> offsets = new ArrayList<Long>();
+		new StreamEncoder(meta).encode(new ByteArrayInputStream("Smith\u2014Jones".getBytes(StandardCharsets.UTF_8)),
+				(offset, length, code) -> {
+					words.add(code.toString());
+					offsets.add(offset);
+				});
+		assertEquals(List.of(meta.transform("Smith"), meta.transform("Jones")), words);
+		// 破折号在 UTF-8 中占 3 个字节
+		assertEquals(List.of(0L, 8L), offsets);
+	}
+}
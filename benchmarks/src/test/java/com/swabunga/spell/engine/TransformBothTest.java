@@ -0,0 +1,90 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the alternate codes of transformBoth, for the hand-written rules and
+ * the rule table alike.
+ */
+class TransformBothTest {
+
+	private static final DoubleMeta[] ENCODERS = { new DoubleMeta(),
+			new DoubleMeta(RuleSet.DOUBLE_METAPHONE, Integer.MAX_VALUE) };
+
+	@Test
+	void wordsWithTwoPronunciations() {
+		check("hegemony", "HJMN", "HKMN");
+		check("Schmidt", "XMT", "SMT");
+		check("Wasserman", "ASRMN", "FSRMN");
+		check("Jankelowicz", "JNKLTS", "ANKLFX");
+		check("Thumb", "0MP", "TMP");
+	}
+
+	@Test
+	void finalWAfterAVowelOnlyInTheAlternate() {
+		check("Arnow", "ARN", "ARNF");
+		check("Arnowa", "ARN", "ARN");
+		check("Filipowicz", "FLPTS", "FLPFX");
+	}
+
+	@Test
+	void spanishDoubleLOnlyInThePrimary() {
+		check("Cabrillo", "KPRL", "KPR");
+		check("Gallegos", "KLKS", "KKS");
+		check("Ballesteros", "PLSTRS", "PSTRS");
+		check("Cabrillon", "KPRLN", "KPRLN");
+	}
+
+	@Test
+	void finalLettersKeepTheCodesOfThePort() {
+		// 原来的实现对这些词尾字母只编码替代语音代码或不编码，本实现保持主语音代码不变
+		check("Rogier", "RJR", "RJR");
+		check("Artois", "ARTS", "ARTS");
+		check("Breaux", "PRKS", "PRKS");
+		check("dumb", "TMP", "TMP");
+	}
+
+	@Test
+	void bothCodesAreTruncatedToTheMaximumLength() {
+		DoubleMeta[] bounded = { new DoubleMeta(4), new DoubleMeta(RuleSet.DOUBLE_METAPHONE, 4) };
+		for (DoubleMeta meta : bounded) {
+			assertCodes(meta, "Wasserman", "ASRM", "FSRM");
+			assertCodes(meta, "Jankelowicz", "JNKL", "ANKL");
+			assertCodes(meta, "Ballesteros", "PLST", "PSTR");
+			assertCodes(meta, "hegemony", "HJMN", "HKMN");
+		}
+	}
+
+	private static void check(String word, String primary, String alternate) {
+		for (DoubleMeta meta : ENCODERS)
+			assertCodes(meta, word, primary, alternate);
+	}
+
+	private static void assertCodes(DoubleMeta meta, String word, String primary, String alternate) {
+		DoubleMetaResult result = meta.transformBoth(word);
+		assertEquals(primary, result.getPrimary(), word);
+		assertEquals(alternate, result.getAlternate(), word);
+		assertEquals(primary, meta.transform(word), word);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+Jazzy - a Java library for Spell Checking
+Copyright (C) 2001 Mindaugas Idzelis
+Full text of license can be found in LICENSE.txt
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+package com.swabunga.spell.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the conditions computed by the scan that precedes the encoding, and
+ * the codes of the words that depend on them against the golden codes.
+ */
+class WordFlagsTest {
+
+	private static Map<String, String> golden;
+
+	@BeforeAll
+	static void loadGolden() throws IOException {
+		golden = GoldenCodesTest.golden();
+	}
+
+	@Test
+	void vanVon() {
+		check(DoubleMeta.VAN_VON, "Van Gogh", "von Trapp");
+		check(0, "Vanderbilt");
+	}
+
+	@Test
+	void sch() {
+		check(DoubleMeta.SCH, "Schmidt", "Schenker", "School", "Sch");
+	}
+
+	@Test
+	void chore() {
+		check(DoubleMeta.CHORE, "Chore", "Choreography");
+		check(0, "Chorus", "Chorley");
+	}
+
+	@Test
+	void mc() {
+		check(DoubleMeta.MC, "McDonald", "McHugh", "Mc");
+		check(0, "Mac");
+	}
+
+	@Test
+	void san() {
+		check(DoubleMeta.SAN, "San Jacinto");
+		check(0, "Sandoval");
+	}
+
+	@Test
+	void anger() {
+		check(DoubleMeta.ANGER, "Danger", "Dangerous", "Ranger", "Manger", "Mangerton");
+		check(0, "Dang", "Rang");
+	}
+
+	@Test
+	void wordsShorterThanThePrefix() {
+		// 不足 PREFIX_REACH 个字符的单词，超出的部分按空格比较，与原来附加的空格相同
+		check(0, "A", "B", "X");
+		check(DoubleMeta.VAN_VON, "Van", "Von");
+		check(DoubleMeta.SAN, "San");
+		check(DoubleMeta.MC, "Mc");
+		check(DoubleMeta.SCH, "Sch");
+		check(DoubleMeta.CHORE, "Chore");
+	}
+
+	@Test
+	void slavoGermanic() {
+		check(DoubleMeta.SLAVO_GERMANIC, "Wasserman", "Kowalski", "Czerny", "Kafka", "Witz", "Filipowicz");
+		check(0, "Tichner", "Smith");
+	}
+
+	@Test
+	void wordInsideALongerSequence() {
+		assertEquals(DoubleMeta.VAN_VON, DoubleMeta.wordFlags("..Van Gogh..", 2, 8));
+		// 单词之后的字符不算在单词里
+		assertEquals(DoubleMeta.SAN, DoubleMeta.wordFlags("SanK", 0, 3));
+		assertEquals(0, DoubleMeta.wordFlags("DangerW", 0, 4));
+		assertEquals(0, DoubleMeta.wordFlags("VanWyck", 0, 3) & DoubleMeta.SLAVO_GERMANIC);
+	}
+
+	/**
+	 * 断言每个单词的判别结果（不计斯拉夫日耳曼语以外的其它位时为 expected），以及代码与原始实现相同
+	 */
+	private static void check(int expected, String... words) {
+		DoubleMeta meta = new DoubleMeta();
+		for (String word : words) {
+			int flags = DoubleMeta.wordFlags(word, 0, word.length());
+			if (expected != DoubleMeta.SLAVO_GERMANIC)
+				flags &= ~DoubleMeta.SLAVO_GERMANIC;
+			else
+				flags &= DoubleMeta.SLAVO_GERMANIC;
+			assertEquals(expected, flags, word);
+			String code = golden.get(word);
+			assertNotNull(code, word + " is not in the golden codes");
+			assertEquals(code, meta.transform(word), word);
+		}
+	}
+}